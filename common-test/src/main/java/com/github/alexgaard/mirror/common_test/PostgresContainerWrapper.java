@@ -30,6 +30,18 @@ public class PostgresContainerWrapper {
         return dataSource;
     }
 
+    public String getJdbcUrl() {
+        return container.getJdbcUrl();
+    }
+
+    public String getUsername() {
+        return container.getUsername();
+    }
+
+    public String getPassword() {
+        return container.getPassword();
+    }
+
     private DataSource createDataSource() {
         HikariConfig config = new HikariConfig();
         config.setMinimumIdle(0);
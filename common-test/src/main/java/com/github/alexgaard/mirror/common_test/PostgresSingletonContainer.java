@@ -13,6 +13,18 @@ public class PostgresSingletonContainer {
         return getContainer().getDataSource();
     }
 
+    public static synchronized String getJdbcUrl() {
+        return getContainer().getJdbcUrl();
+    }
+
+    public static synchronized String getUsername() {
+        return getContainer().getUsername();
+    }
+
+    public static synchronized String getPassword() {
+        return getContainer().getPassword();
+    }
+
     private static synchronized PostgresContainerWrapper getContainer() {
         if (container == null) {
             container = new PostgresContainerWrapper();
@@ -0,0 +1,24 @@
+package com.github.alexgaard.mirror.core;
+
+import com.github.alexgaard.mirror.core.utils.EventSinks;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/*
+    Sink that consumes events in batches and completes asynchronously.
+    The events must be consumed in order. If the result is an error, the events following the failed event
+    have not been consumed, while the events before it might have been.
+    Sinks which know how many of the first events were consumed report it with a PartialConsumptionException as the error,
+    so the caller does not have to deliver them again.
+ */
+public interface AsyncEventSink extends EventSink {
+
+    CompletionStage<Result> consumeAll(List<Event> events);
+
+    @Override
+    default Result consume(Event event) {
+        return EventSinks.await(consumeAll(List.of(event)));
+    }
+
+}
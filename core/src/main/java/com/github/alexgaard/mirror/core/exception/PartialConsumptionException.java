@@ -0,0 +1,15 @@
+package com.github.alexgaard.mirror.core.exception;
+
+import static java.lang.String.format;
+
+// Error of an AsyncEventSink batch where the first events were consumed before the failure
+public class PartialConsumptionException extends RuntimeException {
+
+    public final int consumedEvents;
+
+    public PartialConsumptionException(int consumedEvents, Exception cause) {
+        super(format("Failed after consuming %d events: %s", consumedEvents, cause.getMessage()), cause);
+        this.consumedEvents = consumedEvents;
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.github.alexgaard.mirror.core.serde;
+
+import com.github.alexgaard.mirror.core.Event;
+
+import java.io.IOException;
+
+/*
+    Compresses the payloads of another serializer which are at least the size of the threshold.
+    Payloads are prefixed with the id of the codec, and compressed payloads also with their original size,
+    so that DecompressingDeserializer can decode them regardless of the codec.
+
+    payload = codec id (1 byte), [original size (4 bytes, if compressed)], data
+ */
+public class CompressingSerializer implements Serializer {
+
+    private final Serializer serializer;
+
+    private final CompressionCodec codec;
+
+    private final int thresholdBytes;
+
+    public CompressingSerializer(Serializer serializer, CompressionCodec codec, int thresholdBytes) {
+        this.serializer = serializer;
+        this.codec = codec;
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    @Override
+    public byte[] serialize(Event event) throws IOException {
+        byte[] data = serializer.serialize(event);
+
+        if (codec != CompressionCodec.NONE && data.length >= thresholdBytes) {
+            byte[] compressed = codec.compress(data);
+
+            // Payloads that do not compress are sent as is
+            if (compressed.length + 4 < data.length) {
+                byte[] payload = new byte[compressed.length + 5];
+                payload[0] = (byte) codec.id;
+                writeInt(payload, 1, data.length);
+                System.arraycopy(compressed, 0, payload, 5, compressed.length);
+                return payload;
+            }
+        }
+
+        byte[] payload = new byte[data.length + 1];
+        payload[0] = (byte) CompressionCodec.NONE.id;
+        System.arraycopy(data, 0, payload, 1, data.length);
+        return payload;
+    }
+
+    private static void writeInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.github.alexgaard.mirror.core.serde;
+
+import com.github.alexgaard.mirror.core.exception.ParseException;
+
+/*
+    The id of the codec is written as the first byte of compressed payloads.
+    LZ4 and Zstd require lz4-java and zstd-jni on the classpath, which are optional dependencies.
+ */
+public enum CompressionCodec {
+    NONE(0),
+    LZ4(1),
+    ZSTD(2);
+
+    final int id;
+
+    CompressionCodec(int id) {
+        this.id = id;
+    }
+
+    byte[] compress(byte[] data) {
+        try {
+            switch (this) {
+                case LZ4:
+                    return Lz4Compression.compress(data);
+                case ZSTD:
+                    return ZstdCompression.compress(data);
+                default:
+                    return data;
+            }
+        } catch (NoClassDefFoundError e) {
+            throw missingLibrary(e);
+        }
+    }
+
+    byte[] decompress(byte[] data, int offset, int originalLength) {
+        try {
+            switch (this) {
+                case LZ4:
+                    return Lz4Compression.decompress(data, offset, originalLength);
+                case ZSTD:
+                    return ZstdCompression.decompress(data, offset, originalLength);
+                default:
+                    throw new IllegalStateException("Payload is not compressed");
+            }
+        } catch (NoClassDefFoundError e) {
+            throw missingLibrary(e);
+        }
+    }
+
+    static CompressionCodec fromId(int id) {
+        for (CompressionCodec codec : values()) {
+            if (codec.id == id) {
+                return codec;
+            }
+        }
+
+        throw new ParseException("Unknown compression codec " + id);
+    }
+
+    private IllegalStateException missingLibrary(NoClassDefFoundError e) {
+        return new IllegalStateException("The library for compression codec " + this + " is not on the classpath", e);
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.github.alexgaard.mirror.core.serde;
+
+import com.github.alexgaard.mirror.core.Event;
+import com.github.alexgaard.mirror.core.exception.ParseException;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static java.lang.String.format;
+
+// Decodes payloads written by CompressingSerializer, and passes the original data to another deserializer
+public class DecompressingDeserializer implements Deserializer {
+
+    public static final int DEFAULT_MAX_ORIGINAL_BYTES = 64 * 1024 * 1024;
+
+    private final Deserializer deserializer;
+
+    // The original size is read from the payload, and is checked before the buffer for the original data is allocated
+    private final int maxOriginalBytes;
+
+    public DecompressingDeserializer(Deserializer deserializer) {
+        this(deserializer, DEFAULT_MAX_ORIGINAL_BYTES);
+    }
+
+    public DecompressingDeserializer(Deserializer deserializer, int maxOriginalBytes) {
+        this.deserializer = deserializer;
+        this.maxOriginalBytes = maxOriginalBytes;
+    }
+
+    @Override
+    public Event deserialize(byte[] payload) throws IOException {
+        if (payload.length == 0) {
+            throw new ParseException("Payload is missing the compression codec");
+        }
+
+        CompressionCodec codec = CompressionCodec.fromId(payload[0]);
+
+        if (codec == CompressionCodec.NONE) {
+            return deserializer.deserialize(Arrays.copyOfRange(payload, 1, payload.length));
+        }
+
+        if (payload.length < 5) {
+            throw new ParseException("Compressed payload is missing the original size");
+        }
+
+        int originalLength = readInt(payload, 1);
+
+        if (originalLength < 0 || originalLength > maxOriginalBytes) {
+            throw new ParseException(format("Original size %d of compressed payload is not between 0 and %d bytes", originalLength, maxOriginalBytes));
+        }
+
+        return deserializer.deserialize(codec.decompress(payload, 5, originalLength));
+    }
+
+    private static int readInt(byte[] buffer, int offset) {
+        return ((buffer[offset] & 0xFF) << 24)
+                | ((buffer[offset + 1] & 0xFF) << 16)
+                | ((buffer[offset + 2] & 0xFF) << 8)
+                | (buffer[offset + 3] & 0xFF);
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.github.alexgaard.mirror.core.serde;
+
+import com.github.alexgaard.mirror.core.exception.ParseException;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+
+import static java.lang.String.format;
+
+// Kept in a separate class so that lz4-java is only loaded if the codec is used
+class Lz4Compression {
+
+    private static final LZ4Factory factory = LZ4Factory.fastestInstance();
+
+    static byte[] compress(byte[] data) {
+        return factory.fastCompressor().compress(data);
+    }
+
+    static byte[] decompress(byte[] data, int offset, int originalLength) {
+        byte[] decompressed = new byte[originalLength];
+        int decompressedLength;
+
+        // The safe decompressor is bounded by the compressed data, the fast one trusts the original size in the payload
+        try {
+            decompressedLength = factory.safeDecompressor().decompress(data, offset, data.length - offset, decompressed, 0, originalLength);
+        } catch (LZ4Exception e) {
+            throw new ParseException("Malformed LZ4 payload: " + e.getMessage());
+        }
+
+        if (decompressedLength != originalLength) {
+            throw new ParseException(format("LZ4 payload decompressed to %d bytes, expected %d", decompressedLength, originalLength));
+        }
+
+        return decompressed;
+    }
+
+}
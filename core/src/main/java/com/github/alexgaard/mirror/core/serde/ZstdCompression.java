@@ -0,0 +1,36 @@
+package com.github.alexgaard.mirror.core.serde;
+
+import com.github.alexgaard.mirror.core.exception.ParseException;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdException;
+
+import java.util.Arrays;
+
+import static java.lang.String.format;
+
+// Kept in a separate class so that zstd-jni is only loaded if the codec is used
+class ZstdCompression {
+
+    private static final int LEVEL = 3;
+
+    static byte[] compress(byte[] data) {
+        return Zstd.compress(data, LEVEL);
+    }
+
+    static byte[] decompress(byte[] data, int offset, int originalLength) {
+        byte[] decompressed;
+
+        try {
+            decompressed = Zstd.decompress(Arrays.copyOfRange(data, offset, data.length), originalLength);
+        } catch (ZstdException e) {
+            throw new ParseException("Malformed Zstd payload: " + e.getMessage());
+        }
+
+        if (decompressed.length != originalLength) {
+            throw new ParseException(format("Zstd payload decompressed to %d bytes, expected %d", decompressed.length, originalLength));
+        }
+
+        return decompressed;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.github.alexgaard.mirror.core.utils;
+
+import com.github.alexgaard.mirror.core.AsyncEventSink;
+import com.github.alexgaard.mirror.core.Event;
+import com.github.alexgaard.mirror.core.EventSink;
+import com.github.alexgaard.mirror.core.Result;
+import com.github.alexgaard.mirror.core.exception.PartialConsumptionException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import static com.github.alexgaard.mirror.core.utils.ExceptionUtil.runWithResult;
+
+public class EventSinks {
+
+    // Consumes the events one by one on the calling thread, and stops at the first error
+    public static AsyncEventSink toAsync(EventSink eventSink) {
+        if (eventSink instanceof AsyncEventSink) {
+            return (AsyncEventSink) eventSink;
+        }
+
+        return events -> {
+            for (int i = 0; i < events.size(); i++) {
+                Event event = events.get(i);
+                Result result = runWithResult(() -> eventSink.consume(event));
+
+                if (result.isError()) {
+                    return CompletableFuture.completedFuture(partialError(i, result.getError().get()));
+                }
+            }
+
+            return CompletableFuture.completedFuture(Result.ok());
+        };
+    }
+
+    // Error reporting that the first consumedEvents events of the batch were consumed before the failure
+    public static Result partialError(int consumedEvents, Exception exception) {
+        if (exception instanceof PartialConsumptionException) {
+            exception = (Exception) exception.getCause();
+        }
+
+        if (consumedEvents == 0) {
+            return Result.error(exception);
+        }
+
+        return Result.error(new PartialConsumptionException(consumedEvents, exception));
+    }
+
+    // Number of events at the start of the batch known to be consumed, the whole batch if the result is ok
+    public static int consumedEvents(Result result, int batchSize) {
+        if (result.isOk()) {
+            return batchSize;
+        }
+
+        Exception exception = result.getError().get();
+
+        return exception instanceof PartialConsumptionException
+                ? Math.min(((PartialConsumptionException) exception).consumedEvents, batchSize)
+                : 0;
+    }
+
+    // Blocks until the result is available, exceptional completion is returned as an error
+    public static Result await(CompletionStage<Result> resultStage) {
+        try {
+            Result result = resultStage.toCompletableFuture().join();
+
+            return result != null ? result : Result.error(new IllegalStateException("Result was null"));
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            return Result.error(cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+        } catch (Exception e) {
+            return Result.error(e);
+        }
+    }
+
+}
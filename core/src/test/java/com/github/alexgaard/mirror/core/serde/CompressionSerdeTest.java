@@ -0,0 +1,121 @@
+package com.github.alexgaard.mirror.core.serde;
+
+import com.github.alexgaard.mirror.core.Event;
+import com.github.alexgaard.mirror.core.exception.ParseException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompressionSerdeTest {
+
+    // The type of the event is used as the serialized data
+    private static final Serializer typeSerializer = event -> event.type.getBytes(StandardCharsets.ISO_8859_1);
+
+    private static final Deserializer typeDeserializer = data -> new Event(null, null, new String(data, StandardCharsets.ISO_8859_1), null);
+
+    private static final String compressibleType = "compressible ".repeat(100);
+
+    @Test
+    public void shouldRoundTripWithEveryCodec() throws IOException {
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            byte[] payload = new CompressingSerializer(typeSerializer, codec, 0).serialize(event(compressibleType));
+
+            assertEquals(codec.id, payload[0]);
+            assertEquals(compressibleType, deserialize(payload).type);
+
+            if (codec != CompressionCodec.NONE) {
+                assertTrue(payload.length < compressibleType.length());
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotCompressBelowThreshold() throws IOException {
+        byte[] payload = new CompressingSerializer(typeSerializer, CompressionCodec.ZSTD, compressibleType.length() + 1)
+                .serialize(event(compressibleType));
+
+        assertEquals(CompressionCodec.NONE.id, payload[0]);
+        assertEquals(compressibleType.length() + 1, payload.length);
+        assertEquals(compressibleType, deserialize(payload).type);
+    }
+
+    @Test
+    public void shouldSendIncompressiblePayloadAsIs() throws IOException {
+        byte[] randomData = new byte[1000];
+        new Random(42).nextBytes(randomData);
+        String incompressibleType = new String(randomData, StandardCharsets.ISO_8859_1);
+
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            byte[] payload = new CompressingSerializer(typeSerializer, codec, 0).serialize(event(incompressibleType));
+
+            assertEquals(CompressionCodec.NONE.id, payload[0]);
+            assertEquals(randomData.length + 1, payload.length);
+            assertEquals(incompressibleType, deserialize(payload).type);
+        }
+    }
+
+    @Test
+    public void shouldThrowOnUnknownCodec() throws IOException {
+        byte[] payload = new CompressingSerializer(typeSerializer, CompressionCodec.LZ4, 0).serialize(event(compressibleType));
+        payload[0] = 42;
+
+        assertThrows(ParseException.class, () -> deserialize(payload));
+    }
+
+    @Test
+    public void shouldThrowOnMissingCodecOrSize() {
+        assertThrows(ParseException.class, () -> deserialize(new byte[0]));
+        assertThrows(ParseException.class, () -> deserialize(new byte[]{(byte) CompressionCodec.LZ4.id, 0, 0}));
+    }
+
+    @Test
+    public void shouldThrowOnOriginalSizeOutOfBounds() throws IOException {
+        byte[] payload = new CompressingSerializer(typeSerializer, CompressionCodec.ZSTD, 0).serialize(event(compressibleType));
+
+        byte[] negativeSize = payload.clone();
+        negativeSize[1] = (byte) 0xFF;
+
+        byte[] tooLarge = payload.clone();
+        tooLarge[1] = 0x7F;
+
+        assertThrows(ParseException.class, () -> deserialize(negativeSize));
+        assertThrows(ParseException.class, () -> deserialize(tooLarge));
+
+        DecompressingDeserializer smallLimit = new DecompressingDeserializer(typeDeserializer, compressibleType.length() - 1);
+        assertThrows(ParseException.class, () -> smallLimit.deserialize(payload));
+    }
+
+    @Test
+    public void shouldThrowOnCorruptedBody() throws IOException {
+        for (CompressionCodec codec : new CompressionCodec[]{CompressionCodec.LZ4, CompressionCodec.ZSTD}) {
+            byte[] payload = new CompressingSerializer(typeSerializer, codec, 0).serialize(event(compressibleType));
+
+            byte[] truncated = Arrays.copyOf(payload, payload.length / 2);
+
+            byte[] garbage = payload.clone();
+            Arrays.fill(garbage, 5, garbage.length, (byte) 0xFF);
+
+            // The header is intact, but the body decompresses to fewer bytes than the original size
+            byte[] shortBody = new CompressingSerializer(typeSerializer, codec, 0).serialize(event(compressibleType.substring(13)));
+            System.arraycopy(payload, 1, shortBody, 1, 4);
+
+            assertThrows(ParseException.class, () -> deserialize(truncated), codec.name());
+            assertThrows(ParseException.class, () -> deserialize(garbage), codec.name());
+            assertThrows(ParseException.class, () -> deserialize(shortBody), codec.name());
+        }
+    }
+
+    private static Event deserialize(byte[] payload) throws IOException {
+        return new DecompressingDeserializer(typeDeserializer).deserialize(payload);
+    }
+
+    private static Event event(String type) {
+        return new Event(null, null, type, null);
+    }
+
+}
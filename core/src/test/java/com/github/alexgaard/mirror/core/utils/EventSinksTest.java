@@ -0,0 +1,88 @@
+package com.github.alexgaard.mirror.core.utils;
+
+import com.github.alexgaard.mirror.core.AsyncEventSink;
+import com.github.alexgaard.mirror.core.Event;
+import com.github.alexgaard.mirror.core.Result;
+import com.github.alexgaard.mirror.core.exception.PartialConsumptionException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventSinksTest {
+
+    @Test
+    public void shouldReportEventsConsumedBeforeTheFailure() {
+        List<Event> events = events(4);
+        List<Event> consumed = new ArrayList<>();
+        IllegalStateException failure = new IllegalStateException("failed");
+
+        AsyncEventSink sink = EventSinks.toAsync(event -> {
+            if (event == events.get(2)) {
+                return Result.error(failure);
+            }
+
+            consumed.add(event);
+            return Result.ok();
+        });
+
+        Result result = EventSinks.await(sink.consumeAll(events));
+
+        assertEquals(events.subList(0, 2), consumed);
+        assertEquals(2, EventSinks.consumedEvents(result, events.size()));
+        assertSame(failure, result.getError().get().getCause());
+    }
+
+    @Test
+    public void shouldReportNoEventsConsumedWhenTheFirstEventFails() {
+        IllegalStateException failure = new IllegalStateException("failed");
+
+        AsyncEventSink sink = EventSinks.toAsync(event -> Result.error(failure));
+
+        Result result = EventSinks.await(sink.consumeAll(events(3)));
+
+        assertSame(failure, result.getError().get());
+        assertEquals(0, EventSinks.consumedEvents(result, 3));
+    }
+
+    @Test
+    public void shouldReportEveryEventConsumedWhenOk() {
+        assertEquals(3, EventSinks.consumedEvents(Result.ok(), 3));
+    }
+
+    @Test
+    public void shouldReportNoEventsConsumedForOtherErrors() {
+        assertEquals(0, EventSinks.consumedEvents(Result.error(new IllegalStateException()), 3));
+    }
+
+    @Test
+    public void shouldNotReportMoreEventsThanTheBatch() {
+        Result result = Result.error(new PartialConsumptionException(5, new IllegalStateException()));
+
+        assertEquals(3, EventSinks.consumedEvents(result, 3));
+    }
+
+    @Test
+    public void shouldUnwrapNestedPartialError() {
+        IllegalStateException failure = new IllegalStateException("failed");
+
+        Result result = EventSinks.partialError(1, new PartialConsumptionException(4, failure));
+
+        assertEquals(1, EventSinks.consumedEvents(result, 3));
+        assertSame(failure, result.getError().get().getCause());
+    }
+
+    private static List<Event> events(int count) {
+        List<Event> events = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            events.add(new Event(UUID.randomUUID(), "test", "test", null));
+        }
+
+        return events;
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.github.alexgaard.mirror.postgres_serde;
+
+import com.github.alexgaard.mirror.core.exception.ParseException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static java.lang.String.format;
+
+// Reads primitives written by BinaryWriter
+class BinaryReader {
+
+    private final byte[] data;
+
+    private int position = 0;
+
+    private final List<String> dictionary = new ArrayList<>();
+
+    BinaryReader(byte[] data) {
+        this.data = data;
+    }
+
+    int readByte() {
+        ensureRemaining(1);
+        return data[position++] & 0xFF;
+    }
+
+    byte[] readBytes(int length) {
+        ensureRemaining(length);
+        byte[] bytes = Arrays.copyOfRange(data, position, position + length);
+        position += length;
+        return bytes;
+    }
+
+    long readVarLong() {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new ParseException("Malformed varint at position " + position);
+    }
+
+    int readVarInt() {
+        long value = readVarLong();
+
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new ParseException(format("Varint %d at position %d does not fit in an int", value, position));
+        }
+
+        return (int) value;
+    }
+
+    // Counts are checked before they are used to size collections, every element takes at least one byte
+    int checkCount(long count) {
+        if (count < 0 || count > data.length - position) {
+            throw new ParseException(format("Count %d at position %d exceeds the remaining %d bytes", count, position, data.length - position));
+        }
+
+        return (int) count;
+    }
+
+    long readSignedVarLong() {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    long readFixedLong() {
+        ensureRemaining(8);
+        long value = 0;
+
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (data[position++] & 0xFF);
+        }
+
+        return value;
+    }
+
+    int readFixedInt() {
+        ensureRemaining(4);
+        int value = 0;
+
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | (data[position++] & 0xFF);
+        }
+
+        return value;
+    }
+
+    UUID readUuid() {
+        return new UUID(readFixedLong(), readFixedLong());
+    }
+
+    byte[] readLengthPrefixed() {
+        return readBytes(readVarInt());
+    }
+
+    String readString() {
+        int length = readVarInt();
+        ensureRemaining(length);
+        String value = new String(data, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    String readDictionaryString() {
+        int reference = readVarInt();
+
+        if (reference == 0) {
+            return null;
+        }
+
+        if (reference == 1) {
+            String value = readString();
+            dictionary.add(value);
+            return value;
+        }
+
+        int index = reference - 2;
+
+        if (index >= dictionary.size()) {
+            throw new ParseException(format("Dictionary reference %d is out of bounds at position %d", index, position));
+        }
+
+        return dictionary.get(index);
+    }
+
+    boolean hasRemaining() {
+        return position < data.length;
+    }
+
+    private void ensureRemaining(int bytes) {
+        if (bytes < 0 || position + bytes > data.length) {
+            throw new ParseException(format("Unexpected end of data at position %d, expected %d more bytes", position, bytes));
+        }
+    }
+
+}
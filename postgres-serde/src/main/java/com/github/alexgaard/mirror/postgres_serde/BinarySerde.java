@@ -0,0 +1,533 @@
+package com.github.alexgaard.mirror.postgres_serde;
+
+import com.github.alexgaard.mirror.core.Event;
+import com.github.alexgaard.mirror.core.exception.ParseException;
+import com.github.alexgaard.mirror.core.serde.Deserializer;
+import com.github.alexgaard.mirror.core.serde.Serializer;
+import com.github.alexgaard.mirror.postgres.event.*;
+
+import java.time.*;
+import java.util.*;
+
+import static java.lang.String.format;
+
+/*
+    Compact binary format for PostgresTransactionEvent.
+
+    message     = format, transaction
+    transaction = id, sourceName, committedAt, commitLsn, event count, events
+    event       = event tag, id, transactionId, (insert: namespace, table, fields)
+                                                (update: namespace, table, identifierFields, fields)
+                                                (delete: namespace, table, identifierFields)
+                                                (custom message: prefix, message)
+    field       = name, field type tag + null flag, value
+
+    Namespaces, tables, field names and custom message prefixes are written to a dictionary the first time they occur in a message,
+    and referenced by index afterwards. Timestamps are stored as microseconds since the epoch, which is the precision of postgres.
+ */
+public class BinarySerde {
+
+    public static final Serializer binarySerializer = BinarySerde::serialize;
+
+    public static final Deserializer binaryDeserializer = BinarySerde::deserialize;
+
+    // Field lists are written with names and types
+    static final int PLAIN_FORMAT = 1;
+
+    // Field lists refer to a schema with the names and types, see SchemaSerializer
+    static final int SCHEMA_FORMAT = 2;
+
+    private static final int INSERT_TAG = 1;
+
+    private static final int UPDATE_TAG = 2;
+
+    private static final int DELETE_TAG = 3;
+
+    private static final int CUSTOM_MESSAGE_TAG = 4;
+
+    // The index is the tag of the field type in the format. New types must be appended to keep the format compatible.
+    private static final FieldType[] FIELD_TYPE_TAGS = {
+            FieldType.NOT_IMPLEMENTED,
+            FieldType.FLOAT,
+            FieldType.DOUBLE,
+            FieldType.BOOLEAN,
+            FieldType.TEXT,
+            FieldType.JSON,
+            FieldType.JSONB,
+            FieldType.UUID,
+            FieldType.CHAR,
+            FieldType.INT16,
+            FieldType.INT32,
+            FieldType.INT64,
+            FieldType.BYTES,
+            FieldType.DATE,
+            FieldType.TIME,
+            FieldType.TIMESTAMP,
+            FieldType.TIMESTAMP_TZ,
+            FieldType.FLOAT_ARRAY,
+            FieldType.DOUBLE_ARRAY,
+            FieldType.BOOLEAN_ARRAY,
+            FieldType.TEXT_ARRAY,
+            FieldType.UUID_ARRAY,
+            FieldType.CHAR_ARRAY,
+            FieldType.INT16_ARRAY,
+            FieldType.INT32_ARRAY,
+            FieldType.INT64_ARRAY,
+            FieldType.DATE_ARRAY,
+            FieldType.TIME_ARRAY,
+            FieldType.TIMESTAMP_ARRAY,
+            FieldType.TIMESTAMP_TZ_ARRAY
+    };
+
+    private static final Map<FieldType, Integer> FIELD_TYPE_TAG_LOOKUP = createFieldTypeTagLookup();
+
+    private static final long MICROS_PR_SECOND = 1_000_000;
+
+    private static final int NANOS_PR_MICRO = 1_000;
+
+    private interface ValueWriter {
+        void write(BinaryWriter writer, Object value);
+    }
+
+    private interface ValueReader {
+        Object read(BinaryReader reader);
+    }
+
+    interface FieldsWriter {
+        void write(BinaryWriter writer, List<Field<?>> fields);
+    }
+
+    interface FieldsReader {
+        List<Field<?>> read(BinaryReader reader);
+    }
+
+    public static byte[] serialize(Event event) {
+        if (!(event instanceof PostgresTransactionEvent)) {
+            throw new IllegalArgumentException("Binary serialization is only supported for " + PostgresTransactionEvent.class.getSimpleName());
+        }
+
+        BinaryWriter writer = new BinaryWriter(256);
+
+        writer.writeByte(PLAIN_FORMAT);
+        writeTransaction(writer, (PostgresTransactionEvent) event, BinarySerde::writeFields);
+
+        return writer.toByteArray();
+    }
+
+    public static PostgresTransactionEvent deserialize(byte[] data) {
+        BinaryReader reader = new BinaryReader(data);
+        int format = reader.readByte();
+
+        if (format == SCHEMA_FORMAT) {
+            throw new ParseException("Messages written by " + SchemaSerializer.class.getSimpleName() + " must be read by " + SchemaDeserializer.class.getSimpleName());
+        }
+
+        if (format != PLAIN_FORMAT) {
+            throw new ParseException("Unsupported binary format " + format);
+        }
+
+        return readTransaction(reader, BinarySerde::readFields);
+    }
+
+    static void writeTransaction(BinaryWriter writer, PostgresTransactionEvent transaction, FieldsWriter fieldsWriter) {
+        writeNullable(writer, transaction.id, BinarySerde::writeUuid);
+        writeNullable(writer, transaction.sourceName, (w, v) -> w.writeString((String) v));
+        writeNullable(writer, transaction.committedAt, BinarySerde::writeTimestampTz);
+        writer.writeSignedVarLong(transaction.commitLsn);
+        writeNullable(writer, transaction.events, (w, events) -> {
+            List<?> eventList = (List<?>) events;
+            w.writeVarLong(eventList.size());
+            eventList.forEach(e -> writeEvent(w, (PostgresEvent) e, fieldsWriter));
+        });
+    }
+
+    static PostgresTransactionEvent readTransaction(BinaryReader reader, FieldsReader fieldsReader) {
+        UUID id = (UUID) readNullable(reader, BinaryReader::readUuid);
+        String sourceName = (String) readNullable(reader, BinaryReader::readString);
+        OffsetDateTime committedAt = (OffsetDateTime) readNullable(reader, BinarySerde::readTimestampTz);
+        long commitLsn = reader.readSignedVarLong();
+
+        List<PostgresEvent> events = null;
+
+        if (reader.readByte() != 0) {
+            int count = reader.checkCount(reader.readVarInt());
+            events = new ArrayList<>(count);
+
+            for (int i = 0; i < count; i++) {
+                events.add(readEvent(reader, fieldsReader));
+            }
+        }
+
+        return new PostgresTransactionEvent(id, sourceName, PostgresTransactionEvent.TYPE, events, committedAt, commitLsn);
+    }
+
+    private static void writeEvent(BinaryWriter writer, PostgresEvent event, FieldsWriter fieldsWriter) {
+        if (event instanceof InsertEvent) {
+            InsertEvent insert = (InsertEvent) event;
+            writeEventHeader(writer, INSERT_TAG, event);
+            writer.writeDictionaryString(insert.namespace);
+            writer.writeDictionaryString(insert.table);
+            fieldsWriter.write(writer, insert.fields);
+        } else if (event instanceof UpdateEvent) {
+            UpdateEvent update = (UpdateEvent) event;
+            writeEventHeader(writer, UPDATE_TAG, event);
+            writer.writeDictionaryString(update.namespace);
+            writer.writeDictionaryString(update.table);
+            fieldsWriter.write(writer, update.identifierFields);
+            fieldsWriter.write(writer, update.fields);
+        } else if (event instanceof DeleteEvent) {
+            DeleteEvent delete = (DeleteEvent) event;
+            writeEventHeader(writer, DELETE_TAG, event);
+            writer.writeDictionaryString(delete.namespace);
+            writer.writeDictionaryString(delete.table);
+            fieldsWriter.write(writer, delete.identifierFields);
+        } else if (event instanceof CustomMessageEvent) {
+            CustomMessageEvent customMessage = (CustomMessageEvent) event;
+            writeEventHeader(writer, CUSTOM_MESSAGE_TAG, event);
+            writer.writeDictionaryString(customMessage.prefix);
+            writeNullable(writer, customMessage.message, (w, v) -> w.writeString((String) v));
+        } else {
+            throw new IllegalArgumentException("Unable to serialize unknown event of type " + event.getClass().getSimpleName());
+        }
+    }
+
+    private static void writeEventHeader(BinaryWriter writer, int tag, PostgresEvent event) {
+        writer.writeByte(tag);
+        writeNullable(writer, event.id, BinarySerde::writeUuid);
+        writer.writeSignedVarLong(event.transactionId);
+    }
+
+    private static PostgresEvent readEvent(BinaryReader reader, FieldsReader fieldsReader) {
+        int tag = reader.readByte();
+        UUID id = (UUID) readNullable(reader, BinaryReader::readUuid);
+        int transactionId = (int) reader.readSignedVarLong();
+
+        switch (tag) {
+            case INSERT_TAG: {
+                String namespace = reader.readDictionaryString();
+                String table = reader.readDictionaryString();
+                return new InsertEvent(id, namespace, table, transactionId, fieldsReader.read(reader));
+            }
+            case UPDATE_TAG: {
+                String namespace = reader.readDictionaryString();
+                String table = reader.readDictionaryString();
+                List<Field<?>> identifierFields = fieldsReader.read(reader);
+                return new UpdateEvent(id, namespace, table, transactionId, identifierFields, fieldsReader.read(reader));
+            }
+            case DELETE_TAG: {
+                String namespace = reader.readDictionaryString();
+                String table = reader.readDictionaryString();
+                return new DeleteEvent(id, namespace, table, transactionId, fieldsReader.read(reader));
+            }
+            case CUSTOM_MESSAGE_TAG: {
+                String prefix = reader.readDictionaryString();
+                String message = (String) readNullable(reader, BinaryReader::readString);
+                return new CustomMessageEvent(id, prefix, message, transactionId);
+            }
+            default:
+                throw new ParseException("Unable to deserialize unknown event tag " + tag);
+        }
+    }
+
+    // 0 = null, otherwise the number of fields + 1
+    private static void writeFields(BinaryWriter writer, List<Field<?>> fields) {
+        if (fields == null) {
+            writer.writeVarLong(0);
+            return;
+        }
+
+        writer.writeVarLong(fields.size() + 1L);
+
+        for (Field<?> field : fields) {
+            writer.writeDictionaryString(field.name);
+            writer.writeByte((fieldTypeTag(field.type) << 1) | (field.value == null ? 1 : 0));
+
+            if (field.value != null) {
+                writeValue(writer, field.type, field.value);
+            }
+        }
+    }
+
+    private static List<Field<?>> readFields(BinaryReader reader) {
+        int count = reader.readVarInt() - 1;
+
+        if (count < 0) {
+            return null;
+        }
+
+        List<Field<?>> fields = new ArrayList<>(reader.checkCount(count));
+
+        for (int i = 0; i < count; i++) {
+            String name = reader.readDictionaryString();
+            int typeAndNullFlag = reader.readByte();
+            FieldType type = fieldTypeOf(typeAndNullFlag >>> 1);
+            Object value = (typeAndNullFlag & 1) != 0 ? null : readValue(reader, type);
+
+            fields.add(new Field<>(name, type, value));
+        }
+
+        return fields;
+    }
+
+    static void writeValue(BinaryWriter writer, FieldType type, Object value) {
+        if (type.isArray()) {
+            writeArray(writer, (List<?>) value, valueWriter(type));
+        } else {
+            valueWriter(type).write(writer, value);
+        }
+    }
+
+    static Object readValue(BinaryReader reader, FieldType type) {
+        if (type.isArray()) {
+            return readArray(reader, valueReader(type));
+        }
+
+        return valueReader(type).read(reader);
+    }
+
+    private static ValueWriter valueWriter(FieldType type) {
+        switch (type) {
+            case FLOAT:
+            case FLOAT_ARRAY:
+                return (w, v) -> w.writeFixedInt(Float.floatToIntBits((Float) v));
+            case DOUBLE:
+            case DOUBLE_ARRAY:
+                return (w, v) -> w.writeFixedLong(Double.doubleToLongBits((Double) v));
+            case BOOLEAN:
+            case BOOLEAN_ARRAY:
+                return (w, v) -> w.writeByte((Boolean) v ? 1 : 0);
+            case TEXT:
+            case JSON:
+            case JSONB:
+            case TEXT_ARRAY:
+                return (w, v) -> w.writeString((String) v);
+            case UUID:
+            case UUID_ARRAY:
+                return BinarySerde::writeUuid;
+            case CHAR:
+            case CHAR_ARRAY:
+                return (w, v) -> w.writeVarLong((Character) v);
+            case INT16:
+            case INT16_ARRAY:
+                return (w, v) -> w.writeSignedVarLong((Short) v);
+            case INT32:
+            case INT32_ARRAY:
+                return (w, v) -> w.writeSignedVarLong((Integer) v);
+            case INT64:
+            case INT64_ARRAY:
+                return (w, v) -> w.writeSignedVarLong((Long) v);
+            case BYTES:
+                return (w, v) -> w.writeLengthPrefixed((byte[]) v);
+            case DATE:
+            case DATE_ARRAY:
+                return (w, v) -> w.writeSignedVarLong(((LocalDate) v).toEpochDay());
+            case TIME:
+            case TIME_ARRAY:
+                return (w, v) -> w.writeVarLong(((LocalTime) v).toNanoOfDay() / NANOS_PR_MICRO);
+            case TIMESTAMP:
+            case TIMESTAMP_ARRAY:
+                return (w, v) -> w.writeSignedVarLong(toEpochMicros((LocalDateTime) v));
+            case TIMESTAMP_TZ:
+            case TIMESTAMP_TZ_ARRAY:
+                return BinarySerde::writeTimestampTz;
+            default:
+                throw new IllegalArgumentException("Missing serialization implementation for field of type: " + type);
+        }
+    }
+
+    private static ValueReader valueReader(FieldType type) {
+        switch (type) {
+            case FLOAT:
+            case FLOAT_ARRAY:
+                return r -> Float.intBitsToFloat(r.readFixedInt());
+            case DOUBLE:
+            case DOUBLE_ARRAY:
+                return r -> Double.longBitsToDouble(r.readFixedLong());
+            case BOOLEAN:
+            case BOOLEAN_ARRAY:
+                return r -> r.readByte() != 0;
+            case TEXT:
+            case JSON:
+            case JSONB:
+            case TEXT_ARRAY:
+                return BinaryReader::readString;
+            case UUID:
+            case UUID_ARRAY:
+                return BinaryReader::readUuid;
+            case CHAR:
+            case CHAR_ARRAY:
+                return r -> (char) r.readVarLong();
+            case INT16:
+            case INT16_ARRAY:
+                return r -> (short) r.readSignedVarLong();
+            case INT32:
+            case INT32_ARRAY:
+                return r -> (int) r.readSignedVarLong();
+            case INT64:
+            case INT64_ARRAY:
+                return BinaryReader::readSignedVarLong;
+            case BYTES:
+                return BinaryReader::readLengthPrefixed;
+            case DATE:
+            case DATE_ARRAY:
+                return r -> LocalDate.ofEpochDay(r.readSignedVarLong());
+            case TIME:
+            case TIME_ARRAY:
+                return r -> LocalTime.ofNanoOfDay(r.readVarLong() * NANOS_PR_MICRO);
+            case TIMESTAMP:
+            case TIMESTAMP_ARRAY:
+                return r -> fromEpochMicros(r.readSignedVarLong());
+            case TIMESTAMP_TZ:
+            case TIMESTAMP_TZ_ARRAY:
+                return BinarySerde::readTimestampTz;
+            default:
+                throw new ParseException("Missing deserialization implementation for field of type: " + type);
+        }
+    }
+
+    // Arrays are written as (size << 1 | has nulls), followed by a bitmap of the null elements if there are any
+    private static void writeArray(BinaryWriter writer, List<?> values, ValueWriter elementWriter) {
+        // Immutable lists throw on contains(null)
+        boolean hasNulls = false;
+
+        for (Object value : values) {
+            if (value == null) {
+                hasNulls = true;
+                break;
+            }
+        }
+
+        writer.writeVarLong(((long) values.size() << 1) | (hasNulls ? 1 : 0));
+
+        if (hasNulls) {
+            byte[] nullBitmap = new byte[(values.size() + 7) / 8];
+
+            for (int i = 0; i < values.size(); i++) {
+                if (values.get(i) == null) {
+                    nullBitmap[i / 8] |= 1 << (i % 8);
+                }
+            }
+
+            writer.writeBytes(nullBitmap);
+        }
+
+        for (Object value : values) {
+            if (value != null) {
+                elementWriter.write(writer, value);
+            }
+        }
+    }
+
+    private static List<Object> readArray(BinaryReader reader, ValueReader elementReader) {
+        long sizeAndNullFlag = reader.readVarLong();
+        long size = sizeAndNullFlag >>> 1;
+        boolean hasNulls = (sizeAndNullFlag & 1) != 0;
+
+        // Null elements take no bytes, so the size of arrays with nulls is bounded by the null bitmap instead
+        byte[] nullBitmap = null;
+
+        if (hasNulls) {
+            nullBitmap = reader.readBytes(reader.checkCount((size + 7) / 8));
+        } else {
+            reader.checkCount(size);
+        }
+
+        List<Object> values = new ArrayList<>(Math.toIntExact(size));
+
+        for (int i = 0; i < size; i++) {
+            boolean isNull = nullBitmap != null && (nullBitmap[i / 8] & (1 << (i % 8))) != 0;
+            values.add(isNull ? null : elementReader.read(reader));
+        }
+
+        return values;
+    }
+
+    private static void writeNullable(BinaryWriter writer, Object value, ValueWriter valueWriter) {
+        if (value == null) {
+            writer.writeByte(0);
+            return;
+        }
+
+        writer.writeByte(1);
+        valueWriter.write(writer, value);
+    }
+
+    private static Object readNullable(BinaryReader reader, ValueReader valueReader) {
+        return reader.readByte() != 0 ? valueReader.read(reader) : null;
+    }
+
+    private static void writeUuid(BinaryWriter writer, Object value) {
+        writer.writeUuid((UUID) value);
+    }
+
+    // Microseconds since the epoch followed by the offset in seconds
+    private static void writeTimestampTz(BinaryWriter writer, Object value) {
+        OffsetDateTime timestamp = (OffsetDateTime) value;
+        LocalDateTime utcTimestamp = isInfinity(timestamp.toLocalDateTime())
+                ? timestamp.toLocalDateTime()
+                : LocalDateTime.ofInstant(timestamp.toInstant(), ZoneOffset.UTC);
+
+        writer.writeSignedVarLong(toEpochMicros(utcTimestamp));
+        writer.writeSignedVarLong(timestamp.getOffset().getTotalSeconds());
+    }
+
+    private static OffsetDateTime readTimestampTz(BinaryReader reader) {
+        LocalDateTime utcTimestamp = fromEpochMicros(reader.readSignedVarLong());
+        ZoneOffset offset = ZoneOffset.ofTotalSeconds((int) reader.readSignedVarLong());
+
+        if (isInfinity(utcTimestamp)) {
+            return utcTimestamp.atOffset(offset);
+        }
+
+        return OffsetDateTime.ofInstant(utcTimestamp.toInstant(ZoneOffset.UTC), offset);
+    }
+
+    // Postgres infinity and -infinity are decoded as LocalDateTime.MAX and MIN, and use the same sentinels as the Postgres wire format
+    private static long toEpochMicros(LocalDateTime timestamp) {
+        if (timestamp.equals(LocalDateTime.MAX)) {
+            return Long.MAX_VALUE;
+        } else if (timestamp.equals(LocalDateTime.MIN)) {
+            return Long.MIN_VALUE;
+        }
+
+        Instant instant = timestamp.toInstant(ZoneOffset.UTC);
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), MICROS_PR_SECOND), instant.getNano() / NANOS_PR_MICRO);
+    }
+
+    private static LocalDateTime fromEpochMicros(long micros) {
+        if (micros == Long.MAX_VALUE) {
+            return LocalDateTime.MAX;
+        } else if (micros == Long.MIN_VALUE) {
+            return LocalDateTime.MIN;
+        }
+
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, MICROS_PR_SECOND), (int) Math.floorMod(micros, MICROS_PR_SECOND) * NANOS_PR_MICRO, ZoneOffset.UTC);
+    }
+
+    private static boolean isInfinity(LocalDateTime timestamp) {
+        return timestamp.equals(LocalDateTime.MAX) || timestamp.equals(LocalDateTime.MIN);
+    }
+
+    static int fieldTypeTag(FieldType type) {
+        return FIELD_TYPE_TAG_LOOKUP.get(type);
+    }
+
+    static FieldType fieldTypeOf(int tag) {
+        if (tag >= FIELD_TYPE_TAGS.length) {
+            throw new ParseException(format("Unknown field type tag %d", tag));
+        }
+
+        return FIELD_TYPE_TAGS[tag];
+    }
+
+    private static Map<FieldType, Integer> createFieldTypeTagLookup() {
+        Map<FieldType, Integer> lookup = new EnumMap<>(FieldType.class);
+
+        for (int i = 0; i < FIELD_TYPE_TAGS.length; i++) {
+            lookup.put(FIELD_TYPE_TAGS[i], i);
+        }
+
+        return lookup;
+    }
+
+}
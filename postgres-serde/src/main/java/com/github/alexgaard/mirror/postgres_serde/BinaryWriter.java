@@ -0,0 +1,114 @@
+package com.github.alexgaard.mirror.postgres_serde;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/*
+    Writes primitives to a growing byte array.
+    Integers are written as varints, signed integers are zigzag encoded so that small negative numbers stay small.
+ */
+class BinaryWriter {
+
+    private byte[] buffer;
+
+    private int position = 0;
+
+    // Key = string, value = index in the dictionary of the message
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    BinaryWriter(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    void writeBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    void writeVarLong(long value) {
+        ensureCapacity(10);
+
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        buffer[position++] = (byte) value;
+    }
+
+    void writeSignedVarLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void writeFixedLong(long value) {
+        ensureCapacity(8);
+
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[position++] = (byte) (value >>> shift);
+        }
+    }
+
+    void writeFixedInt(int value) {
+        ensureCapacity(4);
+
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            buffer[position++] = (byte) (value >>> shift);
+        }
+    }
+
+    void writeUuid(UUID uuid) {
+        writeFixedLong(uuid.getMostSignificantBits());
+        writeFixedLong(uuid.getLeastSignificantBits());
+    }
+
+    void writeLengthPrefixed(byte[] bytes) {
+        writeVarLong(bytes.length);
+        writeBytes(bytes);
+    }
+
+    void writeString(String value) {
+        writeLengthPrefixed(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /*
+        Strings that repeat within a message, such as table and column names, are only written the first time.
+        0 = null, 1 = new string followed by the string, n + 2 = the n-th string in the dictionary.
+     */
+    void writeDictionaryString(String value) {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+
+        Integer index = dictionary.get(value);
+
+        if (index != null) {
+            writeVarLong(index + 2L);
+            return;
+        }
+
+        dictionary.put(value, dictionary.size());
+        writeVarLong(1);
+        writeString(value);
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (position + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+        }
+    }
+
+}
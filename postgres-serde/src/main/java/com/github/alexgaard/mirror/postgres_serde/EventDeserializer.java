@@ -1,17 +1,22 @@
 package com.github.alexgaard.mirror.postgres_serde;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.github.alexgaard.mirror.core.Event;
 import com.github.alexgaard.mirror.postgres.event.*;
 
 import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 
 public class EventDeserializer extends StdDeserializer<Event> {
 
+    private final PostgresEventDeserializer postgresEventDeserializer = new PostgresEventDeserializer();
+
     public EventDeserializer() {
         this(null);
     }
@@ -20,18 +25,87 @@ public class EventDeserializer extends StdDeserializer<Event> {
         super(vc);
     }
 
+    /*
+        Reads the properties of the event in a single pass, the type of the event is only needed when the event is created.
+        Unknown properties are skipped.
+     */
     @Override
     public Event deserialize(JsonParser jsonParser, DeserializationContext ctx) throws IOException {
-        final ObjectMapper mapper = (ObjectMapper) jsonParser.getCodec();
-        final JsonNode node = mapper.readTree(jsonParser);
+        UUID id = null;
+        String type = null;
+        String sourceName = null;
+        OffsetDateTime createdAt = null;
+        OffsetDateTime committedAt = null;
+        List<PostgresEvent> events = null;
+        long commitLsn = -1;
+
+        JsonToken token = jsonParser.currentToken() == JsonToken.START_OBJECT
+                ? jsonParser.nextToken()
+                : jsonParser.currentToken();
 
-        String type = node.get("type").asText();
+        for (; token == JsonToken.FIELD_NAME; token = jsonParser.nextToken()) {
+            String property = jsonParser.currentName();
+            jsonParser.nextToken();
+
+            switch (property) {
+                case "id":
+                    id = readUuid(jsonParser);
+                    break;
+                case "type":
+                    type = jsonParser.getValueAsString();
+                    break;
+                case "sourceName":
+                    sourceName = jsonParser.getValueAsString();
+                    break;
+                case "createdAt":
+                    createdAt = readOffsetDateTime(jsonParser, ctx);
+                    break;
+                case "committedAt":
+                    committedAt = readOffsetDateTime(jsonParser, ctx);
+                    break;
+                case "events":
+                    events = readEvents(jsonParser, ctx);
+                    break;
+                case "commitLsn":
+                    commitLsn = jsonParser.getValueAsLong(-1);
+                    break;
+                default:
+                    jsonParser.skipChildren();
+            }
+        }
 
         if (PostgresTransactionEvent.TYPE.equals(type)) {
-            return mapper.treeToValue(node, PostgresTransactionEvent.class);
+            return new PostgresTransactionEvent(id, sourceName, type, events, committedAt, commitLsn);
         }
 
-        return mapper.treeToValue(node, Event.class);
+        return new Event(id, sourceName, type, createdAt);
+    }
+
+    private List<PostgresEvent> readEvents(JsonParser jsonParser, DeserializationContext ctx) throws IOException {
+        if (jsonParser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+
+        List<PostgresEvent> events = new ArrayList<>();
+
+        while (jsonParser.nextToken() != JsonToken.END_ARRAY) {
+            events.add(postgresEventDeserializer.deserialize(jsonParser, ctx));
+        }
+
+        return events;
+    }
+
+    private static OffsetDateTime readOffsetDateTime(JsonParser jsonParser, DeserializationContext ctx) throws IOException {
+        if (jsonParser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+
+        return ctx.readValue(jsonParser, OffsetDateTime.class);
+    }
+
+    static UUID readUuid(JsonParser jsonParser) throws IOException {
+        String value = jsonParser.getValueAsString();
+        return value != null ? UUID.fromString(value) : null;
     }
 
 }
@@ -1,10 +1,10 @@
 package com.github.alexgaard.mirror.postgres_serde;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.github.alexgaard.mirror.postgres.event.Field;
 import com.github.alexgaard.mirror.postgres.event.FieldType;
 
@@ -13,14 +13,17 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 
 public class FieldDeserializer extends StdDeserializer<Field<?>> {
 
+    private interface ElementReader<T> {
+        T read(JsonParser jsonParser) throws IOException;
+    }
+
     public FieldDeserializer() {
         this(null);
     }
@@ -29,156 +32,147 @@ public class FieldDeserializer extends StdDeserializer<Field<?>> {
         super(vc);
     }
 
+    /*
+        The value is decoded directly from the parser when the type has already been read.
+        If the value comes before the type, the tokens of the value are buffered until the type is known.
+     */
     @Override
     public Field<?> deserialize(JsonParser jsonParser, DeserializationContext ctx) throws IOException {
-        final ObjectMapper mapper = (ObjectMapper) jsonParser.getCodec();
-        final JsonNode node = mapper.readTree(jsonParser);
+        String name = null;
+        FieldType type = null;
+        Field<?> field = null;
+        TokenBuffer bufferedValue = null;
+
+        JsonToken token = jsonParser.currentToken() == JsonToken.START_OBJECT
+                ? jsonParser.nextToken()
+                : jsonParser.currentToken();
+
+        for (; token == JsonToken.FIELD_NAME; token = jsonParser.nextToken()) {
+            String property = jsonParser.currentName();
+            jsonParser.nextToken();
+
+            switch (property) {
+                case "name":
+                    name = jsonParser.getValueAsString();
+                    break;
+                case "type":
+                    type = FieldType.valueOf(jsonParser.getValueAsString());
+                    break;
+                case "value":
+                    if (type != null) {
+                        field = toField(name, type, jsonParser);
+                    } else {
+                        bufferedValue = new TokenBuffer(jsonParser, ctx);
+                        bufferedValue.copyCurrentStructure(jsonParser);
+                    }
+                    break;
+                default:
+                    jsonParser.skipChildren();
+            }
+        }
 
-        String name = node.get("name").asText();
-        FieldType type = FieldType.valueOf(node.get("type").asText());
-        JsonNode valueNode = node.get("value");
+        if (type == null) {
+            throw new IllegalArgumentException("Unable to deserialize field without a type");
+        }
 
-        return toField(name, type, valueNode);
+        if (bufferedValue != null) {
+            try (JsonParser valueParser = bufferedValue.asParser(jsonParser.getCodec())) {
+                valueParser.nextToken();
+                return toField(name, type, valueParser);
+            }
+        }
+
+        // The name might come after the value
+        if (field != null) {
+            return new Field<>(name, field.type, field.value);
+        }
+
+        return new Field<>(name, type, null);
     }
 
-    private static Field<?> toField(String name, FieldType type, JsonNode valueNode) throws IOException {
-        if (valueNode.isNull()) {
+    private static Field<?> toField(String name, FieldType type, JsonParser jsonParser) throws IOException {
+        if (jsonParser.currentToken() == JsonToken.VALUE_NULL) {
             return new Field<>(name, type, null);
         }
 
         switch (type) {
             case FLOAT:
-                return Field.floatField(name, valueNode.floatValue());
+                return Field.floatField(name, readFloat(jsonParser));
             case DOUBLE:
-                return Field.doubleField(name, valueNode.doubleValue());
+                return Field.doubleField(name, jsonParser.getValueAsDouble());
             case BOOLEAN:
-                return Field.booleanField(name, valueNode.booleanValue());
+                return Field.booleanField(name, jsonParser.getValueAsBoolean());
             case TEXT:
-                return Field.textField(name, valueNode.textValue());
+                return Field.textField(name, jsonParser.getValueAsString());
             case JSON:
-                return Field.jsonField(name, valueNode.textValue());
+                return Field.jsonField(name, jsonParser.getValueAsString());
             case JSONB:
-                return Field.jsonbField(name, valueNode.textValue());
+                return Field.jsonbField(name, jsonParser.getValueAsString());
             case UUID:
-                return Field.uuidField(name, UUID.fromString(valueNode.textValue()));
+                return Field.uuidField(name, UUID.fromString(jsonParser.getValueAsString()));
             case CHAR:
-                return Field.charField(name, valueNode.textValue().charAt(0));
+                return Field.charField(name, jsonParser.getValueAsString().charAt(0));
             case INT16:
-                return Field.int16Field(name, valueNode.shortValue());
+                return Field.int16Field(name, (short) jsonParser.getValueAsInt());
             case INT32:
-                return Field.int32Field(name, valueNode.intValue());
+                return Field.int32Field(name, jsonParser.getValueAsInt());
             case INT64:
-                return Field.int64Field(name, valueNode.longValue());
+                return Field.int64Field(name, jsonParser.getValueAsLong());
             case BYTES:
-                return Field.bytesField(name, valueNode.binaryValue());
+                return Field.bytesField(name, jsonParser.getBinaryValue());
             case DATE:
-                return Field.dateField(name, LocalDate.parse(valueNode.textValue()));
+                return Field.dateField(name, LocalDate.parse(jsonParser.getValueAsString()));
             case TIME:
-                return Field.timeField(name, LocalTime.parse(valueNode.textValue()));
+                return Field.timeField(name, LocalTime.parse(jsonParser.getValueAsString()));
             case TIMESTAMP:
-                return Field.timestampField(name, LocalDateTime.parse(valueNode.textValue()));
+                return Field.timestampField(name, LocalDateTime.parse(jsonParser.getValueAsString()));
             case TIMESTAMP_TZ:
-                return Field.timestampTzField(name, OffsetDateTime.parse(valueNode.textValue()));
-
-            case FLOAT_ARRAY: {
-                List<Float> values = StreamSupport.stream(valueNode.spliterator(), false)
-                        .map(JsonNode::floatValue)
-                        .collect(Collectors.toList());
-
-                return Field.floatArrayField(name, values);
-            }
-            case DOUBLE_ARRAY: {
-                List<Double> values = StreamSupport.stream(valueNode.spliterator(), false)
-                        .map(JsonNode::doubleValue)
-                        .collect(Collectors.toList());
-
-                return Field.doubleArrayField(name, values);
-            }
-            case BOOLEAN_ARRAY: {
-                List<Boolean> values = StreamSupport.stream(valueNode.spliterator(), false)
-                        .map(JsonNode::booleanValue)
-                        .collect(Collectors.toList());
-
-                return Field.booleanArrayField(name, values);
-            }
-            case TEXT_ARRAY: {
-                List<String> values = StreamSupport.stream(valueNode.spliterator(), false)
-                        .map(JsonNode::asText)
-                        .collect(Collectors.toList());
-
-                return Field.textArrayField(name, values);
-            }
-            case UUID_ARRAY: {
-                List<UUID> values = StreamSupport.stream(valueNode.spliterator(), false)
-                        .map(JsonNode::asText)
-                        .map(UUID::fromString)
-                        .collect(Collectors.toList());
-
-                return Field.uuidArrayField(name, values);
-            }
-            case CHAR_ARRAY: {
-                List<Character> values = StreamSupport.stream(valueNode.spliterator(), false)
-                        .map(n -> n.asText().charAt(0))
-                        .collect(Collectors.toList());
-
-                return Field.charArrayField(name, values);
-            }
-            case INT16_ARRAY: {
-                List<Short> values = StreamSupport.stream(valueNode.spliterator(), false)
-                        .map(JsonNode::shortValue)
-                        .collect(Collectors.toList());
-
-                return Field.int16ArrayField(name, values);
-            }
-            case INT32_ARRAY: {
-                List<Integer> values = StreamSupport.stream(valueNode.spliterator(), false)
-                        .map(JsonNode::intValue)
-                        .collect(Collectors.toList());
-
-                return Field.int32ArrayField(name, values);
-            }
-            case INT64_ARRAY: {
-                List<Long> values = StreamSupport.stream(valueNode.spliterator(), false)
-                        .map(JsonNode::longValue)
-                        .collect(Collectors.toList());
-
-                return Field.int64ArrayField(name, values);
-            }
-            case DATE_ARRAY: {
-                List<LocalDate> values = StreamSupport.stream(valueNode.spliterator(), false)
-                        .map(JsonNode::asText)
-                        .map(LocalDate::parse)
-                        .collect(Collectors.toList());
-
-                return Field.dateArrayField(name, values);
-            }
-            case TIME_ARRAY: {
-                List<LocalTime> values = StreamSupport.stream(valueNode.spliterator(), false)
-                        .map(JsonNode::asText)
-                        .map(LocalTime::parse)
-                        .collect(Collectors.toList());
+                return Field.timestampTzField(name, OffsetDateTime.parse(jsonParser.getValueAsString()));
+
+            case FLOAT_ARRAY:
+                return Field.floatArrayField(name, readArray(jsonParser, FieldDeserializer::readFloat));
+            case DOUBLE_ARRAY:
+                return Field.doubleArrayField(name, readArray(jsonParser, JsonParser::getValueAsDouble));
+            case BOOLEAN_ARRAY:
+                return Field.booleanArrayField(name, readArray(jsonParser, JsonParser::getValueAsBoolean));
+            case TEXT_ARRAY:
+                return Field.textArrayField(name, readArray(jsonParser, JsonParser::getValueAsString));
+            case UUID_ARRAY:
+                return Field.uuidArrayField(name, readArray(jsonParser, p -> UUID.fromString(p.getValueAsString())));
+            case CHAR_ARRAY:
+                return Field.charArrayField(name, readArray(jsonParser, p -> p.getValueAsString().charAt(0)));
+            case INT16_ARRAY:
+                return Field.int16ArrayField(name, readArray(jsonParser, p -> (short) p.getValueAsInt()));
+            case INT32_ARRAY:
+                return Field.int32ArrayField(name, readArray(jsonParser, JsonParser::getValueAsInt));
+            case INT64_ARRAY:
+                return Field.int64ArrayField(name, readArray(jsonParser, JsonParser::getValueAsLong));
+            case DATE_ARRAY:
+                return Field.dateArrayField(name, readArray(jsonParser, p -> LocalDate.parse(p.getValueAsString())));
+            case TIME_ARRAY:
+                return Field.timeArrayField(name, readArray(jsonParser, p -> LocalTime.parse(p.getValueAsString())));
+            case TIMESTAMP_ARRAY:
+                return Field.timestampArrayField(name, readArray(jsonParser, p -> LocalDateTime.parse(p.getValueAsString())));
+            case TIMESTAMP_TZ_ARRAY:
+                return Field.timestampTzArrayField(name, readArray(jsonParser, p -> OffsetDateTime.parse(p.getValueAsString())));
+            default:
+                throw new IllegalArgumentException("Missing deserialization implementation for field of type: " + type);
+        }
+    }
 
-                return Field.timeArrayField(name, values);
-            }
-            case TIMESTAMP_ARRAY: {
-                List<LocalDateTime> values = StreamSupport.stream(valueNode.spliterator(), false)
-                        .map(JsonNode::asText)
-                        .map(LocalDateTime::parse)
-                        .collect(Collectors.toList());
+    // Non-finite values are written as strings
+    private static float readFloat(JsonParser jsonParser) throws IOException {
+        return (float) jsonParser.getValueAsDouble();
+    }
 
-                return Field.timestampArrayField(name, values);
-            }
-            case TIMESTAMP_TZ_ARRAY: {
-                List<OffsetDateTime> values = StreamSupport.stream(valueNode.spliterator(), false)
-                        .map(JsonNode::asText)
-                        .map(OffsetDateTime::parse)
-                        .collect(Collectors.toList());
+    private static <T> List<T> readArray(JsonParser jsonParser, ElementReader<T> elementReader) throws IOException {
+        List<T> values = new ArrayList<>();
 
-                return Field.timestampTzArrayField(name, values);
-            }
-            default:
-                throw new IllegalArgumentException("Missing deserialization implementation for field of type: " + type);
+        while (jsonParser.nextToken() != JsonToken.END_ARRAY) {
+            values.add(jsonParser.currentToken() == JsonToken.VALUE_NULL ? null : elementReader.read(jsonParser));
         }
+
+        return values;
     }
 
 }
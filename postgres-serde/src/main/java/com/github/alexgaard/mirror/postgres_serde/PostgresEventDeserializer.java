@@ -2,15 +2,21 @@ package com.github.alexgaard.mirror.postgres_serde;
 
 import com.github.alexgaard.mirror.postgres.event.*;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static com.github.alexgaard.mirror.postgres_serde.EventDeserializer.readUuid;
 
 public class PostgresEventDeserializer extends StdDeserializer<PostgresEvent> {
 
+    private final FieldDeserializer fieldDeserializer = new FieldDeserializer();
+
     public PostgresEventDeserializer() {
         this(null);
     }
@@ -21,27 +27,91 @@ public class PostgresEventDeserializer extends StdDeserializer<PostgresEvent> {
 
     @Override
     public PostgresEvent deserialize(JsonParser jsonParser, DeserializationContext ctx) throws IOException {
-        final ObjectMapper mapper = (ObjectMapper) jsonParser.getCodec();
-        final JsonNode node = mapper.readTree(jsonParser);
+        UUID id = null;
+        String type = null;
+        int transactionId = -1;
+        String namespace = null;
+        String table = null;
+        List<Field<?>> fields = null;
+        List<Field<?>> identifierFields = null;
+        String prefix = null;
+        String message = null;
+
+        JsonToken token = jsonParser.currentToken() == JsonToken.START_OBJECT
+                ? jsonParser.nextToken()
+                : jsonParser.currentToken();
+
+        for (; token == JsonToken.FIELD_NAME; token = jsonParser.nextToken()) {
+            String property = jsonParser.currentName();
+            jsonParser.nextToken();
 
-        String type = node.get("type").asText();
+            switch (property) {
+                case "id":
+                    id = readUuid(jsonParser);
+                    break;
+                case "type":
+                    type = jsonParser.getValueAsString();
+                    break;
+                case "transactionId":
+                    transactionId = jsonParser.getValueAsInt(-1);
+                    break;
+                case "namespace":
+                    namespace = jsonParser.getValueAsString();
+                    break;
+                case "table":
+                    table = jsonParser.getValueAsString();
+                    break;
+                case "fields":
+                    fields = readFields(jsonParser, ctx);
+                    break;
+                case "identifierFields":
+                    identifierFields = readFields(jsonParser, ctx);
+                    break;
+                case "prefix":
+                    prefix = jsonParser.getValueAsString();
+                    break;
+                case "message":
+                    message = jsonParser.getValueAsString();
+                    break;
+                default:
+                    jsonParser.skipChildren();
+            }
+        }
+
+        if (type == null) {
+            throw new IllegalArgumentException("Unable to deserialize event without a type");
+        }
 
         switch (type) {
             case InsertEvent.TYPE: {
-                return mapper.treeToValue(node, InsertEvent.class);
+                return new InsertEvent(id, namespace, table, transactionId, fields);
             }
             case UpdateEvent.TYPE: {
-                return mapper.treeToValue(node, UpdateEvent.class);
+                return new UpdateEvent(id, namespace, table, transactionId, identifierFields, fields);
             }
             case DeleteEvent.TYPE: {
-                return mapper.treeToValue(node, DeleteEvent.class);
+                return new DeleteEvent(id, namespace, table, transactionId, identifierFields);
             }
             case CustomMessageEvent.TYPE: {
-                return mapper.treeToValue(node, CustomMessageEvent.class);
+                return new CustomMessageEvent(id, prefix, message, transactionId);
             }
             default:
                 throw new IllegalArgumentException("Unable to deserialize unknown event of type " + type);
         }
     }
 
+    private List<Field<?>> readFields(JsonParser jsonParser, DeserializationContext ctx) throws IOException {
+        if (jsonParser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+
+        List<Field<?>> fields = new ArrayList<>();
+
+        while (jsonParser.nextToken() != JsonToken.END_ARRAY) {
+            fields.add(fieldDeserializer.deserialize(jsonParser, ctx));
+        }
+
+        return fields;
+    }
+
 }
@@ -0,0 +1,74 @@
+package com.github.alexgaard.mirror.postgres_serde;
+
+import com.github.alexgaard.mirror.postgres.event.Field;
+import com.github.alexgaard.mirror.postgres.event.FieldType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// The names and types of a list of fields, in order
+class RowSchema {
+
+    final String[] names;
+
+    final FieldType[] types;
+
+    RowSchema(String[] names, FieldType[] types) {
+        this.names = names;
+        this.types = types;
+    }
+
+    static RowSchema of(List<Field<?>> fields) {
+        String[] names = new String[fields.size()];
+        FieldType[] types = new FieldType[fields.size()];
+
+        for (int i = 0; i < fields.size(); i++) {
+            names[i] = fields.get(i).name;
+            types[i] = fields.get(i).type;
+        }
+
+        return new RowSchema(names, types);
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    List<Field<?>> toFields(Object[] values) {
+        List<Field<?>> fields = new ArrayList<>(names.length);
+
+        for (int i = 0; i < names.length; i++) {
+            fields.add(new Field<>(names[i], types[i], values[i]));
+        }
+
+        return fields;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        RowSchema that = (RowSchema) o;
+
+        if (!Arrays.equals(names, that.names)) return false;
+        return Arrays.equals(types, that.types);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Arrays.hashCode(names);
+        result = 31 * result + Arrays.hashCode(types);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "RowSchema{" +
+                "names=" + Arrays.toString(names) +
+                ", types=" + Arrays.toString(types) +
+                '}';
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.github.alexgaard.mirror.postgres_serde;
+
+import com.github.alexgaard.mirror.core.exception.ParseException;
+import com.github.alexgaard.mirror.core.serde.Deserializer;
+import com.github.alexgaard.mirror.postgres.event.Field;
+import com.github.alexgaard.mirror.postgres.event.FieldType;
+import com.github.alexgaard.mirror.postgres.event.PostgresTransactionEvent;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static com.github.alexgaard.mirror.postgres_serde.BinarySerde.PLAIN_FORMAT;
+import static com.github.alexgaard.mirror.postgres_serde.BinarySerde.SCHEMA_FORMAT;
+import static java.lang.String.format;
+
+/*
+    Reads messages written by SchemaSerializer, and caches the schemas sent by each session.
+    Messages which refer to a schema that has not been received yet fail with a ParseException, and succeed once the sender
+    has resent the schema. This can only happen if the serializer caches schemas across messages, see SchemaSerializer.
+    Messages written by BinarySerde are also supported.
+ */
+public class SchemaDeserializer implements Deserializer {
+
+    private final static int DEFAULT_MAX_SCHEMAS = 100_000;
+
+    private static class SchemaKey {
+        final long session;
+
+        final long id;
+
+        SchemaKey(long session, long id) {
+            this.session = session;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            SchemaKey that = (SchemaKey) o;
+
+            return session == that.session && id == that.id;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(session, id);
+        }
+    }
+
+    private final Map<SchemaKey, RowSchema> schemas;
+
+    public SchemaDeserializer() {
+        this(DEFAULT_MAX_SCHEMAS);
+    }
+
+    public SchemaDeserializer(int maxSchemas) {
+        this.schemas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SchemaKey, RowSchema> eldest) {
+                return size() > maxSchemas;
+            }
+        };
+    }
+
+    @Override
+    public synchronized PostgresTransactionEvent deserialize(byte[] data) {
+        BinaryReader reader = new BinaryReader(data);
+        int format = reader.readByte();
+
+        if (format == PLAIN_FORMAT) {
+            return BinarySerde.deserialize(data);
+        }
+
+        if (format != SCHEMA_FORMAT) {
+            throw new ParseException("Unsupported binary format " + format);
+        }
+
+        long session = reader.readFixedLong();
+
+        return BinarySerde.readTransaction(reader, r -> readFields(r, session));
+    }
+
+    private List<Field<?>> readFields(BinaryReader reader, long session) {
+        long reference = reader.readVarLong();
+
+        if (reference == 0) {
+            return null;
+        }
+
+        SchemaKey key = new SchemaKey(session, reference >>> 1);
+        RowSchema schema;
+
+        if ((reference & 1) != 0) {
+            schema = readDefinition(reader);
+            schemas.put(key, schema);
+        } else {
+            schema = schemas.get(key);
+
+            if (schema == null) {
+                throw new ParseException(format("Unknown schema %d from session %d, waiting for the sender to resend it", key.id, session));
+            }
+        }
+
+        byte[] nullBitmap = reader.readBytes((schema.size() + 7) / 8);
+        Object[] values = new Object[schema.size()];
+
+        for (int i = 0; i < schema.size(); i++) {
+            boolean isNull = (nullBitmap[i / 8] & (1 << (i % 8))) != 0;
+            values[i] = isNull ? null : BinarySerde.readValue(reader, schema.types[i]);
+        }
+
+        return schema.toFields(values);
+    }
+
+    private static RowSchema readDefinition(BinaryReader reader) {
+        // Every column takes at least one byte, which bounds the arrays allocated from the size on the wire
+        int size = reader.checkCount(reader.readVarInt());
+        String[] names = new String[size];
+        FieldType[] types = new FieldType[size];
+
+        for (int i = 0; i < size; i++) {
+            names[i] = reader.readString();
+            types[i] = BinarySerde.fieldTypeOf(reader.readByte());
+        }
+
+        return new RowSchema(names, types);
+    }
+
+}
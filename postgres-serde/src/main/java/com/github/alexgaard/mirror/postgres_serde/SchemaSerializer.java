@@ -0,0 +1,145 @@
+package com.github.alexgaard.mirror.postgres_serde;
+
+import com.github.alexgaard.mirror.core.Event;
+import com.github.alexgaard.mirror.core.serde.Serializer;
+import com.github.alexgaard.mirror.postgres.event.Field;
+import com.github.alexgaard.mirror.postgres.event.PostgresTransactionEvent;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.github.alexgaard.mirror.postgres_serde.BinarySerde.SCHEMA_FORMAT;
+
+/*
+    Binary serializer where the names and types of each field list are replaced by the id of a schema.
+    Must be read by SchemaDeserializer.
+
+    By default the schema is sent inline the first time it is used in each message, and field lists using the same schema
+    later in the message only refer to it. Every message can then be read by any receiver.
+
+    With a resend interval, schemas are also cached across messages. The schema is only sent the first time it is used,
+    and again when the resend interval has passed since it was last sent. The sender gets no feedback from the receivers,
+    so a receiver which restarts, joins later or evicts the schema cannot read messages using the schema until it is resent,
+    and must be able to retry them until then. This is incompatible with receivers that drop messages which fail,
+    such as the DEAD_LETTER failure strategy of the RabbitMQ receiver.
+
+    Schema ids are scoped to a session, which is unique for each serializer instance.
+
+    message     = format, session, transaction (see BinarySerde)
+    field list  = 0 if null, otherwise (schema id << 1 | has definition), [definition], null bitmap, values that are not null
+    definition  = column count, (name, field type tag) for each column
+ */
+public class SchemaSerializer implements Serializer {
+
+    private final static int DEFAULT_MAX_SCHEMAS = 10_000;
+
+    private static class SchemaEntry {
+        final long id;
+
+        long lastSentAt = -1;
+
+        SchemaEntry(long id) {
+            this.id = id;
+        }
+    }
+
+    private final long session = new SecureRandom().nextLong();
+
+    private final long resendIntervalMs;
+
+    // Least recently used schemas are evicted, and get a new id if they are used again
+    private final Map<RowSchema, SchemaEntry> schemas;
+
+    // Ids start at 1, 0 is used for null field lists
+    private long nextSchemaId = 1;
+
+    // Schemas are sent in every message they are used in
+    public SchemaSerializer() {
+        this(Duration.ZERO);
+    }
+
+    // Schemas are cached by the receivers across messages, see the comment on the class
+    public SchemaSerializer(Duration resendInterval) {
+        this(resendInterval, DEFAULT_MAX_SCHEMAS);
+    }
+
+    public SchemaSerializer(Duration resendInterval, int maxSchemas) {
+        this.resendIntervalMs = resendInterval.toMillis();
+        this.schemas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RowSchema, SchemaEntry> eldest) {
+                return size() > maxSchemas;
+            }
+        };
+    }
+
+    @Override
+    public synchronized byte[] serialize(Event event) {
+        if (!(event instanceof PostgresTransactionEvent)) {
+            throw new IllegalArgumentException("Binary serialization is only supported for " + PostgresTransactionEvent.class.getSimpleName());
+        }
+
+        BinaryWriter writer = new BinaryWriter(256);
+        long now = System.currentTimeMillis();
+        Set<Long> sentInMessage = new HashSet<>();
+
+        writer.writeByte(SCHEMA_FORMAT);
+        writer.writeFixedLong(session);
+        BinarySerde.writeTransaction(writer, (PostgresTransactionEvent) event, (w, fields) -> writeFields(w, fields, now, sentInMessage));
+
+        return writer.toByteArray();
+    }
+
+    private void writeFields(BinaryWriter writer, List<Field<?>> fields, long now, Set<Long> sentInMessage) {
+        if (fields == null) {
+            writer.writeVarLong(0);
+            return;
+        }
+
+        RowSchema schema = RowSchema.of(fields);
+        SchemaEntry entry = schemas.computeIfAbsent(schema, (ignored) -> new SchemaEntry(nextSchemaId++));
+
+        // The definition is only written once for each message
+        boolean writeDefinition = !sentInMessage.contains(entry.id)
+                && (entry.lastSentAt < 0 || now - entry.lastSentAt >= resendIntervalMs);
+
+        writer.writeVarLong((entry.id << 1) | (writeDefinition ? 1 : 0));
+
+        if (writeDefinition) {
+            writeDefinition(writer, schema);
+            entry.lastSentAt = now;
+            sentInMessage.add(entry.id);
+        }
+
+        byte[] nullBitmap = new byte[(fields.size() + 7) / 8];
+
+        for (int i = 0; i < fields.size(); i++) {
+            if (fields.get(i).value == null) {
+                nullBitmap[i / 8] |= 1 << (i % 8);
+            }
+        }
+
+        writer.writeBytes(nullBitmap);
+
+        for (Field<?> field : fields) {
+            if (field.value != null) {
+                BinarySerde.writeValue(writer, field.type, field.value);
+            }
+        }
+    }
+
+    private static void writeDefinition(BinaryWriter writer, RowSchema schema) {
+        writer.writeVarLong(schema.size());
+
+        for (int i = 0; i < schema.size(); i++) {
+            writer.writeString(schema.names[i]);
+            writer.writeByte(BinarySerde.fieldTypeTag(schema.types[i]));
+        }
+    }
+
+}
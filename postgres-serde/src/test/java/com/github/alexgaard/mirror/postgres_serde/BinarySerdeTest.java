@@ -0,0 +1,114 @@
+package com.github.alexgaard.mirror.postgres_serde;
+
+import com.github.alexgaard.mirror.core.exception.ParseException;
+import com.github.alexgaard.mirror.postgres.event.Field;
+import com.github.alexgaard.mirror.postgres.event.FieldType;
+import com.github.alexgaard.mirror.postgres.event.InsertEvent;
+import com.github.alexgaard.mirror.postgres.event.PostgresTransactionEvent;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.github.alexgaard.mirror.postgres_serde.TestEvents.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinarySerdeTest {
+
+    @Test
+    public void shouldRoundTripEveryFieldType() throws IOException {
+        Set<FieldType> types = EnumSet.noneOf(FieldType.class);
+        allFieldTypes().forEach(f -> types.add(f.type));
+        types.add(FieldType.NOT_IMPLEMENTED);
+
+        assertEquals(EnumSet.allOf(FieldType.class), types);
+
+        assertRoundTrip(transaction(allFieldTypes()));
+    }
+
+    @Test
+    public void shouldRoundTripNullFields() throws IOException {
+        assertRoundTrip(transaction(nullFields()));
+    }
+
+    @Test
+    public void shouldRoundTripArraysWithNullsAndEmptyArrays() throws IOException {
+        assertRoundTrip(transaction(arrayEdgeCases()));
+    }
+
+    @Test
+    public void shouldRoundTripInfinityTimestamps() throws IOException {
+        assertRoundTrip(transaction(infinityTimestamps()));
+    }
+
+    @Test
+    public void shouldRoundTripTransactionWithNulls() throws IOException {
+        assertRoundTrip(new PostgresTransactionEvent(null, null, PostgresTransactionEvent.TYPE, null, null, -1));
+        assertRoundTrip(PostgresTransactionEvent.of("test-source", List.of(), OffsetDateTime.now().withNano(0)));
+    }
+
+    @Test
+    public void shouldThrowOnUnsupportedFormat() {
+        byte[] data = BinarySerde.serialize(transaction(List.of(Field.int32Field("id", 1))));
+        data[0] = 42;
+
+        assertThrows(ParseException.class, () -> BinarySerde.deserialize(data));
+    }
+
+    @Test
+    public void shouldThrowOnCountsExceedingTheData() {
+        BinaryWriter events = new BinaryWriter(16);
+        events.writeByte(BinarySerde.PLAIN_FORMAT);
+        events.writeBytes(new byte[]{0, 0, 0});
+        events.writeSignedVarLong(-1);
+        events.writeByte(1);
+        events.writeVarLong(Integer.MAX_VALUE);
+
+        assertThrows(ParseException.class, () -> BinarySerde.deserialize(events.toByteArray()));
+
+        // The fields of the insert are written last, as the number of fields + 1
+        PostgresTransactionEvent transaction = PostgresTransactionEvent.of(
+                "test-source",
+                List.of(new InsertEvent(UUID.randomUUID(), "public", "data_types", 1, List.of())),
+                OffsetDateTime.now()
+        );
+        byte[] data = BinarySerde.serialize(transaction);
+        BinaryWriter fields = new BinaryWriter(data.length + 16);
+        fields.writeBytes(Arrays.copyOf(data, data.length - 1));
+        fields.writeVarLong(Integer.MAX_VALUE);
+
+        assertThrows(ParseException.class, () -> BinarySerde.deserialize(fields.toByteArray()));
+
+        BinaryWriter outOfRange = new BinaryWriter(16);
+        outOfRange.writeVarLong(Long.MAX_VALUE);
+
+        assertThrows(ParseException.class, () -> new BinaryReader(outOfRange.toByteArray()).readVarInt());
+        assertThrows(ParseException.class, () -> new BinaryReader(new byte[8]).checkCount(-1));
+    }
+
+    @Test
+    public void shouldThrowOnArraySizeExceedingTheData() {
+        BinaryWriter array = new BinaryWriter(16);
+        array.writeVarLong((long) Integer.MAX_VALUE << 1);
+
+        BinaryWriter arrayWithNulls = new BinaryWriter(16);
+        arrayWithNulls.writeVarLong(((long) Integer.MAX_VALUE << 1) | 1);
+        arrayWithNulls.writeBytes(new byte[]{(byte) 0xFF});
+
+        assertThrows(ParseException.class, () -> BinarySerde.readValue(new BinaryReader(array.toByteArray()), FieldType.INT32_ARRAY));
+        assertThrows(ParseException.class, () -> BinarySerde.readValue(new BinaryReader(arrayWithNulls.toByteArray()), FieldType.INT32_ARRAY));
+    }
+
+    private static void assertRoundTrip(PostgresTransactionEvent transaction) throws IOException {
+        byte[] data = BinarySerde.binarySerializer.serialize(transaction);
+        PostgresTransactionEvent deserialized = (PostgresTransactionEvent) BinarySerde.binaryDeserializer.deserialize(data);
+
+        assertTransactionEquals(transaction, deserialized);
+    }
+
+}
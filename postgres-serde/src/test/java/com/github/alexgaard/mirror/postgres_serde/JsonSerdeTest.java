@@ -0,0 +1,153 @@
+package com.github.alexgaard.mirror.postgres_serde;
+
+import com.github.alexgaard.mirror.core.Event;
+import com.github.alexgaard.mirror.postgres.event.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static com.github.alexgaard.mirror.postgres_serde.JsonSerde.jsonDeserializer;
+import static com.github.alexgaard.mirror.postgres_serde.JsonSerde.jsonSerializer;
+import static com.github.alexgaard.mirror.postgres_serde.TestEvents.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonSerdeTest {
+
+    @Test
+    public void shouldRoundTripEveryFieldType() throws IOException {
+        assertRoundTrip(transaction(allFieldTypes()));
+    }
+
+    @Test
+    public void shouldRoundTripNullFields() throws IOException {
+        assertRoundTrip(transaction(nullFields()));
+    }
+
+    @Test
+    public void shouldRoundTripArraysWithNullsAndEmptyArrays() throws IOException {
+        assertRoundTrip(transaction(arrayEdgeCases()));
+    }
+
+    @Test
+    public void shouldRoundTripInfinityTimestamps() throws IOException {
+        assertRoundTrip(transaction(infinityTimestamps()));
+    }
+
+    @Test
+    public void shouldRoundTripTransactionWithNulls() throws IOException {
+        assertRoundTrip(new PostgresTransactionEvent(null, null, PostgresTransactionEvent.TYPE, null, null, -1));
+    }
+
+    @Test
+    public void shouldRoundTripEventsWithNullLists() throws IOException {
+        assertRoundTrip(new PostgresTransactionEvent(
+                UUID.randomUUID(),
+                "test-source",
+                PostgresTransactionEvent.TYPE,
+                List.of(
+                        new InsertEvent(UUID.randomUUID(), "public", "data_types", 1, null),
+                        new UpdateEvent(UUID.randomUUID(), "public", "data_types", 1, null, null),
+                        new DeleteEvent(UUID.randomUUID(), "public", "data_types", 1, null),
+                        new CustomMessageEvent(UUID.randomUUID(), null, null, 1)
+                ),
+                null,
+                -1
+        ));
+    }
+
+    @Test
+    public void shouldRoundTripPlainEvent() throws IOException {
+        Event event = new Event(UUID.randomUUID(), "test-source", "test", OffsetDateTime.of(2023, 5, 17, 13, 45, 12, 0, ZoneOffset.UTC));
+
+        assertEquals(event, jsonDeserializer.deserialize(jsonSerializer.serialize(event)));
+    }
+
+    @Test
+    public void shouldSkipUnknownProperties() throws IOException {
+        String json = "{" +
+                "\"unknown\": {\"nested\": [1, {\"a\": null}]}," +
+                "\"id\": \"3f1c0a52-2f4f-4b57-a6f2-3f6f0d0b9a11\"," +
+                "\"type\": \"postgres-transaction\"," +
+                "\"events\": [{" +
+                "  \"type\": \"insert\"," +
+                "  \"unknownList\": [[1, 2], []]," +
+                "  \"id\": \"0b7e1b5f-8f3c-4a57-9d36-3bb6a1c1b001\"," +
+                "  \"namespace\": \"public\"," +
+                "  \"table\": \"data_types\"," +
+                "  \"transactionId\": 501," +
+                "  \"fields\": [{\"unknown\": {}, \"name\": \"id\", \"type\": \"INT32\", \"value\": 1}]" +
+                "}]," +
+                "\"commitLsn\": 5," +
+                "\"unknownString\": \"value\"" +
+                "}";
+
+        PostgresTransactionEvent transaction = (PostgresTransactionEvent) deserialize(json);
+
+        assertEquals(UUID.fromString("3f1c0a52-2f4f-4b57-a6f2-3f6f0d0b9a11"), transaction.id);
+        assertEquals(5, transaction.commitLsn);
+
+        InsertEvent insert = (InsertEvent) transaction.events.get(0);
+        assertEquals(UUID.fromString("0b7e1b5f-8f3c-4a57-9d36-3bb6a1c1b001"), insert.id);
+        assertEquals("data_types", insert.table);
+        assertEquals(501, insert.transactionId);
+        assertEquals(List.of(Field.int32Field("id", 1)), insert.fields);
+    }
+
+    @Test
+    public void shouldReadFieldValueBeforeNameAndType() throws IOException {
+        String json = "{" +
+                "\"type\": \"postgres-transaction\"," +
+                "\"events\": [{" +
+                "  \"type\": \"delete\"," +
+                "  \"identifierFields\": [" +
+                "    {\"value\": [\"2000-01-01T00:00:00Z\", null], \"type\": \"TIMESTAMP_TZ_ARRAY\", \"name\": \"a\"}," +
+                "    {\"value\": 9000000000, \"name\": \"b\", \"type\": \"INT64\"}" +
+                "  ]" +
+                "}]" +
+                "}";
+
+        DeleteEvent delete = (DeleteEvent) ((PostgresTransactionEvent) deserialize(json)).events.get(0);
+
+        assertFieldsEqual(
+                List.of(
+                        Field.timestampTzArrayField("a", Arrays.asList(OffsetDateTime.of(2000, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC), null)),
+                        Field.int64Field("b", 9_000_000_000L)
+                ),
+                delete.identifierFields
+        );
+    }
+
+    @Test
+    public void shouldThrowOnUnknownEventType() {
+        String json = "{\"type\": \"postgres-transaction\", \"events\": [{\"type\": \"unknown\"}]}";
+
+        assertThrows(IllegalArgumentException.class, () -> deserialize(json));
+    }
+
+    private static Event deserialize(String json) throws IOException {
+        return jsonDeserializer.deserialize(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertRoundTrip(PostgresTransactionEvent transaction) throws IOException {
+        PostgresTransactionEvent deserialized = (PostgresTransactionEvent) jsonDeserializer.deserialize(jsonSerializer.serialize(transaction));
+
+        // Jackson adjusts the commit time to the time zone of the context, which is UTC
+        PostgresTransactionEvent expected = new PostgresTransactionEvent(
+                transaction.id,
+                transaction.sourceName,
+                transaction.type,
+                transaction.events,
+                transaction.committedAt != null ? transaction.committedAt.withOffsetSameInstant(ZoneOffset.UTC) : null,
+                transaction.commitLsn
+        );
+
+        assertTransactionEquals(expected, deserialized);
+    }
+
+}
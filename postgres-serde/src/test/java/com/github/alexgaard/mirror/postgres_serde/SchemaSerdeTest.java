@@ -0,0 +1,157 @@
+package com.github.alexgaard.mirror.postgres_serde;
+
+import com.github.alexgaard.mirror.core.exception.ParseException;
+import com.github.alexgaard.mirror.postgres.event.Field;
+import com.github.alexgaard.mirror.postgres.event.InsertEvent;
+import com.github.alexgaard.mirror.postgres.event.PostgresTransactionEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static com.github.alexgaard.mirror.postgres_serde.TestEvents.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchemaSerdeTest {
+
+    @Test
+    public void shouldRoundTripEveryFieldType() {
+        SchemaSerializer serializer = new SchemaSerializer();
+        SchemaDeserializer deserializer = new SchemaDeserializer();
+
+        for (List<Field<?>> fields : List.of(allFieldTypes(), nullFields(), arrayEdgeCases(), infinityTimestamps())) {
+            PostgresTransactionEvent transaction = transaction(fields);
+            assertTransactionEquals(transaction, deserializer.deserialize(serializer.serialize(transaction)));
+        }
+    }
+
+    @Test
+    public void shouldRoundTripTransactionWithNulls() {
+        PostgresTransactionEvent transaction = new PostgresTransactionEvent(null, null, PostgresTransactionEvent.TYPE, null, null, -1);
+
+        assertTransactionEquals(transaction, new SchemaDeserializer().deserialize(new SchemaSerializer().serialize(transaction)));
+    }
+
+    @Test
+    public void shouldWriteSchemaOncePrMessage() {
+        SchemaSerializer serializer = new SchemaSerializer();
+
+        byte[] oneRow = serializer.serialize(rows(1));
+        byte[] twoRows = serializer.serialize(rows(2));
+        byte[] threeRows = serializer.serialize(rows(3));
+
+        // The definition is only in the first row, later rows are the same size
+        assertEquals(threeRows.length - twoRows.length, twoRows.length - oneRow.length);
+        assertTrue(twoRows.length - oneRow.length < oneRow.length / 2);
+    }
+
+    @Test
+    public void shouldReadEveryMessageWithANewDeserializerByDefault() {
+        SchemaSerializer serializer = new SchemaSerializer();
+
+        serializer.serialize(rows(1));
+        PostgresTransactionEvent transaction = rows(2);
+
+        // A receiver which has restarted has not seen the schemas of earlier messages
+        assertTransactionEquals(transaction, new SchemaDeserializer().deserialize(serializer.serialize(transaction)));
+    }
+
+    @Test
+    public void shouldFailOnUnknownSchemaUntilResentWhenCachingAcrossMessages() throws InterruptedException {
+        SchemaSerializer serializer = new SchemaSerializer(Duration.ofMillis(200));
+        SchemaDeserializer deserializer = new SchemaDeserializer();
+
+        byte[] first = serializer.serialize(rows(1));
+        byte[] cached = serializer.serialize(rows(1));
+
+        assertTrue(cached.length < first.length);
+
+        // The receiver has restarted, and has not seen the first message
+        SchemaDeserializer restartedDeserializer = new SchemaDeserializer();
+        assertThrows(ParseException.class, () -> restartedDeserializer.deserialize(cached));
+
+        assertTransactionEquals(rows(1), deserializer.deserialize(first));
+        assertTransactionEquals(rows(1), deserializer.deserialize(cached));
+
+        Thread.sleep(250);
+
+        byte[] resent = serializer.serialize(rows(1));
+
+        assertEquals(first.length, resent.length);
+        assertTransactionEquals(rows(1), restartedDeserializer.deserialize(resent));
+        assertTransactionEquals(rows(1), restartedDeserializer.deserialize(cached));
+    }
+
+    @Test
+    public void shouldScopeSchemaIdsToTheSession() {
+        SchemaSerializer serializer1 = new SchemaSerializer(Duration.ofHours(1));
+        SchemaSerializer serializer2 = new SchemaSerializer(Duration.ofHours(1));
+        SchemaDeserializer deserializer = new SchemaDeserializer();
+
+        // Both sessions use schema id 1, for different schemas
+        PostgresTransactionEvent transaction1 = transaction(List.of(Field.int32Field("id", 1)));
+        PostgresTransactionEvent transaction2 = transaction(List.of(Field.textField("name", "test")));
+
+        deserializer.deserialize(serializer1.serialize(transaction1));
+        deserializer.deserialize(serializer2.serialize(transaction2));
+
+        assertTransactionEquals(transaction1, deserializer.deserialize(serializer1.serialize(transaction1)));
+        assertTransactionEquals(transaction2, deserializer.deserialize(serializer2.serialize(transaction2)));
+    }
+
+    @Test
+    public void shouldReadPlainFormat() {
+        PostgresTransactionEvent transaction = transaction(allFieldTypes());
+
+        assertTransactionEquals(transaction, new SchemaDeserializer().deserialize(BinarySerde.serialize(transaction)));
+    }
+
+    @Test
+    public void shouldNotReadSchemaFormatWithBinarySerde() {
+        byte[] data = new SchemaSerializer().serialize(rows(1));
+
+        assertThrows(ParseException.class, () -> BinarySerde.deserialize(data));
+    }
+
+    @Test
+    public void shouldThrowOnDefinitionSizeExceedingTheData() {
+        PostgresTransactionEvent transaction = PostgresTransactionEvent.of(
+                "test-source",
+                List.of(new InsertEvent(UUID.randomUUID(), "public", "data_types", 1, List.of())),
+                OffsetDateTime.now()
+        );
+
+        // The definition of the empty schema is written last, as the number of columns
+        byte[] data = new SchemaSerializer().serialize(transaction);
+        assertEquals(0, data[data.length - 1]);
+
+        for (long size : new long[]{Integer.MAX_VALUE, -1}) {
+            BinaryWriter writer = new BinaryWriter(data.length + 16);
+            writer.writeBytes(Arrays.copyOf(data, data.length - 1));
+            writer.writeVarLong(size);
+
+            assertThrows(ParseException.class, () -> new SchemaDeserializer().deserialize(writer.toByteArray()));
+        }
+    }
+
+    private static PostgresTransactionEvent rows(int count) {
+        List<InsertEvent> inserts = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            List<Field<?>> fields = List.of(
+                    Field.int32Field("id", i),
+                    Field.textField("a_long_column_name_for_text", "text"),
+                    Field.int64Field("a_long_column_name_for_numbers", 42L)
+            );
+
+            inserts.add(new InsertEvent(new UUID(0, i), "public", "data_types", 42, fields));
+        }
+
+        return new PostgresTransactionEvent(new UUID(1, 1), "test-source", PostgresTransactionEvent.TYPE, new ArrayList<>(inserts), OffsetDateTime.parse("2023-05-17T13:45:12Z"), 5);
+    }
+
+}
@@ -0,0 +1,181 @@
+package com.github.alexgaard.mirror.postgres_serde;
+
+import com.github.alexgaard.mirror.postgres.event.*;
+
+import java.time.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestEvents {
+
+    private static final OffsetDateTime committedAt = OffsetDateTime.of(2023, 5, 17, 13, 45, 12, 123456000, ZoneOffset.ofHours(2));
+
+    // One field of every field type except NOT_IMPLEMENTED, which cannot have a value
+    static List<Field<?>> allFieldTypes() {
+        List<Field<?>> fields = new ArrayList<>();
+
+        fields.add(Field.floatField("float_field", 1.5423f));
+        fields.add(Field.doubleField("double_field", -33.3099));
+        fields.add(Field.booleanField("boolean_field", true));
+        fields.add(Field.textField("text_field", "hello \"world\" æøå"));
+        fields.add(Field.jsonField("json_field", "{\"hello\": \"world\"}"));
+        fields.add(Field.jsonbField("jsonb_field", "{\"hello\": [1, 2]}"));
+        fields.add(Field.uuidField("uuid_field", UUID.fromString("8d3b1d9e-4a7c-4a4e-9a8a-0b4d8f0e6c1a")));
+        fields.add(Field.charField("char_field", 'x'));
+        fields.add(Field.int16Field("int16_field", (short) -5));
+        fields.add(Field.int32Field("int32_field", 42));
+        fields.add(Field.int64Field("int64_field", 9_000_000_000L));
+        fields.add(Field.bytesField("bytes_field", new byte[]{5, 87, 3, -1}));
+        fields.add(Field.dateField("date_field", LocalDate.of(1950, 1, 31)));
+        fields.add(Field.timeField("time_field", LocalTime.of(23, 59, 1, 999999000)));
+        fields.add(Field.timestampField("timestamp_field", LocalDateTime.of(1969, 12, 31, 23, 59, 59, 1000)));
+        fields.add(Field.timestampTzField("timestamp_tz_field", OffsetDateTime.of(2023, 5, 17, 13, 45, 12, 123456000, ZoneOffset.ofHoursMinutes(-3, -30))));
+
+        fields.add(Field.floatArrayField("float_array_field", List.of(1.5f, -2.25f)));
+        fields.add(Field.doubleArrayField("double_array_field", List.of(1.5, -0.25)));
+        fields.add(Field.booleanArrayField("boolean_array_field", List.of(true, false)));
+        fields.add(Field.textArrayField("text_array_field", List.of("a", "", "{b,c}")));
+        fields.add(Field.uuidArrayField("uuid_array_field", List.of(UUID.fromString("8d3b1d9e-4a7c-4a4e-9a8a-0b4d8f0e6c1a"))));
+        fields.add(Field.charArrayField("char_array_field", List.of('a', 'b')));
+        fields.add(Field.int16ArrayField("int16_array_field", List.of((short) 1, (short) -2)));
+        fields.add(Field.int32ArrayField("int32_array_field", List.of(1, -2, 300)));
+        fields.add(Field.int64ArrayField("int64_array_field", List.of(9_000_000_000L, -1L)));
+        fields.add(Field.dateArrayField("date_array_field", List.of(LocalDate.of(2020, 2, 29))));
+        fields.add(Field.timeArrayField("time_array_field", List.of(LocalTime.MIDNIGHT, LocalTime.of(12, 0, 0, 1000))));
+        fields.add(Field.timestampArrayField("timestamp_array_field", List.of(LocalDateTime.of(2000, 1, 1, 0, 0))));
+        fields.add(Field.timestampTzArrayField("timestamp_tz_array_field", List.of(OffsetDateTime.of(2000, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC))));
+
+        return fields;
+    }
+
+    // A null field of every field type
+    static List<Field<?>> nullFields() {
+        List<Field<?>> fields = new ArrayList<>();
+
+        for (FieldType type : FieldType.values()) {
+            fields.add(new Field<>("null_" + type.name().toLowerCase(), type, null));
+        }
+
+        return fields;
+    }
+
+    // Arrays of every array type with null elements, and empty arrays
+    static List<Field<?>> arrayEdgeCases() {
+        List<Field<?>> fields = new ArrayList<>();
+
+        for (Field<?> field : allFieldTypes()) {
+            if (!field.type.isArray()) {
+                continue;
+            }
+
+            List<Object> withNulls = new ArrayList<>();
+            withNulls.add(null);
+            withNulls.addAll((List<?>) field.value);
+            withNulls.add(null);
+
+            fields.add(new Field<>(field.name + "_with_nulls", field.type, withNulls));
+            fields.add(new Field<>(field.name + "_empty", field.type, Collections.emptyList()));
+        }
+
+        return fields;
+    }
+
+    // Postgres infinity and -infinity, as decoded by BinaryDecoder
+    static List<Field<?>> infinityTimestamps() {
+        return List.of(
+                Field.timestampField("timestamp_infinity", LocalDateTime.MAX),
+                Field.timestampField("timestamp_negative_infinity", LocalDateTime.MIN),
+                Field.timestampTzField("timestamp_tz_infinity", LocalDateTime.MAX.atOffset(ZoneOffset.UTC)),
+                Field.timestampTzField("timestamp_tz_negative_infinity", LocalDateTime.MIN.atOffset(ZoneOffset.UTC)),
+                Field.timestampTzField("timestamp_tz_max", OffsetDateTime.MAX),
+                Field.timestampTzField("timestamp_tz_min", OffsetDateTime.MIN),
+                Field.timestampArrayField("timestamp_array_infinity", List.of(LocalDateTime.MIN, LocalDateTime.MAX)),
+                Field.timestampTzArrayField("timestamp_tz_array_infinity", List.of(LocalDateTime.MIN.atOffset(ZoneOffset.UTC), LocalDateTime.MAX.atOffset(ZoneOffset.UTC)))
+        );
+    }
+
+    // Every event type, where the fields are used for inserts and updates and the first field identifies the row
+    static PostgresTransactionEvent transaction(List<Field<?>> fields) {
+        List<Field<?>> identifierFields = List.of(Field.int32Field("id", 1));
+
+        return new PostgresTransactionEvent(
+                UUID.fromString("3f1c0a52-2f4f-4b57-a6f2-3f6f0d0b9a11"),
+                "test-source",
+                PostgresTransactionEvent.TYPE,
+                List.of(
+                        new InsertEvent(UUID.fromString("0b7e1b5f-8f3c-4a57-9d36-3bb6a1c1b001"), "public", "data_types", 501, fields),
+                        new UpdateEvent(UUID.fromString("0b7e1b5f-8f3c-4a57-9d36-3bb6a1c1b002"), "public", "data_types", 501, identifierFields, fields),
+                        new DeleteEvent(UUID.fromString("0b7e1b5f-8f3c-4a57-9d36-3bb6a1c1b003"), "public", "data_types", 501, identifierFields),
+                        new CustomMessageEvent(UUID.fromString("0b7e1b5f-8f3c-4a57-9d36-3bb6a1c1b004"), "mirror", "{\"skip\": true}", 501)
+                ),
+                committedAt,
+                123456789L
+        );
+    }
+
+    static void assertTransactionEquals(PostgresTransactionEvent expected, PostgresTransactionEvent actual) {
+        assertEquals(expected.id, actual.id);
+        assertEquals(expected.sourceName, actual.sourceName);
+        assertEquals(expected.type, actual.type);
+        assertEquals(expected.committedAt, actual.committedAt);
+        assertEquals(expected.commitLsn, actual.commitLsn);
+
+        if (expected.events == null) {
+            assertNull(actual.events);
+            return;
+        }
+
+        assertEquals(expected.events.size(), actual.events.size());
+
+        for (int i = 0; i < expected.events.size(); i++) {
+            assertEventEquals(expected.events.get(i), actual.events.get(i));
+        }
+    }
+
+    private static void assertEventEquals(PostgresEvent expected, PostgresEvent actual) {
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.id, actual.id);
+        assertEquals(expected.transactionId, actual.transactionId);
+
+        if (expected instanceof InsertEvent) {
+            InsertEvent insert = (InsertEvent) actual;
+            assertEquals(((InsertEvent) expected).namespace, insert.namespace);
+            assertEquals(((InsertEvent) expected).table, insert.table);
+            assertFieldsEqual(((InsertEvent) expected).fields, insert.fields);
+        } else if (expected instanceof UpdateEvent) {
+            UpdateEvent update = (UpdateEvent) actual;
+            assertEquals(((UpdateEvent) expected).namespace, update.namespace);
+            assertEquals(((UpdateEvent) expected).table, update.table);
+            assertFieldsEqual(((UpdateEvent) expected).identifierFields, update.identifierFields);
+            assertFieldsEqual(((UpdateEvent) expected).fields, update.fields);
+        } else if (expected instanceof DeleteEvent) {
+            DeleteEvent delete = (DeleteEvent) actual;
+            assertEquals(((DeleteEvent) expected).namespace, delete.namespace);
+            assertEquals(((DeleteEvent) expected).table, delete.table);
+            assertFieldsEqual(((DeleteEvent) expected).identifierFields, delete.identifierFields);
+        } else {
+            assertEquals(expected, actual);
+        }
+    }
+
+    // Field.equals compares byte arrays by reference
+    static void assertFieldsEqual(List<Field<?>> expected, List<Field<?>> actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            Field<?> expectedField = expected.get(i);
+            Field<?> actualField = actual.get(i);
+
+            assertEquals(expectedField.name, actualField.name);
+            assertEquals(expectedField.type, actualField.type, expectedField.name);
+            assertTrue(Objects.deepEquals(expectedField.value, actualField.value), () -> expectedField + " != " + actualField);
+        }
+    }
+
+}
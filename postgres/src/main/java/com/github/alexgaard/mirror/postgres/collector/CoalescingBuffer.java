@@ -0,0 +1,90 @@
+package com.github.alexgaard.mirror.postgres.collector;
+
+import com.github.alexgaard.mirror.postgres.event.PostgresEvent;
+import com.github.alexgaard.mirror.postgres.event.PostgresTransactionEvent;
+import com.github.alexgaard.mirror.postgres.utils.EventCompactor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Buffers the events of consecutive transactions for a window of time, and drains them as a single transaction
+    where the changes of each row have been folded into the latest image of the row, also when other rows of the
+    same table changed in between.
+    Rows are identified by the identifying fields of the events, see RelationDecoder.findIdentifyingFields.
+
+    The buffered transactions must not be confirmed to the replication slot until the buffer has been drained and delivered.
+ */
+class CoalescingBuffer {
+
+    // The buffered events are compacted when they grow past this size, to keep the memory usage of hot rows bounded
+    private final static int COMPACT_THRESHOLD = 10_000;
+
+    private final Duration window;
+
+    private List<PostgresEvent> events = new ArrayList<>();
+
+    private PostgresTransactionEvent lastTransaction;
+
+    private long windowStart = -1;
+
+    private long endLsn = -1;
+
+    private int compactThreshold = COMPACT_THRESHOLD;
+
+    CoalescingBuffer(Duration window) {
+        this.window = window;
+    }
+
+    void add(PostgresTransactionEvent transaction, long transactionEndLsn) {
+        if (isEmpty()) {
+            windowStart = System.currentTimeMillis();
+        }
+
+        events.addAll(transaction.events);
+        lastTransaction = transaction;
+        endLsn = transactionEndLsn;
+
+        if (events.size() >= compactThreshold) {
+            events = EventCompactor.foldLatestImages(events);
+            // Rows that cannot be folded would otherwise be compacted again on every transaction
+            compactThreshold = Math.max(COMPACT_THRESHOLD, events.size() * 2);
+        }
+    }
+
+    // Moves the end of the buffer past a transaction that is not delivered
+    void advance(long transactionEndLsn) {
+        endLsn = transactionEndLsn;
+    }
+
+    boolean isEmpty() {
+        return lastTransaction == null;
+    }
+
+    boolean isReady() {
+        return !isEmpty() && System.currentTimeMillis() - windowStart >= window.toMillis();
+    }
+
+    // LSN which can be confirmed once the drained transaction has been delivered
+    long getEndLsn() {
+        return endLsn;
+    }
+
+    PostgresTransactionEvent drain() {
+        PostgresTransactionEvent coalesced = PostgresTransactionEvent.of(
+                lastTransaction.sourceName,
+                EventCompactor.foldLatestImages(events),
+                lastTransaction.committedAt,
+                lastTransaction.commitLsn
+        );
+
+        events = new ArrayList<>();
+        lastTransaction = null;
+        windowStart = -1;
+        compactThreshold = COMPACT_THRESHOLD;
+
+        return coalesced;
+    }
+
+}
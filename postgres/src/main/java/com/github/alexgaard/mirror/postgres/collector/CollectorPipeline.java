@@ -0,0 +1,229 @@
+package com.github.alexgaard.mirror.postgres.collector;
+
+import com.github.alexgaard.mirror.core.AsyncEventSink;
+import com.github.alexgaard.mirror.core.Event;
+import com.github.alexgaard.mirror.core.Result;
+import com.github.alexgaard.mirror.core.utils.EventSinks;
+import com.github.alexgaard.mirror.postgres.collector.message.*;
+import com.github.alexgaard.mirror.postgres.event.PostgresTransactionEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.github.alexgaard.mirror.core.utils.ExceptionUtil.softenException;
+
+/*
+    Parses, maps and delivers messages on separate threads connected by bounded queues.
+    Each stage has a single thread, which keeps the messages in commit order.
+    The delivered LSN is only advanced after the sink has consumed the transaction,
+    and is left for the thread reading the replication stream to confirm.
+ */
+class CollectorPipeline implements AutoCloseable {
+
+    private final static Logger log = LoggerFactory.getLogger(CollectorPipeline.class);
+
+    private final static long OFFER_TIMEOUT_MS = 100;
+
+    interface TransactionMapper {
+        // Returns null if there are no events to deliver for the transaction
+        PostgresTransactionEvent map(List<Message> transaction, CommitMessage commit);
+    }
+
+    private static class Delivery {
+        // Null if the transaction only advances the LSN
+        final PostgresTransactionEvent transaction;
+
+        final long transactionEndLsn;
+
+        Delivery(PostgresTransactionEvent transaction, long transactionEndLsn) {
+            this.transaction = transaction;
+            this.transactionEndLsn = transactionEndLsn;
+        }
+    }
+
+    private final BlockingQueue<RawMessage> rawMessages;
+
+    private final BlockingQueue<Message> messages;
+
+    private final BlockingQueue<Delivery> deliveries;
+
+    private final TransactionMapper transactionMapper;
+
+    private final AsyncEventSink eventSink;
+
+    private final AtomicLong deliveredLsn = new AtomicLong(-1);
+
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    private final List<Thread> stages = new ArrayList<>();
+
+    CollectorPipeline(String name, int queueCapacity, TransactionMapper transactionMapper, AsyncEventSink eventSink) {
+        this.rawMessages = new ArrayBlockingQueue<>(queueCapacity);
+        this.messages = new ArrayBlockingQueue<>(queueCapacity);
+        this.deliveries = new ArrayBlockingQueue<>(queueCapacity);
+        this.transactionMapper = transactionMapper;
+        this.eventSink = eventSink;
+
+        stages.add(createStage(name + "-parse", this::parseStage));
+        stages.add(createStage(name + "-map", this::mapStage));
+        stages.add(createStage(name + "-deliver", this::deliverStage));
+    }
+
+    void start() {
+        stages.forEach(Thread::start);
+    }
+
+    /*
+        Returns false if the message could not be queued before the timeout, or if the pipeline has failed.
+        The caller is expected to keep the replication connection alive and retry while the pipeline has not failed.
+     */
+    boolean offer(RawMessage rawMessage) throws InterruptedException {
+        if (isFailed()) {
+            return false;
+        }
+
+        return rawMessages.offer(rawMessage, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Returns the end LSN of the last transaction consumed by the sink, or -1 if nothing has been delivered
+    long getDeliveredLsn() {
+        return deliveredLsn.get();
+    }
+
+    boolean isFailed() {
+        return failure.get() != null;
+    }
+
+    void throwIfFailed() {
+        Exception exception = failure.get();
+
+        if (exception != null) {
+            throw softenException(exception);
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        stages.forEach(Thread::interrupt);
+
+        for (Thread stage : stages) {
+            stage.join();
+        }
+    }
+
+    private void parseStage() throws InterruptedException {
+        int currentXid = -1;
+
+        while (true) {
+            RawMessage rawMessage = rawMessages.take();
+
+            // Only the begin message contains the xid, the following messages in the transaction inherit it
+            Message message = MessageParser.parse(new RawMessage(rawMessage.lsn, currentXid, rawMessage.data));
+
+            if (message == null) {
+                continue;
+            }
+
+            if (message instanceof BeginMessage) {
+                currentXid = message.xid;
+            }
+
+            messages.put(message);
+        }
+    }
+
+    private void mapStage() throws InterruptedException {
+        List<Message> transaction = new ArrayList<>();
+
+        while (true) {
+            Message message = messages.take();
+
+            if (message instanceof BeginMessage) {
+                transaction.clear();
+            }
+
+            transaction.add(message);
+
+            if (message instanceof CommitMessage) {
+                CommitMessage commit = (CommitMessage) message;
+                PostgresTransactionEvent pgTransaction = transactionMapper.map(transaction, commit);
+
+                deliveries.put(new Delivery(pgTransaction, commit.transactionEndLsn));
+
+                transaction = new ArrayList<>();
+            }
+        }
+    }
+
+    // Delivers everything that is ready as one batch
+    private void deliverStage() throws InterruptedException {
+        List<Delivery> batch = new ArrayList<>();
+        List<Event> pgTransactions = new ArrayList<>();
+
+        // Index = number of delivered transactions consumed, value = LSN which has been delivered
+        List<Long> consumedLsns = new ArrayList<>();
+
+        while (true) {
+            batch.add(deliveries.take());
+            deliveries.drainTo(batch);
+
+            long lastLsn = deliveredLsn.get();
+
+            for (Delivery delivery : batch) {
+                if (delivery.transaction != null) {
+                    pgTransactions.add(delivery.transaction);
+                    consumedLsns.add(lastLsn);
+                }
+
+                lastLsn = delivery.transactionEndLsn;
+            }
+
+            consumedLsns.add(lastLsn);
+
+            if (!pgTransactions.isEmpty()) {
+                Result result = EventSinks.await(eventSink.consumeAll(pgTransactions));
+
+                if (result.isError()) {
+                    deliveredLsn.set(consumedLsns.get(EventSinks.consumedEvents(result, pgTransactions.size())));
+                    throw softenException(result.getError().get());
+                }
+            }
+
+            deliveredLsn.set(batch.get(batch.size() - 1).transactionEndLsn);
+
+            batch.clear();
+            pgTransactions.clear();
+            consumedLsns.clear();
+        }
+    }
+
+    private Thread createStage(String name, Stage stage) {
+        Thread thread = new Thread(() -> {
+            try {
+                stage.run();
+            } catch (InterruptedException e) {
+                // Pipeline is closing
+            } catch (Exception e) {
+                log.error("Pipeline stage {} failed", name, e);
+                failure.compareAndSet(null, e);
+            }
+        });
+
+        thread.setName(name);
+        thread.setDaemon(true);
+
+        return thread;
+    }
+
+    private interface Stage {
+        void run() throws InterruptedException;
+    }
+
+}
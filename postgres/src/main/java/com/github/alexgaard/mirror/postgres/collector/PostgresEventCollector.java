@@ -1,10 +1,12 @@
 package com.github.alexgaard.mirror.postgres.collector;
 
+import com.github.alexgaard.mirror.core.AsyncEventSink;
+import com.github.alexgaard.mirror.core.Event;
 import com.github.alexgaard.mirror.core.EventSink;
 import com.github.alexgaard.mirror.core.EventSource;
 import com.github.alexgaard.mirror.core.Result;
+import com.github.alexgaard.mirror.core.utils.EventSinks;
 import com.github.alexgaard.mirror.postgres.collector.config.CollectorConfig;
-import com.github.alexgaard.mirror.postgres.collector.config.CollectorTableConfig;
 import com.github.alexgaard.mirror.postgres.collector.message.*;
 import com.github.alexgaard.mirror.postgres.event.*;
 import com.github.alexgaard.mirror.postgres.metadata.ColumnMetadata;
@@ -12,16 +14,22 @@ import com.github.alexgaard.mirror.postgres.metadata.ConstraintMetadata;
 import com.github.alexgaard.mirror.postgres.metadata.PgDataType;
 import com.github.alexgaard.mirror.postgres.metadata.PgMetadata;
 import com.github.alexgaard.mirror.postgres.utils.BackgroundJob;
-import com.github.alexgaard.mirror.postgres.utils.TupleDataColumn;
+import com.github.alexgaard.mirror.postgres.utils.IntMap;
+import org.postgresql.PGConnection;
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationStream;
+import org.postgresql.replication.fluent.logical.ChainedLogicalStreamBuilder;
 import org.postgresql.util.PGobject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
+import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static com.github.alexgaard.mirror.core.utils.ExceptionUtil.*;
@@ -29,28 +37,31 @@ import static com.github.alexgaard.mirror.postgres.metadata.PgMetadata.tableFull
 import static com.github.alexgaard.mirror.postgres.utils.CustomMessageSender.MESSAGE_PREFIX;
 import static com.github.alexgaard.mirror.postgres.utils.CustomMessageSender.SKIP_TRANSACTION_MSG;
 import static com.github.alexgaard.mirror.postgres.utils.DateUtils.toOffsetDateTime;
-import static com.github.alexgaard.mirror.postgres.utils.FieldMapper.mapTupleDataToField;
 import static com.github.alexgaard.mirror.postgres.utils.QueryUtils.*;
 import static java.lang.String.format;
-import static java.util.Optional.*;
 
 public class PostgresEventCollector implements EventSource {
 
     private final static Logger log = LoggerFactory.getLogger(PostgresEventCollector.class);
 
+    private final static long STREAM_IDLE_SLEEP_MS = 10;
+
     private final Map<Integer, PgDataType> pgDataTypes = new HashMap<>();
 
     private final Map<String, List<ColumnMetadata>> tableColumnMetadata = new HashMap<>();
 
     private final Map<String, List<ConstraintMetadata>> tableConstraintMetadata = new HashMap<>();
 
+    // Relation messages are only sent once per decoding session unless the relation changes, key = relation oid
+    private final IntMap<RelationDecoder> relations = new IntMap<>();
+
     private final CollectorConfig config;
 
     private final DataSource dataSource;
 
     private final BackgroundJob backgroundJob;
 
-    private EventSink eventSink;
+    private AsyncEventSink eventSink;
 
     public PostgresEventCollector(
             CollectorConfig config,
@@ -72,7 +83,7 @@ public class PostgresEventCollector implements EventSource {
             throw new IllegalArgumentException("event sink cannot be null");
         }
 
-        this.eventSink = eventSink;
+        this.eventSink = EventSinks.toAsync(eventSink);
     }
 
     @Override
@@ -89,6 +100,9 @@ public class PostgresEventCollector implements EventSource {
 
         pgDataTypes.putAll(PgMetadata.getAllPgDataTypes(dataSource));
 
+        // A new decoding session will resend the relations that are in use
+        relations.clear();
+
         config.getSchemaAndIncludedTables().keySet().forEach(schema -> {
             tableColumnMetadata.putAll(PgMetadata.getAllTableColumns(dataSource, schema));
             tableConstraintMetadata.putAll(PgMetadata.getAllTableConstraints(dataSource, schema));
@@ -96,7 +110,13 @@ public class PostgresEventCollector implements EventSource {
 
         log.debug("Starting event collector");
 
-        backgroundJob.start(this::collectEventsFromWal);
+        if (config.isPipelined()) {
+            backgroundJob.start(this::pipelineEventsFromWal);
+        } else if (config.isStreamingEnabled()) {
+            backgroundJob.start(this::streamEventsFromWal);
+        } else {
+            backgroundJob.start(this::collectEventsFromWal);
+        }
     }
 
     @Override
@@ -106,8 +126,6 @@ public class PostgresEventCollector implements EventSource {
 
     private void collectEventsFromWal() throws SQLException {
         try (Connection connection = dataSource.getConnection()) {
-            String lastLsn = null;
-
             List<RawMessage> rawMessages = peekDataChanges(connection);
 
             if (rawMessages.isEmpty()) {
@@ -120,75 +138,301 @@ public class PostgresEventCollector implements EventSource {
                     .filter(Objects::nonNull)
                     .collect(Collectors.toList());
 
-            // Relation messages are sometimes reused across transactions to save bandwidth if enough transactions use the same relation.
-            List<RelationMessage> relationMessages = messages.stream()
-                    .filter(m -> m instanceof RelationMessage)
-                    .map(m -> (RelationMessage) m)
-                    .collect(Collectors.toList());
-
             List<List<Message>> transactions = splitIntoTransactions(messages);
 
-            try {
-                for (List<Message> transaction : transactions) {
-                    if (shouldTransactionBeSkipped(transaction)) {
-                        continue;
-                    }
+            List<Event> pgTransactions = new ArrayList<>(transactions.size());
 
-                    List<PostgresEvent> transactionEvents = transaction
-                            .stream()
-                            .map(m -> mapToPostgresEvent(m, relationMessages))
-                            .filter(Objects::nonNull)
-                            .collect(Collectors.toList());;
+            // Index = number of delivered transactions consumed, value = LSN which can be removed
+            List<String> consumedLsns = new ArrayList<>(transactions.size() + 1);
+            String lastLsn = null;
 
-                    CommitMessage commit = (CommitMessage) transaction.stream()
-                            .filter(m -> m.type.equals(Message.Type.COMMIT))
-                            .findAny()
-                            .orElseThrow();
+            for (List<Message> transaction : transactions) {
+                CommitMessage commit = findCommit(transaction);
+                PostgresTransactionEvent pgTransaction = toDeliverableTransaction(transaction, commit);
 
-                    if (transactionEvents.isEmpty()) {
-                        lastLsn = commit.lsn;
-                        continue;
+                if (pgTransaction != null) {
+                    pgTransactions.add(pgTransaction);
+                    consumedLsns.add(lastLsn);
+                }
+
+                lastLsn = commit.lsn;
+            }
+
+            consumedLsns.add(lastLsn);
+
+            // All transactions from the poll are delivered as one batch, transactions which were not consumed are collected again
+            if (!pgTransactions.isEmpty()) {
+                Result result = EventSinks.await(eventSink.consumeAll(pgTransactions));
+
+                if (result.isError()) {
+                    String consumedLsn = consumedLsns.get(EventSinks.consumedEvents(result, pgTransactions.size()));
+
+                    if (consumedLsn != null) {
+                        removeNextTransactions(connection, consumedLsn);
                     }
 
-                    PostgresTransactionEvent pgTransaction = PostgresTransactionEvent.of(
-                            config.getSourceName(),
-                            transactionEvents,
-                            toOffsetDateTime(commit.commitTimestamp)
-                    );
+                    throw softenException(result.getError().get());
+                }
+            }
+
+            if (lastLsn != null) {
+                removeNextTransactions(connection, lastLsn);
+            }
+        }
+    }
+
+    private void streamEventsFromWal() throws SQLException, InterruptedException {
+        try (Connection connection = config.getReplicationConnectionFactory().createConnection()) {
+            PGReplicationStream stream = startReplicationStream(connection.unwrap(PGConnection.class));
+
+            List<Message> transaction = new ArrayList<>();
+            int currentXid = -1;
+
+            CoalescingBuffer coalescingBuffer = config.isCoalescingEnabled()
+                    ? new CoalescingBuffer(config.getCoalesceWindow())
+                    : null;
+
+            while (!Thread.currentThread().isInterrupted()) {
+                if (coalescingBuffer != null && coalescingBuffer.isReady()) {
+                    deliverCoalesced(stream, coalescingBuffer);
+                }
+
+                ByteBuffer buffer = stream.readPending();
+
+                if (buffer == null) {
+                    Thread.sleep(STREAM_IDLE_SLEEP_MS);
+                    continue;
+                }
+
+                // The driver allocates a new buffer for every message, so the parsed message can keep slices of it
+                RawMessage rawMessage = new RawMessage(stream.getLastReceiveLSN().asString(), currentXid, buffer);
+                Message message = MessageParser.parse(rawMessage);
+
+                if (message == null) {
+                    continue;
+                }
+
+                if (message instanceof BeginMessage) {
+                    currentXid = message.xid;
+                    transaction.clear();
+                }
+
+                transaction.add(message);
+
+                if (!(message instanceof CommitMessage)) {
+                    continue;
+                }
+
+                CommitMessage commit = (CommitMessage) message;
+                PostgresTransactionEvent pgTransaction = null;
+
+                if (shouldTransactionBeSkipped(transaction)) {
+                    cacheRelations(transaction);
+                } else {
+                    pgTransaction = toTransactionEvent(transaction, commit);
+                }
 
-                    Result result = runWithResult(() -> eventSink.consume(pgTransaction));
+                transaction.clear();
 
-                    if (result.isOk()) {
-                        lastLsn = commit.lsn;
+                // Buffered transactions are confirmed when the buffer is delivered
+                if (coalescingBuffer != null && (pgTransaction != null || !coalescingBuffer.isEmpty())) {
+                    if (pgTransaction != null) {
+                        coalescingBuffer.add(pgTransaction, commit.transactionEndLsn);
                     } else {
-                        throw softenException(result.getError().get());
+                        coalescingBuffer.advance(commit.transactionEndLsn);
                     }
+
+                    continue;
+                }
+
+                if (pgTransaction != null) {
+                    deliver(pgTransaction);
+                }
+
+                confirmLsn(stream, commit.transactionEndLsn);
+            }
+        }
+    }
+
+    private void deliverCoalesced(PGReplicationStream stream, CoalescingBuffer coalescingBuffer) {
+        long endLsn = coalescingBuffer.getEndLsn();
+        PostgresTransactionEvent coalesced = coalescingBuffer.drain();
+
+        if (!coalesced.events.isEmpty()) {
+            deliver(coalesced);
+        }
+
+        confirmLsn(stream, endLsn);
+    }
+
+    private void deliver(PostgresTransactionEvent pgTransaction) {
+        Result result = runWithResult(() -> eventSink.consume(pgTransaction));
+
+        if (result.isError()) {
+            throw softenException(result.getError().get());
+        }
+    }
+
+    private static void confirmLsn(PGReplicationStream stream, long lsn) {
+        LogSequenceNumber confirmedLsn = LogSequenceNumber.valueOf(lsn);
+        stream.setAppliedLSN(confirmedLsn);
+        stream.setFlushedLSN(confirmedLsn);
+    }
+
+    /*
+        Reads the replication stream on this thread, while parsing, mapping and delivery happens in a pipeline.
+        Only this thread touches the stream, and it confirms the LSN of transactions once they are delivered.
+     */
+    private void pipelineEventsFromWal() throws SQLException, InterruptedException {
+        try (
+                Connection connection = config.getReplicationConnectionFactory().createConnection();
+                CollectorPipeline pipeline = new CollectorPipeline(
+                        this.getClass().getSimpleName(),
+                        config.getPipelineQueueCapacity(),
+                        this::toDeliverableTransaction,
+                        eventSink
+                )
+        ) {
+            PGReplicationStream stream = startReplicationStream(connection.unwrap(PGConnection.class));
+            long confirmedLsn = -1;
+            long lastStatusUpdate = System.currentTimeMillis();
+
+            // A new decoding session resends the relations, and the previous pipeline may have been stopped midway
+            relations.clear();
+
+            pipeline.start();
+
+            while (!Thread.currentThread().isInterrupted()) {
+                long deliveredLsn = pipeline.getDeliveredLsn();
+
+                if (deliveredLsn > confirmedLsn) {
+                    confirmedLsn = deliveredLsn;
+                    stream.setAppliedLSN(LogSequenceNumber.valueOf(confirmedLsn));
+                    stream.setFlushedLSN(LogSequenceNumber.valueOf(confirmedLsn));
                 }
-            } finally {
-                if (lastLsn != null) {
-                    removeNextTransactions(connection, lastLsn);
+
+                // Transactions consumed before the failure are confirmed, so they are not delivered again
+                if (pipeline.isFailed()) {
+                    stream.forceUpdateStatus();
+                    pipeline.throwIfFailed();
+                }
+
+                ByteBuffer buffer = stream.readPending();
+
+                if (buffer == null) {
+                    Thread.sleep(STREAM_IDLE_SLEEP_MS);
+                    continue;
                 }
+
+                RawMessage rawMessage = new RawMessage(stream.getLastReceiveLSN().asString(), -1, buffer);
+
+                // Keep the connection alive while waiting for the pipeline to catch up
+                while (!pipeline.offer(rawMessage) && !pipeline.isFailed()) {
+                    if (System.currentTimeMillis() - lastStatusUpdate >= config.getStatusInterval().toMillis()) {
+                        stream.forceUpdateStatus();
+                        lastStatusUpdate = System.currentTimeMillis();
+                    }
+                }
+            }
+        }
+    }
+
+    // Returns null if the transaction should not be delivered
+    private PostgresTransactionEvent toDeliverableTransaction(List<Message> transaction, CommitMessage commit) {
+        if (shouldTransactionBeSkipped(transaction)) {
+            cacheRelations(transaction);
+            return null;
+        }
+
+        return toTransactionEvent(transaction, commit);
+    }
+
+    private PGReplicationStream startReplicationStream(PGConnection connection) throws SQLException {
+        ChainedLogicalStreamBuilder streamBuilder = connection.getReplicationAPI()
+                .replicationStream()
+                .logical()
+                .withSlotName(config.getReplicationSlotName())
+                .withSlotOption("messages", true)
+                .withSlotOption("proto_version", protoVersion())
+                .withSlotOption("publication_names", config.getPublicationName())
+                .withStatusInterval((int) config.getStatusInterval().toMillis(), TimeUnit.MILLISECONDS);
+
+        if (config.isBinaryMode()) {
+            streamBuilder.withSlotOption("binary", true);
+        }
+
+        return streamBuilder.start();
+    }
+
+    private PostgresTransactionEvent toTransactionEvent(List<Message> transaction, CommitMessage commit) {
+        List<PostgresEvent> transactionEvents = transaction
+                .stream()
+                .map(this::mapToPostgresEvent)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        if (transactionEvents.isEmpty()) {
+            return null;
+        }
+
+        return PostgresTransactionEvent.of(
+                config.getSourceName(),
+                transactionEvents,
+                toOffsetDateTime(commit.commitTimestamp),
+                commit.commitLsn
+        );
+    }
+
+    private void cacheRelations(List<Message> transaction) {
+        for (Message message : transaction) {
+            if (message instanceof RelationMessage) {
+                cacheRelation((RelationMessage) message);
             }
         }
     }
 
-    private PostgresEvent mapToPostgresEvent(Message message, List<RelationMessage> relationMessages) {
+    private void cacheRelation(RelationMessage relation) {
+        String fullName = tableFullName(relation.namespace, relation.relationName);
+
+        RelationDecoder decoder = RelationDecoder.compile(
+                relation,
+                pgDataTypes,
+                tableConstraintMetadata.get(fullName),
+                tableColumnMetadata.get(fullName),
+                config.getTableConfig().get(fullName)
+        );
+
+        relations.put(relation.oid, decoder);
+    }
+
+    private RelationDecoder findRelation(int relationOid) {
+        RelationDecoder relation = relations.get(relationOid);
+
+        if (relation == null) {
+            throw new IllegalStateException(format("Missing relation message for relation with oid %d", relationOid));
+        }
+
+        return relation;
+    }
+
+    // Messages must be mapped in order, since a relation message applies to the data changes that follow it
+    private PostgresEvent mapToPostgresEvent(Message message) {
         switch (message.type) {
+            case RELATION: {
+                cacheRelation((RelationMessage) message);
+                return null;
+            }
             case INSERT: {
                 InsertMessage insert = (InsertMessage) message;
 
-                RelationMessage relation = relationMessages
-                        .stream()
-                        .filter(m -> m.oid == insert.relationMessageOid)
-                        .findAny()
-                        .orElseThrow();
+                RelationDecoder decoder = findRelation(insert.relationMessageOid);
 
-                List<Field<?>> fields = toFields(insert.columns, relation);
+                List<Field<?>> fields = decoder.toFields(insert.columns);
 
                 return new InsertEvent(
                         UUID.randomUUID(),
-                        relation.namespace,
-                        relation.relationName,
+                        decoder.relation.namespace,
+                        decoder.relation.relationName,
                         insert.xid,
                         fields
                 );
@@ -196,18 +440,14 @@ public class PostgresEventCollector implements EventSource {
             case DELETE: {
                 DeleteMessage delete = (DeleteMessage) message;
 
-                RelationMessage relation = relationMessages
-                        .stream()
-                        .filter(m -> m.oid == delete.relationMessageOid)
-                        .findAny()
-                        .orElseThrow();
+                RelationDecoder decoder = findRelation(delete.relationMessageOid);
 
-                List<Field<?>> identifyingFields = findIdentifyingFields(delete.replicaIdentityType, delete.columns, relation);
+                List<Field<?>> identifyingFields = decoder.findIdentifyingFields(delete.replicaIdentityType, decoder.toFields(delete.columns));
 
                 return new DeleteEvent(
                         UUID.randomUUID(),
-                        relation.namespace,
-                        relation.relationName,
+                        decoder.relation.namespace,
+                        decoder.relation.relationName,
                         delete.xid,
                         identifyingFields
                 );
@@ -215,19 +455,18 @@ public class PostgresEventCollector implements EventSource {
             case UPDATE: {
                 UpdateMessage update = (UpdateMessage) message;
 
-                RelationMessage relation = relationMessages
-                        .stream()
-                        .filter(m -> m.oid == update.relationMessageOid)
-                        .findAny()
-                        .orElseThrow();
+                RelationDecoder decoder = findRelation(update.relationMessageOid);
 
-                List<Field<?>> identifyingFields = findIdentifyingFields(update.replicaIdentityType, update.oldTupleOrKeyColumns, relation);
-                List<Field<?>> updatedFields = findUpdatedFields(update.replicaIdentityType, update, relation, identifyingFields);
+                List<Field<?>> oldFields = decoder.toFields(update.oldTupleOrKeyColumns);
+                List<Field<?>> newFields = decoder.toFields(update.columnsAfterUpdate);
+
+                List<Field<?>> identifyingFields = decoder.findIdentifyingFields(update.replicaIdentityType, oldFields);
+                List<Field<?>> updatedFields = decoder.findUpdatedFields(update.replicaIdentityType, oldFields, newFields);
 
                 return new UpdateEvent(
                         UUID.randomUUID(),
-                        relation.namespace,
-                        relation.relationName,
+                        decoder.relation.namespace,
+                        decoder.relation.relationName,
                         update.xid,
                         identifyingFields,
                         updatedFields
@@ -248,100 +487,8 @@ public class PostgresEventCollector implements EventSource {
         return null;
     }
 
-    private List<Field<?>> findIdentifyingFields(Character replicaIdentityType, List<TupleDataColumn> oldColumns, RelationMessage relation) {
-        if (replicaIdentityType != null && replicaIdentityType == 'O') {
-            // Replica identity FULL
-
-            String fullName = tableFullName(relation.namespace, relation.relationName);
-
-            List<ConstraintMetadata> constraints = ofNullable(tableConstraintMetadata.get(fullName)).orElseGet(Collections::emptyList);
-            List<ColumnMetadata> columns = tableColumnMetadata.get(fullName);
-            Optional<CollectorTableConfig> replicationConfig = ofNullable(config.getTableConfig().get(fullName));
-
-            Optional<ConstraintMetadata> identifyingConstraint = getPreferredConstraint(replicationConfig, constraints)
-                    .or(() -> findIdentifyingConstraint(constraints, columns));
-
-            List<Field<?>> fields = toFields(oldColumns, relation);
-
-            return identifyingConstraint
-                    .map(constraint -> filterOrdinalPosition(fields, constraint.constraintKeyOrdinalPositions))
-                    .orElse(fields);
-        }
-
-        return toFields(oldColumns, relation)
-                .stream()
-                .filter(f -> relation.columns.stream().anyMatch(c -> c.name.equals(f.name) && c.partOfKey))
-                .collect(Collectors.toList());
-    }
-
-    private List<Field<?>> findUpdatedFields(
-            Character replicaIdentityType,
-            UpdateMessage update,
-            RelationMessage relation,
-            List<Field<?>> identifyingFields
-    ) {
-        if (replicaIdentityType != null && replicaIdentityType == 'K') {
-            // Remove fields that are part of key and have not changed.
-            // This can happen when using a composite key and only some of the columns are changed.
-
-            return toFields(update.columnsAfterUpdate, relation)
-                    .stream()
-                    .filter(f -> !identifyingFields.contains(f))
-                    .collect(Collectors.toList());
-        } else if (update.replicaIdentityType != null && update.replicaIdentityType == 'O') {
-            // Filter out columns that have not changed
-
-            List<Field<?>> oldColumns = toFields(update.oldTupleOrKeyColumns, relation);
-
-            return toFields(update.columnsAfterUpdate, relation)
-                    .stream()
-                    .filter(newCol -> !oldColumns.contains(newCol))
-                    .collect(Collectors.toList());
-        } else {
-            // Filter out columns that are part of key which have not changed
-
-            return toFields(update.columnsAfterUpdate, relation)
-                    .stream()
-                    .filter(f -> relation.columns.stream()
-                            .filter(c -> c.name.equals(f.name))
-                            .findAny().map(c -> !c.partOfKey).orElse(true)
-                    )
-                    .collect(Collectors.toList());
-        }
-    }
-
-    private static Optional<ConstraintMetadata> getPreferredConstraint(Optional<CollectorTableConfig> maybeConfig, List<ConstraintMetadata> constraints) {
-        return maybeConfig.map(config -> {
-            if (config.preferredConstraint == null) {
-                return null;
-            }
-
-            return constraints.stream().filter(c -> config.preferredConstraint.equals(c.constraintName))
-                    .findAny()
-                    .orElseThrow(() -> new IllegalStateException("Unable to find constraint with name: " + config.preferredConstraint));
-        });
-    }
-
-    private List<Field<?>> toFields(List<TupleDataColumn> columns, RelationMessage relation) {
-        if (columns.size() > relation.columns.size()) {
-            throw new IllegalArgumentException(format("Tuple data columns length (%d) must be equal or less than relation columns (%d)", columns.size(), relation.columns.size()));
-        }
-
-        List<Field<?>> fields = new ArrayList<>(columns.size());
-
-        for (int i = 0; i < columns.size(); i++) {
-            TupleDataColumn insertCol = columns.get(i);
-            RelationMessage.Column relationCol = relation.columns.get(i);
-            FieldType type = pgDataTypes.get(relationCol.dataOid).getType();
-
-            fields.add(mapTupleDataToField(relationCol.name, type, insertCol));
-        }
-
-        return fields;
-    }
-
     private void removeNextTransactions(Connection connection, String upToLsn) {
-        String sql = "SELECT 1 FROM pg_logical_slot_get_binary_changes(?, ?, NULL, 'messages', 'true', 'proto_version', '1', 'publication_names', ?)";
+        String sql = "SELECT 1 FROM pg_logical_slot_get_binary_changes(?, ?, NULL, " + slotOptions() + ")";
 
         query(connection, sql, statement -> {
             PGobject obj = new PGobject();
@@ -355,8 +502,24 @@ public class PostgresEventCollector implements EventSource {
         });
     }
 
+    // The publication name is left as a parameter
+    private String slotOptions() {
+        String binaryOption = config.isBinaryMode() ? "'binary', 'true', " : "";
+
+        return format(
+                "'messages', 'true', 'proto_version', '%d', %s'publication_names', ?",
+                protoVersion(),
+                binaryOption
+        );
+    }
+
+    // The binary option is only recognized by postgres 14 or newer, which also supports protocol version 2
+    private int protoVersion() {
+        return config.isBinaryMode() ? 2 : 1;
+    }
+
     private List<RawMessage> peekDataChanges(Connection connection) {
-        String sql = "SELECT * FROM pg_logical_slot_peek_binary_changes(?, NULL, ?, 'messages', 'true', 'proto_version', '1', 'publication_names', ?)";
+        String sql = "SELECT * FROM pg_logical_slot_peek_binary_changes(?, NULL, ?, " + slotOptions() + ")";
 
         return query(connection, sql, (statement) -> {
             statement.setString(1, config.getReplicationSlotName());
@@ -369,31 +532,6 @@ public class PostgresEventCollector implements EventSource {
         });
     }
 
-    private static Optional<ConstraintMetadata> findIdentifyingConstraint(
-            List<ConstraintMetadata> constraints,
-            List<ColumnMetadata> columns
-    ) {
-        // Constraints are expected to be sorted primary key before unique
-        for (ConstraintMetadata constraint : constraints) {
-            if (constraint.type.equals(ConstraintMetadata.ConstraintType.PRIMARY_KEY)) {
-                return of(constraint);
-            }
-
-            // Uses the first constraint without nullable fields as the identifier
-            if (constraint.type.equals(ConstraintMetadata.ConstraintType.UNIQUE)) {
-                boolean hasNullableField = columns
-                        .stream()
-                        .anyMatch(c -> constraint.constraintKeyOrdinalPositions.contains(c.ordinalPosition) && c.isNullable);
-
-                if (!hasNullableField) {
-                    return of(constraint);
-                }
-            }
-        }
-
-        return empty();
-    }
-
     private static List<List<Message>> splitIntoTransactions(List<Message> messages) {
         List<List<Message>> transactions = new ArrayList<>();
         List<Message> lastList = null;
@@ -414,20 +552,6 @@ public class PostgresEventCollector implements EventSource {
         return transactions;
     }
 
-    private static List<Field<?>> filterOrdinalPosition(List<Field<?>> fields, List<Integer> ordinalPositions) {
-        int ordinalPos = 1;
-        List<Field<?>> filteredFields = new ArrayList<>();
-
-        for (Field<?> field : fields) {
-            if (ordinalPositions.contains(ordinalPos)) {
-                filteredFields.add(field);
-            }
-            ordinalPos++;
-        }
-
-        return filteredFields;
-    }
-
     private static RawMessage toRawEvent(ResultSet resultSet) throws SQLException {
         String lsn = resultSet.getString("lsn");
         int xid = resultSet.getInt("xid");
@@ -436,6 +560,13 @@ public class PostgresEventCollector implements EventSource {
         return new RawMessage(lsn, xid, data);
     }
 
+    private static CommitMessage findCommit(List<Message> transaction) {
+        return (CommitMessage) transaction.stream()
+                .filter(m -> m.type.equals(Message.Type.COMMIT))
+                .findAny()
+                .orElseThrow();
+    }
+
     private static boolean shouldTransactionBeSkipped(List<Message> transactionMessages) {
         return transactionMessages.stream().anyMatch(m -> {
             if (!(m instanceof CustomMessage)) {
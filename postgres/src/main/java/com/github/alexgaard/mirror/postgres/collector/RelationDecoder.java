@@ -0,0 +1,207 @@
+package com.github.alexgaard.mirror.postgres.collector;
+
+import com.github.alexgaard.mirror.postgres.collector.config.CollectorTableConfig;
+import com.github.alexgaard.mirror.postgres.collector.message.RelationMessage;
+import com.github.alexgaard.mirror.postgres.event.Field;
+import com.github.alexgaard.mirror.postgres.event.FieldType;
+import com.github.alexgaard.mirror.postgres.metadata.ColumnMetadata;
+import com.github.alexgaard.mirror.postgres.metadata.ConstraintMetadata;
+import com.github.alexgaard.mirror.postgres.metadata.PgDataType;
+import com.github.alexgaard.mirror.postgres.utils.TupleDataColumn;
+
+import java.util.*;
+
+import static com.github.alexgaard.mirror.postgres.utils.FieldMapper.mapTupleDataToField;
+import static java.lang.String.format;
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+
+/*
+    Decoder plan for a single relation.
+    Everything that only depends on the relation is resolved once when the relation message is received,
+    so that decoding a tuple is a single walk over the columns.
+ */
+public class RelationDecoder {
+
+    // Same as relreplident in pg_class
+    private static final byte REPLICA_IDENTITY_FULL = 'f';
+
+    public final RelationMessage relation;
+
+    private final String[] columnNames;
+
+    private final FieldType[] columnTypes;
+
+    // Columns that are part of the replica identity key
+    private final BitSet keyColumns;
+
+    // Columns of the constraint used to identify rows for tables with replica identity FULL, null if no constraint is found
+    private final BitSet identifyingConstraintColumns;
+
+    private RelationDecoder(
+            RelationMessage relation,
+            String[] columnNames,
+            FieldType[] columnTypes,
+            BitSet keyColumns,
+            BitSet identifyingConstraintColumns
+    ) {
+        this.relation = relation;
+        this.columnNames = columnNames;
+        this.columnTypes = columnTypes;
+        this.keyColumns = keyColumns;
+        this.identifyingConstraintColumns = identifyingConstraintColumns;
+    }
+
+    public static RelationDecoder compile(
+            RelationMessage relation,
+            Map<Integer, PgDataType> pgDataTypes,
+            List<ConstraintMetadata> constraints,
+            List<ColumnMetadata> columns,
+            CollectorTableConfig tableConfig
+    ) {
+        int numColumns = relation.columns.size();
+
+        String[] columnNames = new String[numColumns];
+        FieldType[] columnTypes = new FieldType[numColumns];
+        BitSet keyColumns = new BitSet(numColumns);
+
+        for (int i = 0; i < numColumns; i++) {
+            RelationMessage.Column column = relation.columns.get(i);
+            PgDataType dataType = pgDataTypes.get(column.dataOid);
+
+            columnNames[i] = column.name;
+            columnTypes[i] = dataType != null ? dataType.getType() : FieldType.NOT_IMPLEMENTED;
+            keyColumns.set(i, column.partOfKey);
+        }
+
+        BitSet identifyingConstraintColumns = null;
+
+        if (relation.replicaId == REPLICA_IDENTITY_FULL) {
+            List<ConstraintMetadata> tableConstraints = constraints != null ? constraints : Collections.emptyList();
+            List<ColumnMetadata> tableColumns = columns != null ? columns : Collections.emptyList();
+
+            identifyingConstraintColumns = getPreferredConstraint(tableConfig, tableConstraints)
+                    .or(() -> findIdentifyingConstraint(tableConstraints, tableColumns))
+                    .map(RelationDecoder::toColumnIndexes)
+                    .orElse(null);
+        }
+
+        return new RelationDecoder(relation, columnNames, columnTypes, keyColumns, identifyingConstraintColumns);
+    }
+
+    public List<Field<?>> toFields(List<TupleDataColumn> columns) {
+        if (columns.size() > columnTypes.length) {
+            throw new IllegalArgumentException(format("Tuple data columns length (%d) must be equal or less than relation columns (%d)", columns.size(), columnTypes.length));
+        }
+
+        List<Field<?>> fields = new ArrayList<>(columns.size());
+
+        for (int i = 0; i < columns.size(); i++) {
+            fields.add(mapTupleDataToField(columnNames[i], columnTypes[i], columns.get(i)));
+        }
+
+        return fields;
+    }
+
+    public List<Field<?>> findUpdatedFields(Character replicaIdentityType, List<Field<?>> oldFields, List<Field<?>> newFields) {
+        List<Field<?>> updatedFields = new ArrayList<>(newFields.size());
+
+        for (int i = 0; i < newFields.size(); i++) {
+            Field<?> newField = newFields.get(i);
+            Field<?> oldField = i < oldFields.size() ? oldFields.get(i) : null;
+
+            boolean isUpdated;
+
+            if (isKeyUpdate(replicaIdentityType)) {
+                // Remove fields that are part of key and have not changed.
+                // This can happen when using a composite key and only some of the columns are changed.
+                isUpdated = !keyColumns.get(i) || !newField.equals(oldField);
+            } else if (isFullUpdate(replicaIdentityType)) {
+                // Filter out columns that have not changed
+                isUpdated = !newField.equals(oldField);
+            } else {
+                // Filter out columns that are part of key which have not changed
+                isUpdated = !keyColumns.get(i);
+            }
+
+            if (isUpdated) {
+                updatedFields.add(newField);
+            }
+        }
+
+        return updatedFields;
+    }
+
+    public List<Field<?>> findIdentifyingFields(Character replicaIdentityType, List<Field<?>> oldFields) {
+        BitSet identifyingColumns = isFullUpdate(replicaIdentityType)
+                ? identifyingConstraintColumns
+                : keyColumns;
+
+        if (identifyingColumns == null) {
+            return oldFields;
+        }
+
+        List<Field<?>> identifyingFields = new ArrayList<>(identifyingColumns.cardinality());
+
+        for (int i = 0; i < oldFields.size(); i++) {
+            if (identifyingColumns.get(i)) {
+                identifyingFields.add(oldFields.get(i));
+            }
+        }
+
+        return identifyingFields;
+    }
+
+    private static boolean isKeyUpdate(Character replicaIdentityType) {
+        return replicaIdentityType != null && replicaIdentityType == 'K';
+    }
+
+    private static boolean isFullUpdate(Character replicaIdentityType) {
+        return replicaIdentityType != null && replicaIdentityType == 'O';
+    }
+
+    private static BitSet toColumnIndexes(ConstraintMetadata constraint) {
+        BitSet columnIndexes = new BitSet();
+
+        // Ordinal positions start at 1
+        constraint.constraintKeyOrdinalPositions.forEach(pos -> columnIndexes.set(pos - 1));
+
+        return columnIndexes;
+    }
+
+    private static Optional<ConstraintMetadata> getPreferredConstraint(CollectorTableConfig config, List<ConstraintMetadata> constraints) {
+        if (config == null || config.preferredConstraint == null) {
+            return empty();
+        }
+
+        return of(constraints.stream().filter(c -> config.preferredConstraint.equals(c.constraintName))
+                .findAny()
+                .orElseThrow(() -> new IllegalStateException("Unable to find constraint with name: " + config.preferredConstraint)));
+    }
+
+    private static Optional<ConstraintMetadata> findIdentifyingConstraint(
+            List<ConstraintMetadata> constraints,
+            List<ColumnMetadata> columns
+    ) {
+        // Constraints are expected to be sorted primary key before unique
+        for (ConstraintMetadata constraint : constraints) {
+            if (constraint.type.equals(ConstraintMetadata.ConstraintType.PRIMARY_KEY)) {
+                return of(constraint);
+            }
+
+            // Uses the first constraint without nullable fields as the identifier
+            if (constraint.type.equals(ConstraintMetadata.ConstraintType.UNIQUE)) {
+                boolean hasNullableField = columns
+                        .stream()
+                        .anyMatch(c -> constraint.constraintKeyOrdinalPositions.contains(c.ordinalPosition) && c.isNullable);
+
+                if (!hasNullableField) {
+                    return of(constraint);
+                }
+            }
+        }
+
+        return empty();
+    }
+
+}
@@ -24,6 +24,24 @@ public class CollectorConfig {
 
     Duration maxBackoff = Duration.ofSeconds(10);
 
+    // If set, changes are streamed over a replication connection instead of polling the replication slot
+    ReplicationConnectionFactory replicationConnectionFactory;
+
+    // How often the streaming connection reports the flushed position back to the database
+    Duration statusInterval = Duration.ofSeconds(10);
+
+    // If enabled, column values are sent in binary format when supported by the type. Requires postgres 14 or newer.
+    boolean binaryMode = false;
+
+    // If enabled, streamed messages are parsed, mapped and delivered on separate threads. Requires streaming.
+    boolean pipelined = false;
+
+    // Capacity of each of the queues between the pipeline stages
+    int pipelineQueueCapacity = 1000;
+
+    // If set, transactions are buffered for the window and delivered as a single transaction with only the latest image of each row. Requires streaming.
+    Duration coalesceWindow;
+
     public CollectorConfig(
             Map<String, CollectorTableConfig> tableConfig,
             Map<String, Set<String>> schemaAndIncludedTables,
@@ -33,7 +51,13 @@ public class CollectorConfig {
             int maxChangesPrPoll,
             Duration pollInterval,
             Duration backoffIncrease,
-            Duration maxBackoff
+            Duration maxBackoff,
+            ReplicationConnectionFactory replicationConnectionFactory,
+            Duration statusInterval,
+            boolean binaryMode,
+            boolean pipelined,
+            int pipelineQueueCapacity,
+            Duration coalesceWindow
     ) {
         this.tableConfig = tableConfig;
         this.schemaAndIncludedTables = schemaAndIncludedTables;
@@ -44,6 +68,12 @@ public class CollectorConfig {
         this.pollInterval = pollInterval;
         this.backoffIncrease = backoffIncrease;
         this.maxBackoff = maxBackoff;
+        this.replicationConnectionFactory = replicationConnectionFactory;
+        this.statusInterval = statusInterval;
+        this.binaryMode = binaryMode;
+        this.pipelined = pipelined;
+        this.pipelineQueueCapacity = pipelineQueueCapacity;
+        this.coalesceWindow = coalesceWindow;
     }
 
     public CollectorConfig(String sourceName, String replicationSlotName, String publicationName) {
@@ -90,6 +120,38 @@ public class CollectorConfig {
         return maxBackoff;
     }
 
+    public ReplicationConnectionFactory getReplicationConnectionFactory() {
+        return replicationConnectionFactory;
+    }
+
+    public boolean isStreamingEnabled() {
+        return replicationConnectionFactory != null;
+    }
+
+    public Duration getStatusInterval() {
+        return statusInterval;
+    }
+
+    public boolean isBinaryMode() {
+        return binaryMode;
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    public int getPipelineQueueCapacity() {
+        return pipelineQueueCapacity;
+    }
+
+    public Duration getCoalesceWindow() {
+        return coalesceWindow;
+    }
+
+    public boolean isCoalescingEnabled() {
+        return coalesceWindow != null;
+    }
+
     public CollectorConfig copy() {
         Map<String, CollectorTableConfig> tableConfigCopy = new HashMap<>();
         tableConfig.forEach((k, v) -> tableConfigCopy.put(k, v.copy()));
@@ -106,7 +168,13 @@ public class CollectorConfig {
                 maxChangesPrPoll,
                 pollInterval,
                 backoffIncrease,
-                maxBackoff
+                maxBackoff,
+                replicationConnectionFactory,
+                statusInterval,
+                binaryMode,
+                pipelined,
+                pipelineQueueCapacity,
+                coalesceWindow
         );
     }
 
@@ -145,6 +213,10 @@ public class CollectorConfig {
                 ", replicationSlotName='" + replicationSlotName + '\'' +
                 ", publicationName='" + publicationName + '\'' +
                 ", maxChangesPrPoll=" + maxChangesPrPoll +
+                ", streamingEnabled=" + isStreamingEnabled() +
+                ", binaryMode=" + binaryMode +
+                ", pipelined=" + pipelined +
+                ", coalesceWindow=" + coalesceWindow +
                 '}';
     }
 }
@@ -58,6 +58,36 @@ public class CollectorConfigBuilder {
         return this;
     }
 
+    public CollectorConfigBuilder streaming(ReplicationConnectionFactory replicationConnectionFactory) {
+        config.replicationConnectionFactory = replicationConnectionFactory;
+        return this;
+    }
+
+    public CollectorConfigBuilder statusInterval(Duration statusInterval) {
+        config.statusInterval = statusInterval;
+        return this;
+    }
+
+    public CollectorConfigBuilder binaryMode(boolean binaryMode) {
+        config.binaryMode = binaryMode;
+        return this;
+    }
+
+    public CollectorConfigBuilder pipelined(boolean pipelined) {
+        config.pipelined = pipelined;
+        return this;
+    }
+
+    public CollectorConfigBuilder pipelineQueueCapacity(int pipelineQueueCapacity) {
+        config.pipelineQueueCapacity = pipelineQueueCapacity;
+        return this;
+    }
+
+    public CollectorConfigBuilder coalesceWindow(Duration coalesceWindow) {
+        config.coalesceWindow = coalesceWindow;
+        return this;
+    }
+
     public CollectorConfigBuilder includeAll() {
         return includeAll(DEFAULT_SCHEMA);
     }
@@ -104,6 +134,14 @@ public class CollectorConfigBuilder {
             newConfig.sourceName = getHostname();
         }
 
+        if (newConfig.pipelined && !newConfig.isStreamingEnabled()) {
+            throw new IllegalStateException("Pipelined mode requires streaming to be enabled");
+        }
+
+        if (newConfig.isCoalescingEnabled() && (!newConfig.isStreamingEnabled() || newConfig.pipelined)) {
+            throw new IllegalStateException("Coalescing requires streaming to be enabled and is not supported in pipelined mode");
+        }
+
         return newConfig;
     }
 
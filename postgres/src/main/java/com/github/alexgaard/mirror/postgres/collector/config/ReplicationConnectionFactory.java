@@ -0,0 +1,28 @@
+package com.github.alexgaard.mirror.postgres.collector.config;
+
+import org.postgresql.PGProperty;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+
+// Creates connections opened in replication mode, which cannot be retrieved from a regular connection pool
+public interface ReplicationConnectionFactory {
+
+    Connection createConnection() throws SQLException;
+
+    static ReplicationConnectionFactory fromJdbcUrl(String jdbcUrl, String username, String password) {
+        return () -> {
+            Properties properties = new Properties();
+            PGProperty.USER.set(properties, username);
+            PGProperty.PASSWORD.set(properties, password);
+            PGProperty.ASSUME_MIN_SERVER_VERSION.set(properties, "9.4");
+            PGProperty.REPLICATION.set(properties, "database");
+            PGProperty.PREFER_QUERY_MODE.set(properties, "simple");
+
+            return DriverManager.getConnection(jdbcUrl, properties);
+        };
+    }
+
+}
@@ -7,11 +7,11 @@ import static java.lang.String.format;
 public class MessageParser {
 
     public static Message parse(RawMessage message) {
-        if (message.data == null || message.data.length == 0) {
+        if (message.data == null || !message.data.hasRemaining()) {
             throw new IllegalArgumentException("Message data is missing");
         }
 
-        char messageType = (char) message.data[0];
+        char messageType = (char) message.data.get(message.data.position());
 
         switch (messageType) {
             case BeginMessage.ID:
@@ -1,6 +1,6 @@
 package com.github.alexgaard.mirror.postgres.collector.message;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 
 public class RawMessage {
 
@@ -8,14 +8,22 @@ public class RawMessage {
 
     public final int xid;
 
-    public final byte[] data;
+    /*
+        Message data positioned at the first byte of the message.
+        Parsed messages keep slices of this buffer, so it must not be reused after the message has been created.
+     */
+    public final ByteBuffer data;
 
-    public RawMessage(String lsn, int xid, byte[] data) {
+    public RawMessage(String lsn, int xid, ByteBuffer data) {
         this.lsn = lsn;
         this.xid = xid;
         this.data = data;
     }
 
+    public RawMessage(String lsn, int xid, byte[] data) {
+        this(lsn, xid, data != null ? ByteBuffer.wrap(data) : null);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -25,14 +33,14 @@ public class RawMessage {
 
         if (xid != that.xid) return false;
         if (!lsn.equals(that.lsn)) return false;
-        return Arrays.equals(data, that.data);
+        return data != null ? data.equals(that.data) : that.data == null;
     }
 
     @Override
     public int hashCode() {
         int result = lsn.hashCode();
         result = 31 * result + xid;
-        result = 31 * result + Arrays.hashCode(data);
+        result = 31 * result + (data != null ? data.hashCode() : 0);
         return result;
     }
 
@@ -41,7 +49,7 @@ public class RawMessage {
         return "RawMessage{" +
                 "lsn='" + lsn + '\'' +
                 ", xid=" + xid +
-                ", data=" + Arrays.toString(data) +
+                ", dataLength=" + (data != null ? data.remaining() : 0) +
                 '}';
     }
 }
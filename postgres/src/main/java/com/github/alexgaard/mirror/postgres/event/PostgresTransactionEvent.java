@@ -16,20 +16,33 @@ public class PostgresTransactionEvent extends Event {
 
     public final OffsetDateTime committedAt;
 
+    // LSN of the commit in the source database, -1 if unknown
+    public final long commitLsn;
+
     public PostgresTransactionEvent() {
         super(null, null, null, null);
         this.events = null;
         this.committedAt = null;
+        this.commitLsn = -1;
     }
 
     public PostgresTransactionEvent(UUID id, String sourceName, String type, List<PostgresEvent> events, OffsetDateTime committedAt) {
+        this(id, sourceName, type, events, committedAt, -1);
+    }
+
+    public PostgresTransactionEvent(UUID id, String sourceName, String type, List<PostgresEvent> events, OffsetDateTime committedAt, long commitLsn) {
         super(id, sourceName, type, committedAt);
         this.events = events;
         this.committedAt = committedAt;
+        this.commitLsn = commitLsn;
     }
 
     public static PostgresTransactionEvent of(String sourceName, List<PostgresEvent> events, OffsetDateTime committedAt) {
-        return new PostgresTransactionEvent(UUID.randomUUID(), sourceName, TYPE, events, committedAt);
+        return of(sourceName, events, committedAt, -1);
+    }
+
+    public static PostgresTransactionEvent of(String sourceName, List<PostgresEvent> events, OffsetDateTime committedAt, long commitLsn) {
+        return new PostgresTransactionEvent(UUID.randomUUID(), sourceName, TYPE, events, committedAt, commitLsn);
     }
 
     public static PostgresTransactionEvent of(String sourceName, PostgresEvent event) {
@@ -44,6 +57,7 @@ public class PostgresTransactionEvent extends Event {
 
         PostgresTransactionEvent that = (PostgresTransactionEvent) o;
 
+        if (commitLsn != that.commitLsn) return false;
         if (!Objects.equals(events, that.events)) return false;
         return Objects.equals(committedAt, that.committedAt);
     }
@@ -53,6 +67,7 @@ public class PostgresTransactionEvent extends Event {
         int result = super.hashCode();
         result = 31 * result + (events != null ? events.hashCode() : 0);
         result = 31 * result + (committedAt != null ? committedAt.hashCode() : 0);
+        result = 31 * result + (int) (commitLsn ^ (commitLsn >>> 32));
         return result;
     }
 
@@ -61,6 +76,7 @@ public class PostgresTransactionEvent extends Event {
         return "PostgresTransactionEvent{" +
                 "events=" + events +
                 ", committedAt=" + committedAt +
+                ", commitLsn=" + commitLsn +
                 ", id=" + id +
                 ", eventType='" + type + '\'' +
                 ", sourceName='" + sourceName + '\'' +
@@ -6,6 +6,7 @@ public class ConstraintMetadata {
     public enum ConstraintType {
         PRIMARY_KEY,
         UNIQUE,
+        FOREIGN_KEY,
         OTHER
     }
 
@@ -16,12 +17,16 @@ public class ConstraintMetadata {
     public final ConstraintType type;
     public final List<Integer> constraintKeyOrdinalPositions;
 
-    public ConstraintMetadata(String schemaName, String tableName, String constraintName, ConstraintType type, List<Integer> constraintKeyOrdinalPositions) {
+    // "<schema>.<table_name>" of the table referenced by a foreign key, null for other constraints
+    public final String referencedTable;
+
+    public ConstraintMetadata(String schemaName, String tableName, String constraintName, ConstraintType type, List<Integer> constraintKeyOrdinalPositions, String referencedTable) {
         this.schemaName = schemaName;
         this.tableName = tableName;
         this.constraintName = constraintName;
         this.type = type;
         this.constraintKeyOrdinalPositions = constraintKeyOrdinalPositions;
+        this.referencedTable = referencedTable;
     }
 
 }
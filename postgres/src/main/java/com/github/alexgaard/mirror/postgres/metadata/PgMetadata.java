@@ -63,6 +63,36 @@ public class PgMetadata {
         return map;
     }
 
+    /*
+        Retrieves the foreign keys in every schema of the database.
+        Key = "<schema>.<table_name>" of the referencing table, value = "<schema>.<table_name>" of the referenced tables
+     */
+    public static Map<String, Set<String>> getAllForeignKeyReferences(DataSource dataSource) {
+        String sql = "select nsp.nspname, rel.relname, fnsp.nspname as fnspname, frel.relname as frelname\n" +
+                "from pg_catalog.pg_constraint con\n" +
+                "         inner join pg_catalog.pg_class rel\n" +
+                "                    on rel.oid = con.conrelid\n" +
+                "         inner join pg_catalog.pg_namespace nsp\n" +
+                "                    on nsp.oid = rel.relnamespace\n" +
+                "         inner join pg_catalog.pg_class frel\n" +
+                "                    on frel.oid = con.confrelid\n" +
+                "         inner join pg_catalog.pg_namespace fnsp\n" +
+                "                    on fnsp.oid = frel.relnamespace\n" +
+                "where con.contype = 'f'";
+
+        Map<String, Set<String>> references = new HashMap<>();
+
+        query(dataSource, sql, statement -> {
+            ResultSet resultSet = statement.executeQuery();
+
+            resultForEach(resultSet, (rs) -> references
+                    .computeIfAbsent(tableFullName(rs.getString("nspname"), rs.getString("relname")), (ignored) -> new HashSet<>())
+                    .add(tableFullName(rs.getString("fnspname"), rs.getString("frelname"))));
+        });
+
+        return references;
+    }
+
     public static String tableFullName(String schema, String table) {
         return schema + "." + table;
     }
@@ -85,12 +115,16 @@ public class PgMetadata {
     }
 
     private static List<ConstraintMetadata> getAllTableConstraintsList(DataSource dataSource, String schema) {
-        String sql = "select con.conname, rel.relname, con.contype, con.conkey\n" +
+        String sql = "select con.conname, rel.relname, con.contype, con.conkey, fnsp.nspname as fnspname, frel.relname as frelname\n" +
                 "from pg_catalog.pg_constraint con\n" +
                 "         inner join pg_catalog.pg_class rel\n" +
                 "                    on rel.oid = con.conrelid\n" +
                 "         inner join pg_catalog.pg_namespace nsp\n" +
                 "                    on nsp.oid = connamespace\n" +
+                "         left join pg_catalog.pg_class frel\n" +
+                "                    on frel.oid = con.confrelid\n" +
+                "         left join pg_catalog.pg_namespace fnsp\n" +
+                "                    on fnsp.oid = frel.relnamespace\n" +
                 "where nsp.nspname = ? order by con.contype, con.oid";
 
         return query(dataSource, sql, statement -> {
@@ -103,7 +137,8 @@ public class PgMetadata {
                     rs.getString("relname"),
                     rs.getString("conname"),
                     toConstraintType(rs.getString("contype").charAt(0)),
-                    ArrayUtils.toIntList((Short[]) rs.getArray("conkey").getArray())
+                    ArrayUtils.toIntList((Short[]) rs.getArray("conkey").getArray()),
+                    rs.getString("frelname") != null ? tableFullName(rs.getString("fnspname"), rs.getString("frelname")) : null
             ));
         });
     }
@@ -114,6 +149,8 @@ public class PgMetadata {
                 return ConstraintMetadata.ConstraintType.PRIMARY_KEY;
             case 'u':
                 return ConstraintMetadata.ConstraintType.UNIQUE;
+            case 'f':
+                return ConstraintMetadata.ConstraintType.FOREIGN_KEY;
             default:
                 return ConstraintMetadata.ConstraintType.OTHER;
         }
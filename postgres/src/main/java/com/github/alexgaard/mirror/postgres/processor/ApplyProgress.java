@@ -0,0 +1,168 @@
+package com.github.alexgaard.mirror.postgres.processor;
+
+import com.github.alexgaard.mirror.postgres.utils.QueryUtils;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import static java.lang.String.format;
+
+/*
+    Keeps track of which source transactions have been applied, identified by the commit LSN of the source transaction.
+    The progress is stored in a table in the target database, in the same transaction as the applied changes.
+
+    Every applied transaction is stored as a row until it is pruned. A watermark row marks that every
+    transaction with a lower or equal commit LSN has been applied, which allows rows below it to be removed.
+    Transactions can be applied out of order (parallel apply), so only the watermark implies anything about other rows.
+ */
+class ApplyProgress {
+
+    private final String tableName;
+
+    // Key = source name
+    private final Map<String, Long> watermarks = new ConcurrentHashMap<>();
+
+    // Key = source name, value = commit LSNs applied above the watermark
+    private final Map<String, Set<Long>> appliedLsns = new ConcurrentHashMap<>();
+
+    // Key = source name, value = commit LSNs that failed to apply and must be applied before the watermark can pass them
+    private final Map<String, Set<Long>> failedLsns = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded = false;
+
+    ApplyProgress(String tableName) {
+        this.tableName = tableName;
+    }
+
+    synchronized void loadIfNeeded(Connection connection) throws SQLException {
+        if (loaded) {
+            return;
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(format(
+                    "CREATE TABLE IF NOT EXISTS %s (" +
+                            "source_name text not null, " +
+                            "commit_lsn bigint not null, " +
+                            "is_watermark boolean not null default false, " +
+                            "applied_at timestamptz not null default now(), " +
+                            "primary key (source_name, commit_lsn))",
+                    tableName
+            ));
+
+            ResultSet resultSet = statement.executeQuery(format("SELECT source_name, commit_lsn, is_watermark FROM %s", tableName));
+
+            while (resultSet.next()) {
+                String sourceName = resultSet.getString("source_name");
+                long commitLsn = resultSet.getLong("commit_lsn");
+
+                if (resultSet.getBoolean("is_watermark")) {
+                    watermarks.merge(sourceName, commitLsn, Math::max);
+                } else {
+                    getApplied(sourceName).add(commitLsn);
+                }
+            }
+        }
+
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+
+        loaded = true;
+    }
+
+    boolean isApplied(String sourceName, long commitLsn) {
+        Long watermark = watermarks.get(sourceName);
+
+        if (watermark != null && commitLsn <= watermark) {
+            return true;
+        }
+
+        return getApplied(sourceName).contains(commitLsn);
+    }
+
+    // Must be called in the same transaction as the changes are applied
+    void store(Connection connection, String sourceName, long commitLsn) {
+        String sql = format("INSERT INTO %s (source_name, commit_lsn) VALUES (?, ?) ON CONFLICT DO NOTHING", tableName);
+
+        QueryUtils.update(connection, sql, statement -> {
+            statement.setString(1, sourceName);
+            statement.setLong(2, commitLsn);
+            statement.executeUpdate();
+        });
+    }
+
+    // Must be called after the transaction that stored the progress has been committed
+    void markApplied(String sourceName, long commitLsn) {
+        getApplied(sourceName).add(commitLsn);
+        getFailed(sourceName).remove(commitLsn);
+    }
+
+    void markFailed(String sourceName, long commitLsn) {
+        if (!isApplied(sourceName, commitLsn)) {
+            getFailed(sourceName).add(commitLsn);
+        }
+    }
+
+    /*
+        Moves the watermark to the highest applied LSN which is at most maxLsn and below any failed LSN,
+        and removes the rows below the watermark. Commits the connection.
+     */
+    void advanceWatermark(Connection connection, String sourceName, long maxLsn) throws SQLException {
+        long watermarkLsn = -1;
+
+        for (long lsn : getApplied(sourceName)) {
+            if (lsn <= maxLsn && lsn > watermarkLsn && isBelowFailed(sourceName, lsn)) {
+                watermarkLsn = lsn;
+            }
+        }
+
+        if (watermarkLsn < 0) {
+            return;
+        }
+
+        long newWatermark = watermarkLsn;
+
+        QueryUtils.update(connection, format("UPDATE %s SET is_watermark = true WHERE source_name = ? AND commit_lsn = ?", tableName), statement -> {
+            statement.setString(1, sourceName);
+            statement.setLong(2, newWatermark);
+            statement.executeUpdate();
+        });
+
+        QueryUtils.update(connection, format("DELETE FROM %s WHERE source_name = ? AND commit_lsn < ?", tableName), statement -> {
+            statement.setString(1, sourceName);
+            statement.setLong(2, newWatermark);
+            statement.executeUpdate();
+        });
+
+        connection.commit();
+
+        watermarks.merge(sourceName, newWatermark, Math::max);
+        getApplied(sourceName).removeIf(lsn -> lsn <= newWatermark);
+    }
+
+    private boolean isBelowFailed(String sourceName, long lsn) {
+        for (long failedLsn : getFailed(sourceName)) {
+            if (failedLsn <= lsn) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private Set<Long> getApplied(String sourceName) {
+        return appliedLsns.computeIfAbsent(sourceName, (ignored) -> new ConcurrentSkipListSet<>());
+    }
+
+    private Set<Long> getFailed(String sourceName) {
+        return failedLsns.computeIfAbsent(sourceName, (ignored) -> new ConcurrentSkipListSet<>());
+    }
+
+}
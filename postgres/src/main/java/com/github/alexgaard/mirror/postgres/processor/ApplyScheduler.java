@@ -0,0 +1,308 @@
+package com.github.alexgaard.mirror.postgres.processor;
+
+import com.github.alexgaard.mirror.core.Result;
+import com.github.alexgaard.mirror.postgres.event.*;
+import com.github.alexgaard.mirror.postgres.metadata.ColumnMetadata;
+import com.github.alexgaard.mirror.postgres.metadata.ConstraintMetadata;
+import com.github.alexgaard.mirror.postgres.metadata.PgMetadata;
+
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import static com.github.alexgaard.mirror.postgres.metadata.PgMetadata.tableFullName;
+
+/*
+    Schedules transactions so that transactions which touch the same rows are applied in order,
+    while transactions touching different rows can be applied concurrently.
+
+    Rows are identified by the primary key of the target table. A transaction is applied after every earlier
+    transaction that touched the same rows has completed. Transactions touching tables where rows cannot be
+    identified safely (no primary key, unique constraints) must wait for every earlier transaction
+    on that table, and custom messages wait for every earlier transaction.
+
+    Tables connected by foreign keys, directly or through other tables, share a single conflict key.
+    A child row must not be applied before the parent row it references, and a parent row must not be deleted
+    before the child rows referencing it, so every transaction on the connected tables is applied in order.
+ */
+class ApplyScheduler {
+
+    private static class TableKey {
+        final List<String> primaryKeyColumns;
+
+        // Rows of the table cannot be applied independently
+        final boolean exclusive;
+
+        // The table name, or the name of the foreign key group the table is part of
+        final String conflictKey;
+
+        TableKey(List<String> primaryKeyColumns, boolean exclusive, String conflictKey) {
+            this.primaryKeyColumns = primaryKeyColumns;
+            this.exclusive = exclusive;
+            this.conflictKey = conflictKey;
+        }
+    }
+
+    private static class ConflictKeys {
+        final Set<String> rows = new HashSet<>();
+
+        final Set<String> tables = new HashSet<>();
+
+        final Set<String> exclusiveTables = new HashSet<>();
+
+        boolean barrier = false;
+    }
+
+    private final DataSource dataSource;
+
+    private final Executor executor;
+
+    private final Set<String> loadedSchemas = new HashSet<>();
+
+    // Key = "<schema>.<table_name>"
+    private final Map<String, TableKey> tableKeys = new HashMap<>();
+
+    // Key = "<schema>.<table_name>", value = conflict key of the foreign key group. Null until loaded.
+    private Map<String, String> foreignKeyGroups;
+
+    // The scheduling state is only kept for a single batch of transactions
+
+    private final Map<String, CompletableFuture<Result>> lastRowWriter = new HashMap<>();
+
+    private final Map<String, CompletableFuture<Result>> lastExclusiveWriter = new HashMap<>();
+
+    private final Map<String, List<CompletableFuture<Result>>> tableWritersSinceExclusive = new HashMap<>();
+
+    private final List<CompletableFuture<Result>> writersSinceBarrier = new ArrayList<>();
+
+    private CompletableFuture<Result> lastBarrier;
+
+    ApplyScheduler(DataSource dataSource, Executor executor) {
+        this.dataSource = dataSource;
+        this.executor = executor;
+    }
+
+    /*
+        Returns a future with the result of the apply function, which is called once all conflicting transactions
+        scheduled earlier have completed. The apply function is not called if any of them failed.
+     */
+    CompletableFuture<Result> schedule(List<PostgresEvent> events, Supplier<Result> apply) {
+        ConflictKeys keys = findConflictKeys(events);
+        Set<CompletableFuture<Result>> dependencies = new HashSet<>();
+
+        if (lastBarrier != null) {
+            dependencies.add(lastBarrier);
+        }
+
+        if (keys.barrier) {
+            dependencies.addAll(writersSinceBarrier);
+        } else {
+            keys.rows.forEach(row -> addIfPresent(dependencies, lastRowWriter.get(row)));
+            keys.tables.forEach(table -> addIfPresent(dependencies, lastExclusiveWriter.get(table)));
+            keys.exclusiveTables.forEach(table -> dependencies.addAll(tableWritersSinceExclusive.getOrDefault(table, Collections.emptyList())));
+        }
+
+        CompletableFuture<Result> future = afterAll(dependencies, apply);
+
+        if (keys.barrier) {
+            lastBarrier = future;
+            writersSinceBarrier.clear();
+            lastRowWriter.clear();
+            lastExclusiveWriter.clear();
+            tableWritersSinceExclusive.clear();
+            return future;
+        }
+
+        writersSinceBarrier.add(future);
+        keys.rows.forEach(row -> lastRowWriter.put(row, future));
+
+        for (String table : keys.tables) {
+            if (keys.exclusiveTables.contains(table)) {
+                lastExclusiveWriter.put(table, future);
+                tableWritersSinceExclusive.put(table, new ArrayList<>(List.of(future)));
+            } else {
+                tableWritersSinceExclusive.computeIfAbsent(table, (ignored) -> new ArrayList<>()).add(future);
+            }
+        }
+
+        return future;
+    }
+
+    // Transactions in the new batch are applied after the previous batch has completed, regardless of its result
+    void startBatch(CompletableFuture<Result> previousBatch) {
+        lastRowWriter.clear();
+        lastExclusiveWriter.clear();
+        tableWritersSinceExclusive.clear();
+        writersSinceBarrier.clear();
+        lastBarrier = previousBatch.handle((result, exception) -> Result.ok());
+    }
+
+    private CompletableFuture<Result> afterAll(Set<CompletableFuture<Result>> dependencies, Supplier<Result> apply) {
+        CompletableFuture<?>[] futures = dependencies.toArray(new CompletableFuture<?>[0]);
+
+        return CompletableFuture.allOf(futures).thenApplyAsync(ignored -> {
+            for (CompletableFuture<?> dependency : futures) {
+                Result result = (Result) dependency.join();
+
+                if (result.isError()) {
+                    return Result.error(new IllegalStateException("Skipped transaction since an earlier conflicting transaction failed"));
+                }
+            }
+
+            return apply.get();
+        }, executor);
+    }
+
+    private ConflictKeys findConflictKeys(List<PostgresEvent> events) {
+        ConflictKeys keys = new ConflictKeys();
+
+        for (PostgresEvent event : events) {
+            if (event instanceof CustomMessageEvent) {
+                keys.barrier = true;
+            } else if (event instanceof InsertEvent) {
+                InsertEvent insert = (InsertEvent) event;
+                addRowKey(keys, insert.namespace, insert.table, insert.fields, false);
+            } else if (event instanceof UpdateEvent) {
+                UpdateEvent update = (UpdateEvent) event;
+                addRowKey(keys, update.namespace, update.table, update.identifierFields, false);
+                // The primary key might be changed by the update
+                addRowKey(keys, update.namespace, update.table, update.fields, true);
+            } else if (event instanceof DeleteEvent) {
+                DeleteEvent delete = (DeleteEvent) event;
+                addRowKey(keys, delete.namespace, delete.table, delete.identifierFields, false);
+            }
+        }
+
+        return keys;
+    }
+
+    private void addRowKey(ConflictKeys keys, String namespace, String table, List<Field<?>> fields, boolean optional) {
+        String fullTableName = tableFullName(namespace, table);
+        TableKey tableKey = getTableKey(namespace, fullTableName);
+
+        keys.tables.add(tableKey.conflictKey);
+
+        if (tableKey.exclusive) {
+            keys.exclusiveTables.add(tableKey.conflictKey);
+            return;
+        }
+
+        StringBuilder rowKey = new StringBuilder(fullTableName);
+
+        for (String column : tableKey.primaryKeyColumns) {
+            Field<?> field = findField(fields, column);
+
+            if (field == null) {
+                if (!optional) {
+                    keys.exclusiveTables.add(tableKey.conflictKey);
+                }
+
+                return;
+            }
+
+            rowKey.append(':').append(field.value instanceof byte[] ? Arrays.toString((byte[]) field.value) : field.value);
+        }
+
+        keys.rows.add(rowKey.toString());
+    }
+
+    private TableKey getTableKey(String namespace, String fullTableName) {
+        if (!loadedSchemas.contains(namespace)) {
+            loadTableKeys(namespace);
+        }
+
+        // Tables that are not found are treated as exclusive, applying the events will most likely fail anyway
+        return tableKeys.getOrDefault(fullTableName, new TableKey(Collections.emptyList(), true, fullTableName));
+    }
+
+    private void loadTableKeys(String schema) {
+        if (foreignKeyGroups == null) {
+            foreignKeyGroups = findForeignKeyGroups(PgMetadata.getAllForeignKeyReferences(dataSource));
+        }
+
+        Map<String, List<ColumnMetadata>> tableColumns = PgMetadata.getAllTableColumns(dataSource, schema);
+        Map<String, List<ConstraintMetadata>> tableConstraints = PgMetadata.getAllTableConstraints(dataSource, schema);
+
+        tableColumns.forEach((table, columns) -> {
+            List<ConstraintMetadata> constraints = tableConstraints.getOrDefault(table, Collections.emptyList());
+            List<String> primaryKeyColumns = new ArrayList<>();
+            String foreignKeyGroup = foreignKeyGroups.get(table);
+            boolean exclusive = foreignKeyGroup != null;
+
+            for (ConstraintMetadata constraint : constraints) {
+                if (constraint.type == ConstraintMetadata.ConstraintType.PRIMARY_KEY) {
+                    constraint.constraintKeyOrdinalPositions.forEach(pos -> columns.stream()
+                            .filter(c -> c.ordinalPosition == pos)
+                            .findAny()
+                            .ifPresent(c -> primaryKeyColumns.add(c.name)));
+                } else if (constraint.type == ConstraintMetadata.ConstraintType.UNIQUE) {
+                    exclusive = true;
+                }
+            }
+
+            tableKeys.put(table, new TableKey(
+                    primaryKeyColumns,
+                    exclusive || primaryKeyColumns.isEmpty(),
+                    foreignKeyGroup != null ? foreignKeyGroup : table
+            ));
+        });
+
+        loadedSchemas.add(schema);
+    }
+
+    /*
+        Groups the tables that are connected by foreign keys, regardless of the direction of the references.
+        The groups are found from the foreign keys of every schema at once, so the group of a table does not depend
+        on which schemas have been loaded.
+        Key = "<schema>.<table_name>", value = conflict key of the group
+     */
+    private static Map<String, String> findForeignKeyGroups(Map<String, Set<String>> references) {
+        Map<String, String> parents = new HashMap<>();
+
+        references.forEach((table, referencedTables) -> referencedTables.forEach(referencedTable -> {
+            String root = findRoot(parents, table);
+            String referencedRoot = findRoot(parents, referencedTable);
+
+            // The lowest table name is used as root, so the conflict key is the same for every load
+            if (root.compareTo(referencedRoot) < 0) {
+                parents.put(referencedRoot, root);
+            } else if (root.compareTo(referencedRoot) > 0) {
+                parents.put(root, referencedRoot);
+            }
+        }));
+
+        Map<String, String> groups = new HashMap<>();
+        parents.keySet().forEach(table -> groups.put(table, "fk-group:" + findRoot(parents, table)));
+
+        return groups;
+    }
+
+    private static String findRoot(Map<String, String> parents, String table) {
+        String root = parents.computeIfAbsent(table, (ignored) -> table);
+
+        while (!root.equals(parents.get(root))) {
+            root = parents.get(root);
+        }
+
+        return root;
+    }
+
+    private static Field<?> findField(List<Field<?>> fields, String name) {
+        for (Field<?> field : fields) {
+            if (field.name.equals(name)) {
+                return field;
+            }
+        }
+
+        return null;
+    }
+
+    private static void addIfPresent(Set<CompletableFuture<Result>> futures, CompletableFuture<Result> future) {
+        if (future != null) {
+            futures.add(future);
+        }
+    }
+
+}
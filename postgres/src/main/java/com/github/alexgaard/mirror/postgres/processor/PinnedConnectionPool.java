@@ -0,0 +1,127 @@
+package com.github.alexgaard.mirror.postgres.processor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/*
+    Keeps long-lived connections with auto commit disabled, together with a cache of prepared statements for each connection.
+    Reusing the same prepared statements lets the driver switch to server side prepared statements,
+    which removes the parse and plan cost from every statement.
+    A connection is only used by one thread at a time, so the pool grows to the number of concurrent apply workers.
+ */
+class PinnedConnectionPool {
+
+    private final static Logger log = LoggerFactory.getLogger(PinnedConnectionPool.class);
+
+    private static class PinnedConnection {
+        final Connection connection;
+
+        // Key = SQL. Least recently used statements are closed when evicted.
+        final Map<String, PreparedStatement> statements;
+
+        PinnedConnection(Connection connection, int statementCacheSize) {
+            this.connection = connection;
+            this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() > statementCacheSize) {
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+
+                    return false;
+                }
+            };
+        }
+    }
+
+    private final DataSource dataSource;
+
+    private final int statementCacheSize;
+
+    private final Queue<PinnedConnection> idleConnections = new ConcurrentLinkedQueue<>();
+
+    private final Map<Connection, PinnedConnection> connections = new ConcurrentHashMap<>();
+
+    PinnedConnectionPool(DataSource dataSource, int statementCacheSize) {
+        this.dataSource = dataSource;
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    Connection acquire() throws SQLException {
+        PinnedConnection pinned;
+
+        while ((pinned = idleConnections.poll()) != null) {
+            if (!pinned.connection.isClosed()) {
+                return pinned.connection;
+            }
+
+            discard(pinned);
+        }
+
+        Connection connection = dataSource.getConnection();
+        connection.setAutoCommit(false);
+
+        connections.put(connection, new PinnedConnection(connection, statementCacheSize));
+
+        return connection;
+    }
+
+    // Broken connections are closed, and replaced by a new connection the next time one is acquired
+    void release(Connection connection, boolean broken) {
+        PinnedConnection pinned = connections.get(connection);
+
+        if (pinned == null) {
+            return;
+        }
+
+        if (broken) {
+            discard(pinned);
+        } else {
+            idleConnections.offer(pinned);
+        }
+    }
+
+    // The returned statement is owned by the pool and must not be closed
+    PreparedStatement prepareStatement(Connection connection, String sql) throws SQLException {
+        PinnedConnection pinned = connections.get(connection);
+        PreparedStatement statement = pinned.statements.get(sql);
+
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql);
+            pinned.statements.put(sql, statement);
+        }
+
+        return statement;
+    }
+
+    boolean isPinned(Connection connection) {
+        return connections.containsKey(connection);
+    }
+
+    private void discard(PinnedConnection pinned) {
+        connections.remove(pinned.connection);
+        pinned.statements.values().forEach(PinnedConnectionPool::closeQuietly);
+        pinned.statements.clear();
+        closeQuietly(pinned.connection);
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            log.warn("Failed to close {}", closeable.getClass().getSimpleName(), e);
+        }
+    }
+
+}
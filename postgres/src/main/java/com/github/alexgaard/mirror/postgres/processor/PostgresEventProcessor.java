@@ -1,23 +1,32 @@
 package com.github.alexgaard.mirror.postgres.processor;
 
-import com.github.alexgaard.mirror.core.EventSink;
+import com.github.alexgaard.mirror.core.AsyncEventSink;
 import com.github.alexgaard.mirror.core.Result;
 import com.github.alexgaard.mirror.core.Event;
+import com.github.alexgaard.mirror.core.utils.EventSinks;
 import com.github.alexgaard.mirror.postgres.event.*;
+import com.github.alexgaard.mirror.postgres.metadata.ColumnMetadata;
+import com.github.alexgaard.mirror.postgres.metadata.ConstraintMetadata;
+import com.github.alexgaard.mirror.postgres.metadata.PgMetadata;
+import com.github.alexgaard.mirror.postgres.processor.config.ApplyMode;
 import com.github.alexgaard.mirror.postgres.processor.config.CustomMessageHandler;
 import com.github.alexgaard.mirror.postgres.processor.config.InsertConflictStrategy;
 import com.github.alexgaard.mirror.postgres.processor.config.ProcessorConfig;
 import com.github.alexgaard.mirror.postgres.processor.config.ProcessorTableConfig;
-import com.github.alexgaard.mirror.postgres.utils.QueryUtils;
+import com.github.alexgaard.mirror.postgres.utils.EventCompactor;
+import com.github.alexgaard.mirror.postgres.utils.PgCopyEncoder;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.github.alexgaard.mirror.core.utils.ExceptionUtil.runWithResult;
@@ -25,78 +34,897 @@ import static com.github.alexgaard.mirror.postgres.metadata.PgMetadata.tableFull
 import static com.github.alexgaard.mirror.postgres.utils.CustomMessageSender.insertSkipTransactionMessage;
 import static java.lang.String.format;
 
-public class PostgresEventProcessor implements EventSink {
+public class PostgresEventProcessor implements AsyncEventSink {
 
     private final static Logger log = LoggerFactory.getLogger(PostgresEventProcessor.class);
 
-    private final AtomicBoolean originalAutoCommit = new AtomicBoolean();
+    private final Map<String, Integer> lastSourceTransactionId = new ConcurrentHashMap<>();
 
-    private final Map<String, Integer> lastSourceTransactionId = new HashMap<>();
+    // Key = source name, value = source transaction ids applied in parallel above the last source transaction id
+    private final Map<String, Set<Integer>> appliedSourceTransactionIds = new ConcurrentHashMap<>();
+
+    private final static int MAX_CACHED_STATEMENTS = 1000;
+
+    // Key = statement shape, value = SQL. Least recently used statements are evicted.
+    private final Map<String, String> sqlCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_CACHED_STATEMENTS;
+        }
+    });
+
+    // Key = schema, value = columns of the unique constraints of each table in the schema, key = "<schema>.<table_name>"
+    private final Map<String, Map<String, List<Set<String>>>> uniqueConstraintColumns = new ConcurrentHashMap<>();
+
+    private final static int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final static int CONNECTION_VALIDATION_TIMEOUT_SECONDS = 1;
+
+    private final static int MAX_MULTI_ROW_ROWS = 1000;
+
+    // Postgres does not allow more parameters in a single statement
+    private final static int MAX_STATEMENT_PARAMETERS = 65535;
+
+    private interface ConnectionFunction {
+        Result apply(Connection connection) throws SQLException;
+    }
+
+    // Signals that a pinned connection failed because it is no longer valid
+    private static class InvalidConnectionException extends RuntimeException {
+        final Exception cause;
+
+        InvalidConnectionException(Exception cause) {
+            super(cause);
+            this.cause = cause;
+        }
+    }
 
     private final ProcessorConfig config;
 
     private final DataSource dataSource;
 
+    // Null when transactions are applied serially
+    private final ApplyScheduler applyScheduler;
+
+    // Null when progress is not stored in the target database
+    private final ApplyProgress applyProgress;
+
+    // Null when a new connection is retrieved from the data source for every batch
+    private final PinnedConnectionPool pinnedConnections;
+
+    private CompletableFuture<Result> lastBatch = CompletableFuture.completedFuture(Result.ok());
+
+    private boolean warnedAboutSingleDeliveries = false;
+
     public PostgresEventProcessor(DataSource dataSource) {
-        this.config = new ProcessorConfig();
-        this.dataSource = dataSource;
+        this(new ProcessorConfig(), dataSource);
     }
 
     public PostgresEventProcessor(ProcessorConfig config, DataSource dataSource) {
         this.config = config;
         this.dataSource = dataSource;
+        this.applyScheduler = config.getParallelism() > 1
+                ? new ApplyScheduler(dataSource, createApplyExecutor(config.getParallelism()))
+                : null;
+        this.applyProgress = config.getProgressTable() != null
+                ? new ApplyProgress(config.getProgressTable())
+                : null;
+        this.pinnedConnections = config.isPinConnections()
+                ? new PinnedConnectionPool(dataSource, config.getStatementCacheSize())
+                : null;
     }
 
     @Override
     public synchronized Result consume(Event event) {
-        if (!(event instanceof PostgresTransactionEvent)) {
+        if (config.isGroupCommitEnabled() && !warnedAboutSingleDeliveries) {
+            log.warn("Group commit is enabled, but has no effect when transactions are consumed one at a time");
+            warnedAboutSingleDeliveries = true;
+        }
+
+        if (applyScheduler != null) {
+            return EventSinks.await(consumeAll(List.of(event)));
+        }
+
+        return consumeEvents(toTransactions(List.of(event)));
+    }
+
+    /*
+        Applies the transactions in order on a single connection, each in its own database transaction.
+        If parallelism is configured, transactions that do not conflict are applied concurrently on separate connections.
+        With group commit, the transactions are grouped within this call only, and every group is committed before returning.
+     */
+    @Override
+    public synchronized CompletionStage<Result> consumeAll(List<Event> events) {
+        if (applyScheduler != null) {
+            return consumeEventsInParallel(toTransactions(events));
+        }
+
+        return CompletableFuture.completedFuture(consumeEvents(toTransactions(events)));
+    }
+
+    private CompletableFuture<Result> consumeEventsInParallel(List<PostgresTransactionEvent> transactions) {
+        if (applyProgress != null) {
+            try (Connection connection = dataSource.getConnection()) {
+                applyProgress.loadIfNeeded(connection);
+            } catch (Exception e) {
+                return CompletableFuture.completedFuture(Result.error(e));
+            }
+        }
+
+        applyScheduler.startBatch(lastBatch);
+
+        // Transaction ids are tracked while scheduling, and only stored after the transactions have been applied
+        Map<String, Integer> scheduledTransactionIds = new HashMap<>(lastSourceTransactionId);
+
+        List<CompletableFuture<Result>> results = new ArrayList<>();
+        List<Map.Entry<String, Integer>> appliedTransactionIds = new ArrayList<>();
+
+        for (PostgresTransactionEvent transaction : transactions) {
+            int lastTransactionId = scheduledTransactionIds.getOrDefault(transaction.sourceName, 0);
+
+            List<PostgresEvent> filteredEvents = findEventsToApply(transaction, lastTransactionId);
+
+            if (filteredEvents.isEmpty()) {
+                continue;
+            }
+
+            int transactionId = findLastTransactionId(filteredEvents);
+            scheduledTransactionIds.put(transaction.sourceName, transactionId);
+            appliedTransactionIds.add(Map.entry(transaction.sourceName, transactionId));
+
+            // Applied in an earlier batch which failed on an earlier transaction
+            if (getAppliedSourceTransactionIds(transaction.sourceName).contains(transactionId)) {
+                log.warn("Skipping already applied transaction with id {} from {}", transactionId, transaction.sourceName);
+                results.add(CompletableFuture.completedFuture(Result.ok()));
+                continue;
+            }
+
+            results.add(applyScheduler.schedule(filteredEvents, () -> {
+                Result result = applyOnNewConnection(filteredEvents, transaction);
+
+                if (result.isOk()) {
+                    getAppliedSourceTransactionIds(transaction.sourceName).add(transactionId);
+                }
+
+                return result;
+            }));
+        }
+
+        lastBatch = CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            Result batchResult = Result.ok();
+
+            /*
+                The last source transaction id is only moved up to the first failure, the rest will be redelivered.
+                Transactions after the failure which were applied are skipped when redelivered.
+             */
+            for (int i = 0; i < results.size(); i++) {
+                Result result = results.get(i).join();
+
+                if (result.isError()) {
+                    batchResult = result;
+                    break;
+                }
+
+                lastSourceTransactionId.put(appliedTransactionIds.get(i).getKey(), appliedTransactionIds.get(i).getValue());
+            }
+
+            lastSourceTransactionId.forEach((sourceName, transactionId) ->
+                    getAppliedSourceTransactionIds(sourceName).removeIf(id -> id <= transactionId));
+
+            if (applyProgress != null) {
+                updateProgressOnNewConnection(transactions, batchResult);
+            }
+
+            return batchResult;
+        });
+
+        return lastBatch;
+    }
+
+    private Result applyOnNewConnection(List<PostgresEvent> events, PostgresTransactionEvent transaction) {
+        return withConnection(connection -> commitEvents(events, transaction, connection));
+    }
+
+    private void updateProgressOnNewConnection(List<PostgresTransactionEvent> transactions, Result result) {
+        Result progressResult = withConnection(connection -> {
+            updateProgress(transactions, result, connection);
             return Result.ok();
+        });
+
+        if (progressResult.isError()) {
+            log.warn("Failed to update apply progress", progressResult.getError().get());
         }
+    }
 
-        PostgresTransactionEvent transaction = (PostgresTransactionEvent) event;
+    /*
+        Runs the function on a connection with auto commit disabled.
+        If connections are pinned and the pinned connection is no longer valid, the function is retried once on a new connection.
+     */
+    private Result withConnection(ConnectionFunction function) {
+        if (pinnedConnections == null) {
+            try (Connection connection = dataSource.getConnection()) {
+                boolean originalAutoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
 
-        int lastTransactionId = lastSourceTransactionId.getOrDefault(transaction.sourceName, 0);
+                try {
+                    return function.apply(connection);
+                } finally {
+                    connection.setAutoCommit(originalAutoCommit);
+                }
+            } catch (Exception e) {
+                return Result.error(e);
+            }
+        }
 
-        List<PostgresEvent> filteredEvents = filterNewEvents(transaction.events, lastTransactionId);
+        Result result = withPinnedConnection(function);
 
-        if (filteredEvents.isEmpty()) {
+        if (result.isError() && result.getError().get() instanceof InvalidConnectionException) {
+            log.warn("Pinned connection is no longer valid, retrying with a new connection");
+            result = withPinnedConnection(function);
+        }
+
+        if (result.getError().orElse(null) instanceof InvalidConnectionException) {
+            return Result.error(((InvalidConnectionException) result.getError().get()).cause);
+        }
+
+        return result;
+    }
+
+    private Result withPinnedConnection(ConnectionFunction function) {
+        Connection connection = null;
+
+        try {
+            connection = pinnedConnections.acquire();
+
+            Result result = function.apply(connection);
+
+            if (result.isOk()) {
+                pinnedConnections.release(connection, false);
+                return result;
+            }
+
+            boolean valid = isValid(connection);
+            pinnedConnections.release(connection, !valid);
+
+            return valid ? result : Result.error(new InvalidConnectionException(result.getError().get()));
+        } catch (Exception e) {
+            if (connection == null) {
+                return Result.error(e);
+            }
+
+            boolean valid = isValid(connection);
+            pinnedConnections.release(connection, !valid);
+
+            return Result.error(valid ? e : new InvalidConnectionException(e));
+        }
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(CONNECTION_VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /*
+        Failed transactions hold the watermark back until they have been applied.
+        If every transaction was applied, the watermark can be moved up to the last transaction of the batch.
+     */
+    private void updateProgress(List<PostgresTransactionEvent> transactions, Result result, Connection connection) throws SQLException {
+        Map<String, Long> maxCommitLsns = new HashMap<>();
+
+        for (PostgresTransactionEvent transaction : transactions) {
+            if (!tracksProgress(transaction)) {
+                continue;
+            }
+
+            if (result.isError()) {
+                applyProgress.markFailed(transaction.sourceName, transaction.commitLsn);
+            } else {
+                maxCommitLsns.merge(transaction.sourceName, transaction.commitLsn, Math::max);
+            }
+        }
+
+        for (Map.Entry<String, Long> maxCommitLsn : maxCommitLsns.entrySet()) {
+            applyProgress.advanceWatermark(connection, maxCommitLsn.getKey(), maxCommitLsn.getValue());
+        }
+    }
+
+    private Result consumeEvents(List<PostgresTransactionEvent> transactions) {
+        if (transactions.isEmpty()) {
             return Result.ok();
         }
 
-        try (Connection connection = dataSource.getConnection()) {
-            originalAutoCommit.set(connection.getAutoCommit());
-            connection.setAutoCommit(false);
+        return withConnection(connection -> {
+            if (applyProgress != null) {
+                applyProgress.loadIfNeeded(connection);
+            }
+
+            Result result = config.isGroupCommitEnabled()
+                    ? applyGroups(transactions, connection)
+                    : applyTransactions(transactions, connection);
+
+            if (applyProgress != null) {
+                updateProgress(transactions, result, connection);
+            }
+
+            return result;
+        });
+    }
+
+    private Result applyTransactions(List<PostgresTransactionEvent> transactions, Connection connection) throws SQLException {
+        for (PostgresTransactionEvent transaction : transactions) {
+            Result result = applyTransaction(transaction, connection);
+
+            if (result.isError()) {
+                return result;
+            }
+        }
+
+        return Result.ok();
+    }
+
+    // Groups are formed from the given transactions only, the max latency limits how long a group is kept open while it is applied
+    private Result applyGroups(List<PostgresTransactionEvent> transactions, Connection connection) throws SQLException {
+        int idx = 0;
+
+        while (idx < transactions.size()) {
+            // Progress is only stored after the group has been committed
+            Map<String, Integer> groupTransactionIds = new HashMap<>();
+            List<PostgresTransactionEvent> groupTrackedTransactions = new ArrayList<>();
+
+            int groupTransactions = 0;
+            long groupBytes = 0;
+            long groupStart = System.nanoTime();
+            long maxLatencyNanos = config.getGroupCommitMaxLatency().toNanos();
 
             try {
-                filteredEvents.forEach(e -> handleDataChangeEvent(e, connection));
+                while (idx < transactions.size()
+                        && groupTransactions < config.getGroupCommitMaxTransactions()
+                        && groupBytes < config.getGroupCommitMaxBytes()
+                        && System.nanoTime() - groupStart < maxLatencyNanos
+                ) {
+                    PostgresTransactionEvent transaction = transactions.get(idx++);
+
+                    int lastTransactionId = groupTransactionIds.getOrDefault(
+                            transaction.sourceName,
+                            lastSourceTransactionId.getOrDefault(transaction.sourceName, 0)
+                    );
 
-                insertSkipTransactionMessage(connection);
+                    List<PostgresEvent> filteredEvents = findEventsToApply(transaction, lastTransactionId);
 
-                connection.commit();
+                    if (filteredEvents.isEmpty()) {
+                        continue;
+                    }
+
+                    applyEvents(filteredEvents, connection);
 
-                lastSourceTransactionId.put(transaction.sourceName, findLastTransactionId(filteredEvents));
+                    if (tracksProgress(transaction)) {
+                        applyProgress.store(connection, transaction.sourceName, transaction.commitLsn);
+                        groupTrackedTransactions.add(transaction);
+                    }
 
-                return Result.ok();
+                    groupTransactionIds.put(transaction.sourceName, findLastTransactionId(filteredEvents));
+                    groupTransactions++;
+                    groupBytes += estimateSize(filteredEvents);
+                }
+
+                if (groupTransactions > 0) {
+                    insertSkipTransactionMessage(connection);
+                    connection.commit();
+                    lastSourceTransactionId.putAll(groupTransactionIds);
+                    groupTrackedTransactions.forEach(t -> applyProgress.markApplied(t.sourceName, t.commitLsn));
+                }
             } catch (Exception e) {
                 log.error("Caught exception while processing events", e);
                 connection.rollback();
                 return Result.error(e);
-            } finally {
-                connection.setAutoCommit(originalAutoCommit.get());
             }
+        }
+
+        return Result.ok();
+    }
+
+    private Result applyTransaction(PostgresTransactionEvent transaction, Connection connection) throws SQLException {
+        int lastTransactionId = lastSourceTransactionId.getOrDefault(transaction.sourceName, 0);
+
+        List<PostgresEvent> filteredEvents = findEventsToApply(transaction, lastTransactionId);
+
+        if (filteredEvents.isEmpty()) {
+            return Result.ok();
+        }
+
+        Result result = commitEvents(filteredEvents, transaction, connection);
+
+        if (result.isOk()) {
+            lastSourceTransactionId.put(transaction.sourceName, findLastTransactionId(filteredEvents));
+        }
+
+        return result;
+    }
+
+    private Result commitEvents(List<PostgresEvent> events, PostgresTransactionEvent transaction, Connection connection) throws SQLException {
+        try {
+            applyEvents(events, connection);
+
+            if (tracksProgress(transaction)) {
+                applyProgress.store(connection, transaction.sourceName, transaction.commitLsn);
+            }
+
+            insertSkipTransactionMessage(connection);
+
+            connection.commit();
+
+            if (tracksProgress(transaction)) {
+                applyProgress.markApplied(transaction.sourceName, transaction.commitLsn);
+            }
+
+            return Result.ok();
         } catch (Exception e) {
+            log.error("Caught exception while processing events", e);
+            connection.rollback();
             return Result.error(e);
         }
     }
 
-    private void handleDataChangeEvent(PostgresEvent event, Connection connection) {
+    private void applyEvents(List<PostgresEvent> events, Connection connection) throws SQLException {
+        if (config.isCompactEvents()) {
+            events = EventCompactor.compact(events);
+        }
+
+        int copyThreshold = config.getCopyThreshold();
+
+        if (copyThreshold <= 0) {
+            applyStatements(events, connection);
+            return;
+        }
+
+        int statementsStart = 0;
+        int idx = 0;
+
+        while (idx < events.size()) {
+            int copyEnd = findCopyableInsertsEnd(events, idx);
+
+            if (copyEnd - idx >= copyThreshold) {
+                applyStatements(events.subList(statementsStart, idx), connection);
+                copyInserts(events.subList(idx, copyEnd), connection);
+                statementsStart = copyEnd;
+            }
+
+            idx = Math.max(copyEnd, idx + 1);
+        }
+
+        applyStatements(events.subList(statementsStart, events.size()), connection);
+    }
+
+    private void applyStatements(List<PostgresEvent> events, Connection connection) throws SQLException {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        if (config.getApplyMode() == ApplyMode.BATCHED) {
+            applyBatched(events, connection);
+        } else if (config.getApplyMode() == ApplyMode.MULTI_ROW) {
+            applyMultiRow(events, connection);
+        } else {
+            for (PostgresEvent event : events) {
+                handleDataChangeEvent(event, connection);
+            }
+        }
+    }
+
+    /*
+        Returns the end index (exclusive) of the inserts starting at startIdx which can be sent with a single COPY.
+        The inserts must be into the same table with the same columns, and the table cannot have a conflict strategy
+        since COPY does not support ON CONFLICT.
+     */
+    private int findCopyableInsertsEnd(List<PostgresEvent> events, int startIdx) {
+        PostgresEvent first = events.get(startIdx);
+
+        if (!(first instanceof InsertEvent)) {
+            return startIdx;
+        }
+
+        InsertEvent firstInsert = (InsertEvent) first;
+
+        if (config.getTableConfig().containsKey(tableFullName(firstInsert.namespace, firstInsert.table))) {
+            return startIdx;
+        }
+
+        String shape = statementShape(firstInsert);
+        int idx = startIdx + 1;
+
+        while (idx < events.size() && events.get(idx) instanceof InsertEvent && shape.equals(statementShape(events.get(idx)))) {
+            idx++;
+        }
+
+        return idx;
+    }
+
+    private static void copyInserts(List<PostgresEvent> inserts, Connection connection) throws SQLException {
+        InsertEvent first = (InsertEvent) inserts.get(0);
+
+        String sql = format("COPY %s.%s (%s) FROM STDIN", first.namespace, first.table, createSqlFieldParameters(first.fields));
+
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+
+        try {
+            StringBuilder rows = new StringBuilder(COPY_BUFFER_SIZE);
+
+            for (PostgresEvent event : inserts) {
+                PgCopyEncoder.appendRow(rows, ((InsertEvent) event).fields);
+
+                if (rows.length() >= COPY_BUFFER_SIZE) {
+                    writeToCopy(copyIn, rows);
+                }
+            }
+
+            writeToCopy(copyIn, rows);
+
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private static void writeToCopy(CopyIn copyIn, StringBuilder rows) throws SQLException {
+        byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        rows.setLength(0);
+    }
+
+    private void applyMultiRow(List<PostgresEvent> events, Connection connection) throws SQLException {
+        int idx = 0;
+
+        while (idx < events.size()) {
+            int end = findMultiRowEnd(events, idx);
+
+            if (end - idx > 1) {
+                executeMultiRow(events.subList(idx, end), connection);
+            } else {
+                handleDataChangeEvent(events.get(idx), connection);
+            }
+
+            idx = Math.max(end, idx + 1);
+        }
+    }
+
+    /*
+        Returns the end index (exclusive) of the events starting at startIdx which can be combined into a single statement.
+        Updates are not combined if they update the same row, since only one of the updates would be applied,
+        or if the table has unique constraints besides the identifying fields, see hasOtherUniqueConstraints.
+     */
+    private int findMultiRowEnd(List<PostgresEvent> events, int startIdx) {
+        PostgresEvent first = events.get(startIdx);
+
+        if (!canCombine(first)) {
+            return startIdx + 1;
+        }
+
+        String shape = statementShape(first);
+        int maxRows = Math.min(MAX_MULTI_ROW_ROWS, MAX_STATEMENT_PARAMETERS / Math.max(1, parametersPrRow(first)));
+
+        Set<List<Object>> updatedRows = new HashSet<>();
+        int idx = startIdx;
+
+        while (idx < events.size() && idx - startIdx < maxRows) {
+            PostgresEvent event = events.get(idx);
+
+            if (event.getClass() != first.getClass() || !shape.equals(statementShape(event)) || !canCombine(event)) {
+                break;
+            }
+
+            if (event instanceof UpdateEvent && !updatedRows.add(fieldValues(((UpdateEvent) event).identifierFields))) {
+                break;
+            }
+
+            idx++;
+        }
+
+        return idx;
+    }
+
+    private boolean canCombine(PostgresEvent event) {
         if (event instanceof InsertEvent) {
-            handleInsertDataChange((InsertEvent) event, connection);
+            InsertEvent insert = (InsertEvent) event;
+            ProcessorTableConfig tableConfig = config.getTableConfig().get(tableFullName(insert.namespace, insert.table));
+
+            // DO UPDATE fails if the same row is inserted twice in one statement
+            return tableConfig == null || tableConfig.insertConflictStrategy == InsertConflictStrategy.DO_NOTHING;
         } else if (event instanceof UpdateEvent) {
-            handleUpdateEvent((UpdateEvent) event, connection);
+            UpdateEvent update = (UpdateEvent) event;
+
+            if (!isUnnestable(update.identifierFields, false) || !isUnnestable(update.fields, true)) {
+                return false;
+            }
+
+            // Updates that change the identifying fields could affect rows identified by other updates in the same statement
+            for (Field<?> identifierField : update.identifierFields) {
+                for (Field<?> field : update.fields) {
+                    if (field.name.equals(identifierField.name) && !Objects.equals(field.value, identifierField.value)) {
+                        return false;
+                    }
+                }
+            }
+
+            return !hasOtherUniqueConstraints(update);
         } else if (event instanceof DeleteEvent) {
-            handleDeleteEvent((DeleteEvent) event, connection);
-        } else if (event instanceof CustomMessageEvent) {
+            return isUnnestable(((DeleteEvent) event).identifierFields, false);
+        }
+
+        return false;
+    }
+
+    /*
+        The rows of a single UPDATE are not updated in the order of the events, and unique constraints are checked row by row.
+        An update that takes a unique value from a row updated after it in the same statement can therefore fail,
+        even though the events succeed when applied in order. Unique indexes that are not declared as constraints are not found.
+     */
+    private boolean hasOtherUniqueConstraints(UpdateEvent update) {
+        Set<String> identifierColumns = update.identifierFields.stream()
+                .map(f -> f.name)
+                .collect(Collectors.toSet());
+
+        return uniqueConstraintColumns.computeIfAbsent(update.namespace, this::findUniqueConstraintColumns)
+                .getOrDefault(tableFullName(update.namespace, update.table), Collections.emptyList())
+                .stream()
+                .anyMatch(columns -> !columns.equals(identifierColumns));
+    }
+
+    private Map<String, List<Set<String>>> findUniqueConstraintColumns(String schema) {
+        Map<String, List<ColumnMetadata>> tableColumns = PgMetadata.getAllTableColumns(dataSource, schema);
+        Map<String, List<Set<String>>> uniqueColumns = new HashMap<>();
+
+        PgMetadata.getAllTableConstraints(dataSource, schema).forEach((table, constraints) -> {
+            List<ColumnMetadata> columns = tableColumns.getOrDefault(table, Collections.emptyList());
+
+            for (ConstraintMetadata constraint : constraints) {
+                if (constraint.type != ConstraintMetadata.ConstraintType.UNIQUE) {
+                    continue;
+                }
+
+                Set<String> constraintColumns = columns.stream()
+                        .filter(c -> constraint.constraintKeyOrdinalPositions.contains(c.ordinalPosition))
+                        .map(c -> c.name)
+                        .collect(Collectors.toSet());
+
+                uniqueColumns.computeIfAbsent(table, ignored -> new ArrayList<>()).add(constraintColumns);
+            }
+        });
+
+        return uniqueColumns;
+    }
+
+    // Fields that can be sent as an array and compared with = after unnest()
+    private static boolean isUnnestable(List<Field<?>> fields, boolean allowNull) {
+        for (Field<?> field : fields) {
+            if (field.value == null && !allowNull) {
+                return false;
+            }
+
+            switch (field.type) {
+                case INT16:
+                case INT32:
+                case INT64:
+                case FLOAT:
+                case DOUBLE:
+                case BOOLEAN:
+                case TEXT:
+                case UUID:
+                    break;
+                default:
+                    return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int parametersPrRow(PostgresEvent event) {
+        // Updates and deletes use one array parameter pr field regardless of the number of rows
+        return event instanceof InsertEvent ? ((InsertEvent) event).fields.size() : 0;
+    }
+
+    private static List<Object> fieldValues(List<Field<?>> fields) {
+        List<Object> values = new ArrayList<>(fields.size());
+        fields.forEach(f -> values.add(f.value));
+        return values;
+    }
+
+    private void executeMultiRow(List<PostgresEvent> events, Connection connection) throws SQLException {
+        PostgresEvent first = events.get(0);
+        String sql = sqlCache.computeIfAbsent("M" + events.size() + ":" + statementShape(first), shape -> createMultiRowSql(first, events.size()));
+
+        PreparedStatement statement = prepareStatement(connection, sql);
+
+        try {
+            int paramCounter = 1;
+
+            if (first instanceof InsertEvent) {
+                for (PostgresEvent event : events) {
+                    for (Field<?> field : ((InsertEvent) event).fields) {
+                        setParameter(connection, statement, paramCounter++, field);
+                    }
+                }
+            } else if (first instanceof UpdateEvent) {
+                paramCounter = setArrayParameters(connection, statement, paramCounter, events, e -> ((UpdateEvent) e).fields);
+                setArrayParameters(connection, statement, paramCounter, events, e -> ((UpdateEvent) e).identifierFields);
+            } else {
+                setArrayParameters(connection, statement, paramCounter, events, e -> ((DeleteEvent) e).identifierFields);
+            }
+
+            statement.executeUpdate();
+        } finally {
+            closeStatement(connection, statement);
+        }
+    }
+
+    private String createMultiRowSql(PostgresEvent event, int rows) {
+        if (event instanceof InsertEvent) {
+            InsertEvent insert = (InsertEvent) event;
+
+            String fields = createSqlFieldParameters(insert.fields);
+            String rowTemplate = "(" + createSqlValuesTemplate(insert.fields) + ")";
+            String values = String.join(", ", Collections.nCopies(rows, rowTemplate));
+            String onConflictSql = createOnConflictSql(insert, config.getTableConfig().get(tableFullName(insert.namespace, insert.table)));
+
+            return format("INSERT INTO %s.%s (%s) VALUES %s %s", insert.namespace, insert.table, fields, values, onConflictSql);
+        } else if (event instanceof UpdateEvent) {
+            UpdateEvent update = (UpdateEvent) event;
+
+            List<String> setSql = new ArrayList<>();
+            List<String> unnestParams = new ArrayList<>();
+            List<String> unnestColumns = new ArrayList<>();
+            List<String> whereSql = new ArrayList<>();
+
+            for (int i = 0; i < update.fields.size(); i++) {
+                Field<?> field = update.fields.get(i);
+                setSql.add(format("%s = v.s%d", field.name, i));
+                unnestParams.add(unnestParameter(field));
+                unnestColumns.add("s" + i);
+            }
+
+            for (int i = 0; i < update.identifierFields.size(); i++) {
+                Field<?> field = update.identifierFields.get(i);
+                whereSql.add(format("target.%s = v.k%d", field.name, i));
+                unnestParams.add(unnestParameter(field));
+                unnestColumns.add("k" + i);
+            }
+
+            return format(
+                    "UPDATE %s.%s AS target SET %s FROM unnest(%s) AS v(%s) WHERE %s",
+                    update.namespace, update.table,
+                    String.join(", ", setSql),
+                    String.join(", ", unnestParams),
+                    String.join(", ", unnestColumns),
+                    String.join(" and ", whereSql)
+            );
+        } else {
+            DeleteEvent delete = (DeleteEvent) event;
+
+            String keyColumns = createSqlFieldParameters(delete.identifierFields);
+            String unnestParams = delete.identifierFields.stream()
+                    .map(PostgresEventProcessor::unnestParameter)
+                    .collect(Collectors.joining(", "));
+
+            return format("DELETE FROM %s.%s WHERE (%s) IN (SELECT * FROM unnest(%s))", delete.namespace, delete.table, keyColumns, unnestParams);
+        }
+    }
+
+    private static String unnestParameter(Field<?> field) {
+        return "?::" + field.type.toBasePgType() + "[]";
+    }
+
+    // Sets one array parameter pr field, containing the values of the field from every event
+    private static int setArrayParameters(
+            Connection connection,
+            PreparedStatement statement,
+            int paramCounter,
+            List<PostgresEvent> events,
+            Function<PostgresEvent, List<Field<?>>> fieldsGetter
+    ) throws SQLException {
+        List<Field<?>> firstFields = fieldsGetter.apply(events.get(0));
+
+        for (int fieldIdx = 0; fieldIdx < firstFields.size(); fieldIdx++) {
+            Object[] values = new Object[events.size()];
+
+            for (int eventIdx = 0; eventIdx < events.size(); eventIdx++) {
+                values[eventIdx] = fieldsGetter.apply(events.get(eventIdx)).get(fieldIdx).value;
+            }
+
+            Array array = connection.createArrayOf(firstFields.get(fieldIdx).type.toBasePgType(), values);
+            statement.setArray(paramCounter++, array);
+        }
+
+        return paramCounter;
+    }
+
+    // Consecutive events with the same statement are sent as a single batch, other events act as a boundary
+    private void applyBatched(List<PostgresEvent> events, Connection connection) throws SQLException {
+        String batchSql = null;
+        PreparedStatement batchStatement = null;
+
+        try {
+            for (PostgresEvent event : events) {
+                if (event instanceof CustomMessageEvent) {
+                    executeBatch(connection, batchStatement);
+                    batchStatement = null;
+                    batchSql = null;
+
+                    handleDataChangeEvent(event, connection);
+                    continue;
+                }
+
+                String sql = getSql(event);
+
+                if (!sql.equals(batchSql)) {
+                    executeBatch(connection, batchStatement);
+                    batchStatement = null;
+                    batchStatement = prepareStatement(connection, sql);
+                    batchSql = sql;
+                }
+
+                setParameters(connection, batchStatement, event);
+                batchStatement.addBatch();
+            }
+
+            executeBatch(connection, batchStatement);
+        } catch (SQLException | RuntimeException e) {
+            if (batchStatement != null) {
+                discardBatch(connection, batchStatement, e);
+            }
+
+            throw e;
+        }
+    }
+
+    /*
+        Cached statements must not keep the failed batch. Statements that are not cached have already been closed
+        if the batch failed while executing. Errors while discarding are added to the original error.
+     */
+    private void discardBatch(Connection connection, PreparedStatement statement, Exception cause) {
+        try {
+            if (!statement.isClosed()) {
+                statement.clearBatch();
+                closeStatement(connection, statement);
+            }
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private void executeBatch(Connection connection, PreparedStatement statement) throws SQLException {
+        if (statement == null) {
+            return;
+        }
+
+        try {
+            statement.executeBatch();
+        } finally {
+            closeStatement(connection, statement);
+        }
+    }
+
+    // Statements are reused if the connection is pinned
+    private PreparedStatement prepareStatement(Connection connection, String sql) throws SQLException {
+        if (pinnedConnections != null && pinnedConnections.isPinned(connection)) {
+            return pinnedConnections.prepareStatement(connection, sql);
+        }
+
+        return connection.prepareStatement(sql);
+    }
+
+    private void closeStatement(Connection connection, PreparedStatement statement) throws SQLException {
+        if (pinnedConnections == null || !pinnedConnections.isPinned(connection)) {
+            statement.close();
+        }
+    }
+
+    private void handleDataChangeEvent(PostgresEvent event, Connection connection) throws SQLException {
+        if (event instanceof CustomMessageEvent) {
             CustomMessageHandler customMessageHandler = config.getCustomMessageHandler();
             CustomMessageEvent customMessageEvent = ((CustomMessageEvent) event);
 
@@ -107,69 +935,119 @@ public class PostgresEventProcessor implements EventSink {
 
             runWithResult(() -> customMessageHandler.handle(customMessageEvent, connection))
                 .throwIfError();
+
+            return;
+        }
+
+        if (!(event instanceof InsertEvent || event instanceof UpdateEvent || event instanceof DeleteEvent)) {
+            return;
+        }
+
+        PreparedStatement statement = prepareStatement(connection, getSql(event));
+
+        try {
+            setParameters(connection, statement, event);
+            statement.executeUpdate();
+        } finally {
+            closeStatement(connection, statement);
         }
     }
 
-    private void handleInsertDataChange(InsertEvent insert, Connection connection) {
-        String fields = createSqlFieldParameters(insert.fields);
-        String templateParams = createSqlValuesTemplate(insert.fields);
-        String onConflictSql = createOnConflictSql(insert, config.getTableConfig().get(tableFullName(insert.namespace, insert.table)));
+    // The generated SQL only depends on the shape of the event, and is cached to avoid rebuilding it for every row
+    private String getSql(PostgresEvent event) {
+        return sqlCache.computeIfAbsent(statementShape(event), shape -> createSql(event));
+    }
 
-        String sql = format("INSERT INTO %s.%s (%s) VALUES (%s) %s", insert.namespace, insert.table, fields, templateParams, onConflictSql);
+    private String createSql(PostgresEvent event) {
+        if (event instanceof InsertEvent) {
+            InsertEvent insert = (InsertEvent) event;
 
-        QueryUtils.update(connection, sql, statement -> {
-            int paramCounter = 1;
+            String fields = createSqlFieldParameters(insert.fields);
+            String templateParams = createSqlValuesTemplate(insert.fields);
+            String onConflictSql = createOnConflictSql(insert, config.getTableConfig().get(tableFullName(insert.namespace, insert.table)));
 
-            for (Field<?> field : insert.fields) {
-                setParameter(connection, statement, paramCounter++, field);
-            }
+            return format("INSERT INTO %s.%s (%s) VALUES (%s) %s", insert.namespace, insert.table, fields, templateParams, onConflictSql);
+        } else if (event instanceof UpdateEvent) {
+            UpdateEvent update = (UpdateEvent) event;
 
-            statement.executeUpdate();
-        });
-    }
+            String setSql = createSqlSetAllFields(update.fields);
+            String whereSql = createSqlWhereAllFieldsEqualTemplate(update.identifierFields);
 
-    private void handleUpdateEvent(UpdateEvent update, Connection connection) {
-        String setSql = createSqlSetAllFields(update.fields);
+            return format("UPDATE %s.%s SET %s WHERE %s", update.namespace, update.table, setSql, whereSql);
+        } else if (event instanceof DeleteEvent) {
+            DeleteEvent delete = (DeleteEvent) event;
 
-        String whereSql = createSqlWhereAllFieldsEqualTemplate(update.identifierFields);
+            String whereSql = createSqlWhereAllFieldsEqualTemplate(delete.identifierFields);
 
-        String sql = format("UPDATE %s.%s SET %s WHERE %s", update.namespace, update.table, setSql, whereSql);
+            return format("DELETE FROM %s.%s WHERE %s", delete.namespace, delete.table, whereSql);
+        }
 
-        QueryUtils.update(connection, sql, statement -> {
-            int paramCounter = 1;
+        throw new IllegalArgumentException("Unable to create SQL for event of type " + event.type);
+    }
 
-            for (Field<?> field : update.fields) {
+    private static void setParameters(Connection connection, PreparedStatement statement, PostgresEvent event) throws SQLException {
+        int paramCounter = 1;
+
+        if (event instanceof InsertEvent) {
+            for (Field<?> field : ((InsertEvent) event).fields) {
                 setParameter(connection, statement, paramCounter++, field);
             }
+        } else if (event instanceof UpdateEvent) {
+            UpdateEvent update = (UpdateEvent) event;
 
-            for (Field<?> field : update.identifierFields) {
-                // Fields that have null use "is null" and does not have a template parameter
-                if (field.value != null) {
-                    setParameter(connection, statement, paramCounter++, field);
-                }
+            for (Field<?> field : update.fields) {
+                setParameter(connection, statement, paramCounter++, field);
             }
 
-            statement.executeUpdate();
-        });
+            setIdentifierParameters(connection, statement, paramCounter, update.identifierFields);
+        } else if (event instanceof DeleteEvent) {
+            setIdentifierParameters(connection, statement, paramCounter, ((DeleteEvent) event).identifierFields);
+        }
     }
 
-    private void handleDeleteEvent(DeleteEvent delete, Connection connection) {
-        String whereSql = createSqlWhereAllFieldsEqualTemplate(delete.identifierFields);
+    private static void setIdentifierParameters(Connection connection, PreparedStatement statement, int paramCounter, List<Field<?>> identifierFields) throws SQLException {
+        for (Field<?> field : identifierFields) {
+            // Fields that have null use "is null" and does not have a template parameter
+            if (field.value != null) {
+                setParameter(connection, statement, paramCounter++, field);
+            }
+        }
+    }
 
-        String sql = format("DELETE FROM %s.%s WHERE %s", delete.namespace, delete.table, whereSql);
+    /*
+        Identifies the statement an event results in: the kind of statement, the table, the names and types of the fields,
+        and which identifier fields are null since they are matched with "is null".
+     */
+    private static String statementShape(PostgresEvent event) {
+        StringBuilder shape = new StringBuilder(64);
 
-        QueryUtils.update(connection, sql, statement -> {
-            int paramCounter = 1;
+        if (event instanceof InsertEvent) {
+            InsertEvent insert = (InsertEvent) event;
+            shape.append("I:").append(insert.namespace).append('.').append(insert.table);
+            appendFieldShape(shape, insert.fields, false);
+        } else if (event instanceof UpdateEvent) {
+            UpdateEvent update = (UpdateEvent) event;
+            shape.append("U:").append(update.namespace).append('.').append(update.table);
+            appendFieldShape(shape, update.fields, false);
+            shape.append('|');
+            appendFieldShape(shape, update.identifierFields, true);
+        } else if (event instanceof DeleteEvent) {
+            DeleteEvent delete = (DeleteEvent) event;
+            shape.append("D:").append(delete.namespace).append('.').append(delete.table);
+            appendFieldShape(shape, delete.identifierFields, true);
+        }
 
-            for (Field<?> field : delete.identifierFields) {
-                // Fields that have null use "is null" and does not have a template parameter
-                if (field.value != null) {
-                    setParameter(connection, statement, paramCounter++, field);
-                }
-            }
+        return shape.toString();
+    }
 
-            statement.executeUpdate();
-        });
+    private static void appendFieldShape(StringBuilder shape, List<Field<?>> fields, boolean includeNull) {
+        for (Field<?> field : fields) {
+            shape.append(',').append(field.name).append(':').append(field.type.ordinal());
+
+            if (includeNull && field.value == null) {
+                shape.append('!');
+            }
+        }
     }
 
     private static String createOnConflictSql(InsertEvent insert, ProcessorTableConfig config) {
@@ -258,6 +1136,84 @@ public class PostgresEventProcessor implements EventSink {
         }
     }
 
+    // Rough estimate of the size of the field values, used to limit the size of commit groups
+    private static long estimateSize(List<PostgresEvent> events) {
+        long size = 0;
+
+        for (PostgresEvent event : events) {
+            if (event instanceof InsertEvent) {
+                size += estimateSize(((InsertEvent) event).fields);
+            } else if (event instanceof UpdateEvent) {
+                size += estimateSize(((UpdateEvent) event).fields) + estimateSize(((UpdateEvent) event).identifierFields);
+            } else if (event instanceof DeleteEvent) {
+                size += estimateSize(((DeleteEvent) event).identifierFields);
+            }
+        }
+
+        return size;
+    }
+
+    private static long estimateSize(Collection<Field<?>> fields) {
+        long size = 0;
+
+        for (Field<?> field : fields) {
+            if (field.value instanceof byte[]) {
+                size += ((byte[]) field.value).length;
+            } else if (field.value instanceof String) {
+                size += ((String) field.value).length();
+            } else if (field.value instanceof Collection) {
+                size += 8L * ((Collection<?>) field.value).size();
+            } else {
+                size += 8;
+            }
+        }
+
+        return size;
+    }
+
+    private static List<PostgresTransactionEvent> toTransactions(List<Event> events) {
+        return events.stream()
+                .filter(e -> e instanceof PostgresTransactionEvent)
+                .map(e -> (PostgresTransactionEvent) e)
+                .collect(Collectors.toList());
+    }
+
+    private static ExecutorService createApplyExecutor(int parallelism) {
+        AtomicInteger threadCounter = new AtomicInteger();
+
+        return Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName("postgres-event-processor-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private Set<Integer> getAppliedSourceTransactionIds(String sourceName) {
+        return appliedSourceTransactionIds.computeIfAbsent(sourceName, (ignored) -> ConcurrentHashMap.newKeySet());
+    }
+
+    private boolean tracksProgress(PostgresTransactionEvent transaction) {
+        return applyProgress != null && transaction.commitLsn >= 0;
+    }
+
+    /*
+        Transactions with a commit LSN are skipped if the progress table shows they have been applied.
+        Otherwise events are filtered by the source transaction id, which is only tracked in memory.
+     */
+    private List<PostgresEvent> findEventsToApply(PostgresTransactionEvent transaction, int lastTransactionId) {
+        if (tracksProgress(transaction)) {
+            if (applyProgress.isApplied(transaction.sourceName, transaction.commitLsn)) {
+                log.warn("Skipping already applied transaction from {} with commit LSN {}", transaction.sourceName, transaction.commitLsn);
+                return Collections.emptyList();
+            }
+
+            return transaction.events;
+        }
+
+        return filterNewEvents(transaction.events, lastTransactionId);
+    }
+
     private static List<PostgresEvent> filterNewEvents(List<PostgresEvent> events, int lastTransactionId) {
         return events.stream().filter(e -> {
             boolean isNew = e.transactionId > lastTransactionId;
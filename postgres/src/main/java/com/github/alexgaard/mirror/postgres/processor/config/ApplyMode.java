@@ -0,0 +1,17 @@
+package com.github.alexgaard.mirror.postgres.processor.config;
+
+public enum ApplyMode {
+    // Executes one statement per event
+    ROW_BY_ROW,
+    // Consecutive events that result in the same statement are executed as a JDBC batch
+    BATCHED,
+    /*
+        Consecutive events that result in the same statement are combined into a single statement,
+        inserts with multiple rows in VALUES and updates/deletes joined with unnest() of array parameters.
+        Events that cannot be combined are executed one by one.
+        Updates on tables with unique constraints other than the identifying fields are not combined, since the rows
+        of a single statement are not updated in order. Unique indexes created without a constraint are not detected,
+        so tables with such indexes should use another mode.
+     */
+    MULTI_ROW
+}
@@ -1,6 +1,7 @@
 package com.github.alexgaard.mirror.postgres.processor.config;
 
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -12,13 +13,71 @@ public class ProcessorConfig {
 
     CustomMessageHandler customMessageHandler;
 
+    ApplyMode applyMode = ApplyMode.ROW_BY_ROW;
+
+    // Runs of at least this many inserts into the same table are applied with COPY, 0 disables COPY
+    int copyThreshold = 0;
+
+    // Number of connections used to apply non-conflicting transactions concurrently, 1 applies every transaction serially
+    int parallelism = 1;
+
+    /*
+        Group commit applies consecutive transactions in a single target transaction.
+        A group is committed when it reaches the max number of transactions or bytes,
+        or when it has been open for longer than the max latency. 1 transaction disables group commit.
+        Groups are only formed from the transactions delivered in the same consumeAll call, and are never held
+        open across calls. Group commit therefore has no effect when transactions are delivered one at a time,
+        as with consume() or a collector streaming without the pipeline. Polling and the pipelined collector deliver
+        every transaction that is ready in the same call.
+     */
+    int groupCommitMaxTransactions = 1;
+
+    long groupCommitMaxBytes = 1024 * 1024;
+
+    Duration groupCommitMaxLatency = Duration.ofMillis(100);
+
+    // Table in the target database where the applied source transactions are stored, null disables it
+    String progressTable;
+
+    // Keeps long-lived connections with cached prepared statements instead of retrieving a connection for every batch
+    boolean pinConnections = false;
+
+    // Max number of prepared statements cached for each pinned connection
+    int statementCacheSize = 256;
+
+    // Folds the events of each row in a transaction into the net change before it is applied
+    boolean compactEvents = false;
+
     public ProcessorConfig() {
         this.tableConfig = new HashMap<>();
     }
 
-    public ProcessorConfig(Map<String, ProcessorTableConfig> tableConfig, CustomMessageHandler customMessageHandler) {
+    public ProcessorConfig(
+            Map<String, ProcessorTableConfig> tableConfig,
+            CustomMessageHandler customMessageHandler,
+            ApplyMode applyMode,
+            int copyThreshold,
+            int parallelism,
+            int groupCommitMaxTransactions,
+            long groupCommitMaxBytes,
+            Duration groupCommitMaxLatency,
+            String progressTable,
+            boolean pinConnections,
+            int statementCacheSize,
+            boolean compactEvents
+    ) {
         this.tableConfig = tableConfig;
         this.customMessageHandler = customMessageHandler;
+        this.applyMode = applyMode;
+        this.copyThreshold = copyThreshold;
+        this.parallelism = parallelism;
+        this.groupCommitMaxTransactions = groupCommitMaxTransactions;
+        this.groupCommitMaxBytes = groupCommitMaxBytes;
+        this.groupCommitMaxLatency = groupCommitMaxLatency;
+        this.progressTable = progressTable;
+        this.pinConnections = pinConnections;
+        this.statementCacheSize = statementCacheSize;
+        this.compactEvents = compactEvents;
     }
 
     public Map<String, ProcessorTableConfig> getTableConfig() {
@@ -29,11 +88,55 @@ public class ProcessorConfig {
         return customMessageHandler;
     }
 
+    public ApplyMode getApplyMode() {
+        return applyMode;
+    }
+
+    public int getCopyThreshold() {
+        return copyThreshold;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getGroupCommitMaxTransactions() {
+        return groupCommitMaxTransactions;
+    }
+
+    public long getGroupCommitMaxBytes() {
+        return groupCommitMaxBytes;
+    }
+
+    public Duration getGroupCommitMaxLatency() {
+        return groupCommitMaxLatency;
+    }
+
+    public boolean isGroupCommitEnabled() {
+        return groupCommitMaxTransactions > 1;
+    }
+
+    public String getProgressTable() {
+        return progressTable;
+    }
+
+    public boolean isPinConnections() {
+        return pinConnections;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public boolean isCompactEvents() {
+        return compactEvents;
+    }
+
     public ProcessorConfig copy() {
         Map<String, ProcessorTableConfig> tableConfigCopy = new HashMap<>();
         tableConfig.forEach((k, v) -> tableConfigCopy.put(k, v.copy()));
 
-        return new ProcessorConfig(tableConfigCopy, customMessageHandler);
+        return new ProcessorConfig(tableConfigCopy, customMessageHandler, applyMode, copyThreshold, parallelism, groupCommitMaxTransactions, groupCommitMaxBytes, groupCommitMaxLatency, progressTable, pinConnections, statementCacheSize, compactEvents);
     }
 
     @Override
@@ -44,6 +147,16 @@ public class ProcessorConfig {
         ProcessorConfig config = (ProcessorConfig) o;
 
         if (!Objects.equals(tableConfig, config.tableConfig)) return false;
+        if (applyMode != config.applyMode) return false;
+        if (copyThreshold != config.copyThreshold) return false;
+        if (parallelism != config.parallelism) return false;
+        if (groupCommitMaxTransactions != config.groupCommitMaxTransactions) return false;
+        if (groupCommitMaxBytes != config.groupCommitMaxBytes) return false;
+        if (!Objects.equals(groupCommitMaxLatency, config.groupCommitMaxLatency)) return false;
+        if (!Objects.equals(progressTable, config.progressTable)) return false;
+        if (pinConnections != config.pinConnections) return false;
+        if (statementCacheSize != config.statementCacheSize) return false;
+        if (compactEvents != config.compactEvents) return false;
         return Objects.equals(customMessageHandler, config.customMessageHandler);
     }
 
@@ -51,6 +164,16 @@ public class ProcessorConfig {
     public int hashCode() {
         int result = tableConfig != null ? tableConfig.hashCode() : 0;
         result = 31 * result + (customMessageHandler != null ? customMessageHandler.hashCode() : 0);
+        result = 31 * result + applyMode.hashCode();
+        result = 31 * result + copyThreshold;
+        result = 31 * result + parallelism;
+        result = 31 * result + groupCommitMaxTransactions;
+        result = 31 * result + (int) (groupCommitMaxBytes ^ (groupCommitMaxBytes >>> 32));
+        result = 31 * result + (groupCommitMaxLatency != null ? groupCommitMaxLatency.hashCode() : 0);
+        result = 31 * result + (progressTable != null ? progressTable.hashCode() : 0);
+        result = 31 * result + (pinConnections ? 1 : 0);
+        result = 31 * result + statementCacheSize;
+        result = 31 * result + (compactEvents ? 1 : 0);
         return result;
     }
 
@@ -59,6 +182,16 @@ public class ProcessorConfig {
         return "ProcessorConfig{" +
                 "tableConfig=" + tableConfig +
                 ", customMessageHandler=" + customMessageHandler +
+                ", applyMode=" + applyMode +
+                ", copyThreshold=" + copyThreshold +
+                ", parallelism=" + parallelism +
+                ", groupCommitMaxTransactions=" + groupCommitMaxTransactions +
+                ", groupCommitMaxBytes=" + groupCommitMaxBytes +
+                ", groupCommitMaxLatency=" + groupCommitMaxLatency +
+                ", progressTable='" + progressTable + '\'' +
+                ", pinConnections=" + pinConnections +
+                ", statementCacheSize=" + statementCacheSize +
+                ", compactEvents=" + compactEvents +
                 '}';
     }
 }
@@ -1,5 +1,6 @@
 package com.github.alexgaard.mirror.postgres.processor.config;
 
+import java.time.Duration;
 
 import static com.github.alexgaard.mirror.postgres.metadata.PgMetadata.tableFullName;
 
@@ -14,6 +15,48 @@ public class ProcessorConfigBuilder {
         return this;
     }
 
+    public ProcessorConfigBuilder applyMode(ApplyMode applyMode) {
+        config.applyMode = applyMode;
+        return this;
+    }
+
+    public ProcessorConfigBuilder copyThreshold(int copyThreshold) {
+        config.copyThreshold = copyThreshold;
+        return this;
+    }
+
+    public ProcessorConfigBuilder parallelism(int parallelism) {
+        config.parallelism = parallelism;
+        return this;
+    }
+
+    public ProcessorConfigBuilder groupCommit(int maxTransactions, long maxBytes, Duration maxLatency) {
+        config.groupCommitMaxTransactions = maxTransactions;
+        config.groupCommitMaxBytes = maxBytes;
+        config.groupCommitMaxLatency = maxLatency;
+        return this;
+    }
+
+    public ProcessorConfigBuilder progressTable(String progressTable) {
+        config.progressTable = progressTable;
+        return this;
+    }
+
+    public ProcessorConfigBuilder pinConnections(boolean pinConnections) {
+        config.pinConnections = pinConnections;
+        return this;
+    }
+
+    public ProcessorConfigBuilder statementCacheSize(int statementCacheSize) {
+        config.statementCacheSize = statementCacheSize;
+        return this;
+    }
+
+    public ProcessorConfigBuilder compactEvents(boolean compactEvents) {
+        config.compactEvents = compactEvents;
+        return this;
+    }
+
     public ProcessorConfigBuilder configure(String tableName, ProcessorTableConfig tableConfig) {
         return configure(DEFAULT_SCHEMA, tableName, tableConfig);
     }
@@ -24,6 +67,14 @@ public class ProcessorConfigBuilder {
     }
 
     public ProcessorConfig build() {
+        if (config.parallelism < 1) {
+            throw new IllegalStateException("Parallelism must be at least 1");
+        }
+
+        if (config.isGroupCommitEnabled() && config.parallelism > 1) {
+            throw new IllegalStateException("Group commit cannot be combined with parallel apply");
+        }
+
         return config.copy();
     }
 
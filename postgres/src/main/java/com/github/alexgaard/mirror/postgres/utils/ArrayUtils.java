@@ -1,7 +1,9 @@
 package com.github.alexgaard.mirror.postgres.utils;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.RandomAccess;
 
 public class ArrayUtils {
 
@@ -15,4 +17,72 @@ public class ArrayUtils {
         return list;
     }
 
+    // Read only list views over primitive arrays, values are boxed on access
+
+    public static List<Integer> asList(int[] values) {
+        return new IntList(values);
+    }
+
+    public static List<Long> asList(long[] values) {
+        return new LongList(values);
+    }
+
+    public static List<Double> asList(double[] values) {
+        return new DoubleList(values);
+    }
+
+    private static class IntList extends AbstractList<Integer> implements RandomAccess {
+        private final int[] values;
+
+        private IntList(int[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public Integer get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+    }
+
+    private static class LongList extends AbstractList<Long> implements RandomAccess {
+        private final long[] values;
+
+        private LongList(long[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public Long get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+    }
+
+    private static class DoubleList extends AbstractList<Double> implements RandomAccess {
+        private final double[] values;
+
+        private DoubleList(double[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public Double get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+    }
+
 }
@@ -0,0 +1,40 @@
+package com.github.alexgaard.mirror.postgres.utils;
+
+import java.nio.ByteBuffer;
+
+import static com.github.alexgaard.mirror.postgres.utils.ParseUtils.getString;
+import static com.github.alexgaard.mirror.postgres.utils.ParseUtils.sliceOf;
+
+/*
+    Character view of a buffer that only contains ASCII, such as the text format of numbers and dates.
+    Lets parsers read the tuple data directly without first decoding it into a String.
+ */
+public class AsciiCharSequence implements CharSequence {
+
+    private final ByteBuffer buffer;
+
+    public AsciiCharSequence(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int length() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (buffer.get(buffer.position() + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new AsciiCharSequence(sliceOf(buffer, buffer.position() + start, end - start));
+    }
+
+    @Override
+    public String toString() {
+        return getString(buffer.position(), buffer.remaining(), buffer);
+    }
+
+}
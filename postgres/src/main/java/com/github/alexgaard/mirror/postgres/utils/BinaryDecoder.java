@@ -0,0 +1,169 @@
+package com.github.alexgaard.mirror.postgres.utils;
+
+import com.github.alexgaard.mirror.core.exception.ParseException;
+
+import java.nio.ByteBuffer;
+import java.time.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static com.github.alexgaard.mirror.postgres.utils.ParseUtils.getString;
+import static com.github.alexgaard.mirror.postgres.utils.ParseUtils.sliceOf;
+import static java.lang.String.format;
+
+/*
+    Decodes values sent in the postgres binary format (the output of the type's send function).
+    All values are in network byte order, and the buffers are expected to contain exactly one value.
+ */
+public class BinaryDecoder {
+
+    // Dates and timestamps are stored relative to 2000-01-01
+    private static final LocalDate PG_EPOCH_DATE = LocalDate.of(2000, 1, 1);
+
+    private static final long PG_EPOCH_SECONDS = PG_EPOCH_DATE.atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+
+    private static final long MICROS_PR_SECOND = 1_000_000;
+
+    private static final int JSONB_VERSION = 1;
+
+    public static short decodeInt16(ByteBuffer buffer) {
+        return buffer.getShort(buffer.position());
+    }
+
+    public static int decodeInt32(ByteBuffer buffer) {
+        return buffer.getInt(buffer.position());
+    }
+
+    public static long decodeInt64(ByteBuffer buffer) {
+        return buffer.getLong(buffer.position());
+    }
+
+    public static float decodeFloat(ByteBuffer buffer) {
+        return buffer.getFloat(buffer.position());
+    }
+
+    public static double decodeDouble(ByteBuffer buffer) {
+        return buffer.getDouble(buffer.position());
+    }
+
+    public static boolean decodeBoolean(ByteBuffer buffer) {
+        return buffer.get(buffer.position()) != 0;
+    }
+
+    public static UUID decodeUuid(ByteBuffer buffer) {
+        int pos = buffer.position();
+        return new UUID(buffer.getLong(pos), buffer.getLong(pos + 8));
+    }
+
+    public static String decodeText(ByteBuffer buffer) {
+        return getString(buffer.position(), buffer.remaining(), buffer);
+    }
+
+    public static char decodeChar(ByteBuffer buffer) {
+        return decodeText(buffer).charAt(0);
+    }
+
+    public static String decodeJsonb(ByteBuffer buffer) {
+        int version = buffer.get(buffer.position());
+
+        if (version != JSONB_VERSION) {
+            throw new ParseException(format("Unsupported jsonb version %d", version));
+        }
+
+        return getString(buffer.position() + 1, buffer.remaining() - 1, buffer);
+    }
+
+    public static byte[] decodeBytes(ByteBuffer buffer) {
+        return ParseUtils.toByteArray(buffer);
+    }
+
+    public static LocalDate decodeDate(ByteBuffer buffer) {
+        int days = decodeInt32(buffer);
+
+        if (days == Integer.MAX_VALUE) {
+            return LocalDate.MAX;
+        } else if (days == Integer.MIN_VALUE) {
+            return LocalDate.MIN;
+        }
+
+        return PG_EPOCH_DATE.plusDays(days);
+    }
+
+    public static LocalTime decodeTime(ByteBuffer buffer) {
+        return LocalTime.ofNanoOfDay(decodeInt64(buffer) * 1000);
+    }
+
+    public static LocalDateTime decodeTimestamp(ByteBuffer buffer) {
+        long micros = decodeInt64(buffer);
+
+        if (micros == Long.MAX_VALUE) {
+            return LocalDateTime.MAX;
+        } else if (micros == Long.MIN_VALUE) {
+            return LocalDateTime.MIN;
+        }
+
+        long seconds = Math.floorDiv(micros, MICROS_PR_SECOND);
+        int nanos = (int) Math.floorMod(micros, MICROS_PR_SECOND) * 1000;
+
+        return LocalDateTime.ofEpochSecond(PG_EPOCH_SECONDS + seconds, nanos, ZoneOffset.UTC);
+    }
+
+    // timestamptz is sent as UTC, the session time zone is only applied to the text format
+    public static OffsetDateTime decodeTimestampTz(ByteBuffer buffer) {
+        return decodeTimestamp(buffer).atOffset(ZoneOffset.UTC);
+    }
+
+    /*
+    Format:
+        Int32 number of dimensions
+        Int32 flags (1 if the array contains nulls)
+        Int32 element type oid
+        For each dimension:
+            Int32 dimension size
+            Int32 lower bound
+
+        For each element:
+            Int32 length of element, -1 if null
+            Byten element value
+
+    Multidimensional arrays are flattened.
+    */
+    public static <T> List<T> decodeArray(ByteBuffer buffer, Function<ByteBuffer, T> elementDecoder) {
+        int pos = buffer.position();
+        int dimensions = buffer.getInt(pos);
+
+        if (dimensions == 0) {
+            return Collections.emptyList();
+        }
+
+        pos += 12;
+
+        int numElements = 1;
+
+        for (int i = 0; i < dimensions; i++) {
+            numElements *= buffer.getInt(pos);
+            pos += 8;
+        }
+
+        List<T> elements = new ArrayList<>(numElements);
+
+        for (int i = 0; i < numElements; i++) {
+            int length = buffer.getInt(pos);
+            pos += 4;
+
+            if (length < 0) {
+                elements.add(null);
+                continue;
+            }
+
+            elements.add(elementDecoder.apply(sliceOf(buffer, pos, length)));
+            pos += length;
+        }
+
+        return elements;
+    }
+
+}
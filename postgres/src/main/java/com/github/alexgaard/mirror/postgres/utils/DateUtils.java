@@ -35,7 +35,149 @@ public class DateUtils {
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSSSSSX")
     );
 
-    public static LocalDateTime parseVariablePrecisionLocalDateTime(String localDateTimeStr) {
+    // Length of "yyyy-MM-dd HH:mm:ss"
+    private static final int DATE_TIME_LENGTH = 19;
+
+    private static final int[] NANO_MULTIPLIERS = {
+            1_000_000_000, 100_000_000, 10_000_000, 1_000_000, 100_000, 10_000, 1_000, 100, 10, 1
+    };
+
+    public static LocalDateTime parseVariablePrecisionLocalDateTime(CharSequence localDateTimeStr) {
+        int dateTimeEnd = findDateTimeEnd(localDateTimeStr);
+
+        if (dateTimeEnd == localDateTimeStr.length()) {
+            return toLocalDateTime(localDateTimeStr, dateTimeEnd);
+        }
+
+        return parseLocalDateTimeWithFormatter(localDateTimeStr.toString());
+    }
+
+    public static OffsetDateTime parseVariablePrecisionOffsetDateTime(CharSequence offsetDateTimeStr) {
+        int dateTimeEnd = findDateTimeEnd(offsetDateTimeStr);
+
+        if (dateTimeEnd != -1) {
+            ZoneOffset offset = parseOffset(offsetDateTimeStr, dateTimeEnd);
+
+            if (offset != null) {
+                return OffsetDateTime.of(toLocalDateTime(offsetDateTimeStr, dateTimeEnd), offset);
+            }
+        }
+
+        return parseOffsetDateTimeWithFormatter(offsetDateTimeStr.toString());
+    }
+
+    /*
+        Returns the index after "yyyy-MM-dd HH:mm:ss[.fffffffff]", or -1 if the string does not start with this layout.
+        Other layouts such as BC dates, years with more than 4 digits and infinity are left to the formatters.
+     */
+    private static int findDateTimeEnd(CharSequence str) {
+        int length = str.length();
+
+        if (length < DATE_TIME_LENGTH
+                || !isDigits(str, 0, 4) || str.charAt(4) != '-'
+                || !isDigits(str, 5, 7) || str.charAt(7) != '-'
+                || !isDigits(str, 8, 10) || str.charAt(10) != ' '
+                || !isDigits(str, 11, 13) || str.charAt(13) != ':'
+                || !isDigits(str, 14, 16) || str.charAt(16) != ':'
+                || !isDigits(str, 17, 19)) {
+            return -1;
+        }
+
+        if (length == DATE_TIME_LENGTH || str.charAt(DATE_TIME_LENGTH) != '.') {
+            return DATE_TIME_LENGTH;
+        }
+
+        int fractionStart = DATE_TIME_LENGTH + 1;
+        int idx = fractionStart;
+
+        while (idx < length && isDigit(str.charAt(idx))) {
+            idx++;
+        }
+
+        int fractionDigits = idx - fractionStart;
+
+        return fractionDigits >= 1 && fractionDigits <= 9 ? idx : -1;
+    }
+
+    private static LocalDateTime toLocalDateTime(CharSequence str, int dateTimeEnd) {
+        int nanos = 0;
+
+        if (dateTimeEnd > DATE_TIME_LENGTH) {
+            int fractionStart = DATE_TIME_LENGTH + 1;
+            nanos = parseDigits(str, fractionStart, dateTimeEnd) * NANO_MULTIPLIERS[dateTimeEnd - fractionStart];
+        }
+
+        return LocalDateTime.of(
+                parseDigits(str, 0, 4),
+                parseDigits(str, 5, 7),
+                parseDigits(str, 8, 10),
+                parseDigits(str, 11, 13),
+                parseDigits(str, 14, 16),
+                parseDigits(str, 17, 19),
+                nanos
+        );
+    }
+
+    // Parses "Z", "+hh", "+hh:mm" or "+hh:mm:ss" which must end the string, returns null otherwise
+    private static ZoneOffset parseOffset(CharSequence str, int offsetStart) {
+        int length = str.length() - offsetStart;
+
+        if (length == 1 && str.charAt(offsetStart) == 'Z') {
+            return ZoneOffset.UTC;
+        }
+
+        if (length != 3 && length != 6 && length != 9) {
+            return null;
+        }
+
+        char sign = str.charAt(offsetStart);
+
+        if (sign != '+' && sign != '-') {
+            return null;
+        }
+
+        int totalSeconds = 0;
+
+        for (int i = 0; i < length / 3; i++) {
+            int partStart = offsetStart + i * 3;
+
+            if ((i > 0 && str.charAt(partStart) != ':') || !isDigits(str, partStart + 1, partStart + 3)) {
+                return null;
+            }
+
+            totalSeconds = totalSeconds * 60 + parseDigits(str, partStart + 1, partStart + 3);
+        }
+
+        totalSeconds *= (length == 3 ? 3600 : length == 6 ? 60 : 1);
+
+        return ZoneOffset.ofTotalSeconds(sign == '-' ? -totalSeconds : totalSeconds);
+    }
+
+    private static boolean isDigits(CharSequence str, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!isDigit(str.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int parseDigits(CharSequence str, int from, int to) {
+        int value = 0;
+
+        for (int i = from; i < to; i++) {
+            value = value * 10 + (str.charAt(i) - '0');
+        }
+
+        return value;
+    }
+
+    private static LocalDateTime parseLocalDateTimeWithFormatter(String localDateTimeStr) {
         int subSecondPrecisionStart = localDateTimeStr.lastIndexOf(".");
 
         int subSecondPrecision = subSecondPrecisionStart != -1
@@ -49,7 +191,7 @@ public class DateUtils {
         return LocalDateTime.parse(localDateTimeStr, dateTimeFormatter);
     }
 
-    public static OffsetDateTime parseVariablePrecisionOffsetDateTime(String offsetDateTimeStr) {
+    private static OffsetDateTime parseOffsetDateTimeWithFormatter(String offsetDateTimeStr) {
         int subSecondPrecision = findSubSecondPrecisionForOffsetDateTime(offsetDateTimeStr);
 
         DateTimeFormatter dateTimeFormatter = offsetDateTimeFormatters.get(subSecondPrecision);
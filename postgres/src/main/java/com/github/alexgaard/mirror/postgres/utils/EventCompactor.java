@@ -0,0 +1,291 @@
+package com.github.alexgaard.mirror.postgres.utils;
+
+import com.github.alexgaard.mirror.postgres.event.*;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static com.github.alexgaard.mirror.postgres.metadata.PgMetadata.tableFullName;
+
+/*
+    Folds the events of each row into the net change of the row.
+        insert + updates -> insert
+        insert + updates + delete -> nothing
+        updates -> update
+        updates + delete -> delete
+
+    Rows are identified by the table and the identifying fields of the updates and deletes in the events.
+    Inserts can only be folded if the table has updates or deletes among the events, since inserts have no identifying fields.
+
+    The net change of a row starting with an insert keeps the position of the insert, other rows are moved to the position
+    of their last event. This keeps inserts before rows referencing them, and deletes after rows that referenced them.
+    Events are only folded if there is no other event on the same table between them, since moving a change past changes
+    to other rows of the table can break unique constraints, e.g. when two rows swap the value of a unique column.
+    Custom messages are not moved, and events are not folded across them.
+
+    foldLatestImages folds every row into its latest image regardless of the events between them, for consumers
+    that only need the eventual state of the rows, such as the coalescing window of the collector. The result
+    keeps the referential order above, but can break unique constraints which were only kept by the order of the changes.
+ */
+public class EventCompactor {
+
+    public static List<PostgresEvent> compact(List<PostgresEvent> events) {
+        return compact(events, false);
+    }
+
+    public static List<PostgresEvent> foldLatestImages(List<PostgresEvent> events) {
+        return compact(events, true);
+    }
+
+    private static List<PostgresEvent> compact(List<PostgresEvent> events, boolean foldAcrossRows) {
+        List<PostgresEvent> compacted = new ArrayList<>(events.size());
+        int segmentStart = 0;
+
+        for (int i = 0; i < events.size(); i++) {
+            if (events.get(i) instanceof CustomMessageEvent) {
+                compacted.addAll(compactSegment(events.subList(segmentStart, i), foldAcrossRows));
+                compacted.add(events.get(i));
+                segmentStart = i + 1;
+            }
+        }
+
+        compacted.addAll(compactSegment(events.subList(segmentStart, events.size()), foldAcrossRows));
+
+        return compacted;
+    }
+
+    private static List<PostgresEvent> compactSegment(List<PostgresEvent> events, boolean foldAcrossRows) {
+        Map<String, List<String>> tableKeyColumns = findKeyColumns(events);
+
+        // The net event of each row is stored at the position it will be applied, null if nothing is applied at the position
+        PostgresEvent[] positions = new PostgresEvent[events.size()];
+
+        // Key = row key, value = position of the net event of rows that are not deleted
+        Map<List<Object>, Integer> openRows = new HashMap<>();
+
+        // Key = "<schema>.<table_name>", value = index of the last event on the table
+        Map<String, Integer> lastTableEvents = new HashMap<>();
+
+        // Key = row key, value = index of the last event of the open row
+        Map<List<Object>, Integer> lastRowEvents = new HashMap<>();
+
+        for (int i = 0; i < events.size(); i++) {
+            PostgresEvent event = events.get(i);
+            List<Object> rowKey = rowKey(event, tableKeyColumns);
+
+            Integer previousPosition = rowKey != null && !(event instanceof InsertEvent)
+                    ? openRows.remove(rowKey)
+                    : null;
+
+            Integer lastTableEvent = lastTableEvents.put(eventTableName(event), i);
+
+            // Another row of the table was changed after the last event of this row
+            if (!foldAcrossRows && previousPosition != null && !lastTableEvent.equals(lastRowEvents.get(rowKey))) {
+                previousPosition = null;
+            }
+
+            if (previousPosition == null) {
+                positions[i] = event;
+                openRow(openRows, lastRowEvents, positions[i], i, i, tableKeyColumns);
+                continue;
+            }
+
+            PostgresEvent previous = positions[previousPosition];
+            PostgresEvent merged = merge(previous, event);
+
+            positions[previousPosition] = null;
+
+            if (merged == null) {
+                continue;
+            }
+
+            int position = previous instanceof InsertEvent ? previousPosition : i;
+            positions[position] = merged;
+            openRow(openRows, lastRowEvents, merged, position, i, tableKeyColumns);
+        }
+
+        List<PostgresEvent> compacted = new ArrayList<>();
+
+        for (PostgresEvent event : positions) {
+            if (event != null) {
+                compacted.add(event);
+            }
+        }
+
+        return compacted;
+    }
+
+    // Returns null if the events cancel each other out
+    private static PostgresEvent merge(PostgresEvent previous, PostgresEvent event) {
+        if (previous instanceof InsertEvent) {
+            InsertEvent insert = (InsertEvent) previous;
+
+            if (event instanceof DeleteEvent) {
+                return null;
+            }
+
+            UpdateEvent update = (UpdateEvent) event;
+            return new InsertEvent(insert.id, insert.namespace, insert.table, update.transactionId, mergeFields(insert.fields, update.fields));
+        }
+
+        UpdateEvent previousUpdate = (UpdateEvent) previous;
+
+        if (event instanceof DeleteEvent) {
+            DeleteEvent delete = (DeleteEvent) event;
+            // The row is identified by the key it had before the first update
+            return new DeleteEvent(delete.id, delete.namespace, delete.table, delete.transactionId, previousUpdate.identifierFields);
+        }
+
+        UpdateEvent update = (UpdateEvent) event;
+
+        return new UpdateEvent(
+                update.id,
+                update.namespace,
+                update.table,
+                update.transactionId,
+                previousUpdate.identifierFields,
+                mergeFields(previousUpdate.fields, update.fields)
+        );
+    }
+
+    private static List<Field<?>> mergeFields(List<Field<?>> fields, List<Field<?>> newFields) {
+        Map<String, Field<?>> merged = new LinkedHashMap<>();
+
+        fields.forEach(f -> merged.put(f.name, f));
+        newFields.forEach(f -> merged.put(f.name, f));
+
+        return new ArrayList<>(merged.values());
+    }
+
+    // Rows that have been deleted are not kept open, a new insert of the same key starts a new row
+    private static void openRow(
+            Map<List<Object>, Integer> openRows,
+            Map<List<Object>, Integer> lastRowEvents,
+            PostgresEvent event,
+            int position,
+            int eventIndex,
+            Map<String, List<String>> tableKeyColumns
+    ) {
+        if (event instanceof DeleteEvent) {
+            return;
+        }
+
+        List<Object> rowKey = rowKeyAfter(event, tableKeyColumns);
+
+        if (rowKey != null) {
+            openRows.put(rowKey, position);
+            lastRowEvents.put(rowKey, eventIndex);
+        }
+    }
+
+    // Key of the row before the event is applied
+    private static List<Object> rowKey(PostgresEvent event, Map<String, List<String>> tableKeyColumns) {
+        if (event instanceof InsertEvent) {
+            InsertEvent insert = (InsertEvent) event;
+            return createRowKey(insert.namespace, insert.table, insert.fields, tableKeyColumns);
+        } else if (event instanceof UpdateEvent) {
+            UpdateEvent update = (UpdateEvent) event;
+            return createRowKey(update.namespace, update.table, update.identifierFields, tableKeyColumns);
+        } else if (event instanceof DeleteEvent) {
+            DeleteEvent delete = (DeleteEvent) event;
+            return createRowKey(delete.namespace, delete.table, delete.identifierFields, tableKeyColumns);
+        }
+
+        return null;
+    }
+
+    // Key of the row after the event is applied, updates can change the identifying fields
+    private static List<Object> rowKeyAfter(PostgresEvent event, Map<String, List<String>> tableKeyColumns) {
+        if (event instanceof UpdateEvent) {
+            UpdateEvent update = (UpdateEvent) event;
+            List<Field<?>> keyFields = new ArrayList<>(update.identifierFields.size());
+
+            for (Field<?> identifierField : update.identifierFields) {
+                keyFields.add(findField(update.fields, identifierField.name).orElse(identifierField));
+            }
+
+            return createRowKey(update.namespace, update.table, keyFields, tableKeyColumns);
+        }
+
+        return rowKey(event, tableKeyColumns);
+    }
+
+    private static String eventTableName(PostgresEvent event) {
+        if (event instanceof InsertEvent) {
+            InsertEvent insert = (InsertEvent) event;
+            return tableFullName(insert.namespace, insert.table);
+        } else if (event instanceof UpdateEvent) {
+            UpdateEvent update = (UpdateEvent) event;
+            return tableFullName(update.namespace, update.table);
+        }
+
+        DeleteEvent delete = (DeleteEvent) event;
+        return tableFullName(delete.namespace, delete.table);
+    }
+
+    private static List<Object> createRowKey(String namespace, String table, List<Field<?>> fields, Map<String, List<String>> tableKeyColumns) {
+        String fullTableName = tableFullName(namespace, table);
+        List<String> keyColumns = tableKeyColumns.get(fullTableName);
+
+        if (keyColumns == null) {
+            return null;
+        }
+
+        List<Object> rowKey = new ArrayList<>(keyColumns.size() + 1);
+        rowKey.add(fullTableName);
+
+        for (String keyColumn : keyColumns) {
+            Optional<Field<?>> field = findField(fields, keyColumn);
+
+            if (field.isEmpty()) {
+                return null;
+            }
+
+            Object value = field.get().value;
+            rowKey.add(value instanceof byte[] ? ByteBuffer.wrap((byte[]) value) : value);
+        }
+
+        return rowKey;
+    }
+
+    // Key = "<schema>.<table_name>", value = names of the identifying fields
+    private static Map<String, List<String>> findKeyColumns(List<PostgresEvent> events) {
+        Map<String, List<String>> tableKeyColumns = new HashMap<>();
+
+        // Events without identifying fields do not identify a row, e.g. updates without an old tuple
+        for (PostgresEvent event : events) {
+            if (event instanceof UpdateEvent) {
+                UpdateEvent update = (UpdateEvent) event;
+
+                if (!update.identifierFields.isEmpty()) {
+                    tableKeyColumns.putIfAbsent(tableFullName(update.namespace, update.table), fieldNames(update.identifierFields));
+                }
+            } else if (event instanceof DeleteEvent) {
+                DeleteEvent delete = (DeleteEvent) event;
+
+                if (!delete.identifierFields.isEmpty()) {
+                    tableKeyColumns.putIfAbsent(tableFullName(delete.namespace, delete.table), fieldNames(delete.identifierFields));
+                }
+            }
+        }
+
+        return tableKeyColumns;
+    }
+
+    private static List<String> fieldNames(List<Field<?>> fields) {
+        List<String> names = new ArrayList<>(fields.size());
+        fields.forEach(f -> names.add(f.name));
+        return names;
+    }
+
+    private static Optional<Field<?>> findField(List<Field<?>> fields, String name) {
+        for (Field<?> field : fields) {
+            if (field.name.equals(name)) {
+                return Optional.of(field);
+            }
+        }
+
+        return Optional.empty();
+    }
+
+}
@@ -4,14 +4,11 @@ import com.github.alexgaard.mirror.postgres.event.Field;
 import com.github.alexgaard.mirror.core.exception.NotYetImplementedException;
 import com.github.alexgaard.mirror.postgres.event.FieldType;
 
+import java.nio.ByteBuffer;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.time.OffsetDateTime;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 import static com.github.alexgaard.mirror.postgres.utils.ParseUtils.toByteArray;
 import static java.lang.String.format;
@@ -19,7 +16,14 @@ import static java.lang.String.format;
 public class FieldMapper {
 
     public static Field<?> mapTupleDataToField(String fieldName, FieldType fieldType, TupleDataColumn tupleDataColumn) {
-        Object fieldData = tupleDataColumn.getData();
+        if (tupleDataColumn.type == TupleDataColumn.Type.BINARY) {
+            return mapBinaryTupleDataToField(fieldName, fieldType, tupleDataColumn);
+        }
+
+        // Timestamps are parsed directly from the tuple data
+        Object fieldData = fieldType == FieldType.TIMESTAMP || fieldType == FieldType.TIMESTAMP_TZ
+                ? tupleDataColumn.getAsciiData()
+                : tupleDataColumn.getData();
 
         if (fieldData == null) {
             return new Field<>(fieldName, fieldType, null);
@@ -53,9 +57,9 @@ public class FieldMapper {
             case TIME:
                 return Field.timeField(fieldName, LocalTime.parse((String) fieldData));
             case TIMESTAMP:
-                return Field.timestampField(fieldName, DateUtils.parseVariablePrecisionLocalDateTime((String) fieldData));
+                return Field.timestampField(fieldName, DateUtils.parseVariablePrecisionLocalDateTime((CharSequence) fieldData));
             case TIMESTAMP_TZ:
-                return Field.timestampTzField(fieldName, DateUtils.parseVariablePrecisionOffsetDateTime((String) fieldData));
+                return Field.timestampTzField(fieldName, DateUtils.parseVariablePrecisionOffsetDateTime((CharSequence) fieldData));
             case BYTES: {
                 String fieldDataStr = (String) fieldData;
 
@@ -66,159 +70,111 @@ public class FieldMapper {
                 return Field.bytesField(fieldName, toByteArray(((String) fieldData).substring(2)));
             }
             // ARRAY TYPES
-            case TEXT_ARRAY: {
-                return Field.textArrayField(fieldName, splitPostgresArray((String) fieldData));
-            }
-            case UUID_ARRAY: {
-                List<UUID> values = splitPostgresArray((String) fieldData)
-                        .stream()
-                        .map(UUID::fromString)
-                        .collect(Collectors.toList());
-
-                return Field.uuidArrayField(fieldName, values);
-            }
-            case FLOAT_ARRAY: {
-                List<Float> values = splitPostgresArray((String) fieldData)
-                        .stream()
-                        .map(Float::parseFloat)
-                        .collect(Collectors.toList());
-
-                return Field.floatArrayField(fieldName, values);
-            }
-            case DOUBLE_ARRAY: {
-                List<Double> values = splitPostgresArray((String) fieldData)
-                        .stream()
-                        .map(Double::parseDouble)
-                        .collect(Collectors.toList());
-
-                return Field.doubleArrayField(fieldName, values);
-            }
-            case BOOLEAN_ARRAY: {
-                List<Boolean> values = splitPostgresArray((String) fieldData)
-                        .stream()
-                        .map("t"::equals)
-                        .collect(Collectors.toList());
-
-                return Field.booleanArrayField(fieldName, values);
-            }
-            case INT16_ARRAY: {
-                List<Short> values = splitPostgresArray((String) fieldData)
-                        .stream()
-                        .map(Short::parseShort)
-                        .collect(Collectors.toList());
-
-                return Field.int16ArrayField(fieldName, values);
-            }
-            case INT32_ARRAY: {
-                List<Integer> values = splitPostgresArray((String) fieldData)
-                        .stream()
-                        .map(Integer::parseInt)
-                        .collect(Collectors.toList());
-
-                return Field.int32ArrayField(fieldName, values);
-            }
-            case INT64_ARRAY: {
-                List<Long> values = splitPostgresArray((String) fieldData)
-                        .stream()
-                        .map(Long::parseLong)
-                        .collect(Collectors.toList());
-
-                return Field.int64ArrayField(fieldName, values);
-            }
-            case CHAR_ARRAY: {
-                List<Character> values = splitPostgresArray((String) fieldData)
-                        .stream()
-                        .map(s -> s.charAt(0))
-                        .collect(Collectors.toList());
-
-                return Field.charArrayField(fieldName, values);
-            }
-            case DATE_ARRAY: {
-                List<LocalDate> values = splitPostgresArray((String) fieldData)
-                        .stream()
-                        .map(LocalDate::parse)
-                        .collect(Collectors.toList());
-
-                return Field.dateArrayField(fieldName, values);
-            }
-            case TIME_ARRAY: {
-                List<LocalTime> values = splitPostgresArray((String) fieldData)
-                        .stream()
-                        .map(LocalTime::parse)
-                        .collect(Collectors.toList());
-
-                return Field.timeArrayField(fieldName, values);
-            }
-            case TIMESTAMP_ARRAY: {
-                List<LocalDateTime> values = splitPostgresArray((String) fieldData)
-                        .stream()
-                        .map(DateUtils::parseVariablePrecisionLocalDateTime)
-                        .collect(Collectors.toList());
-
-                return Field.timestampArrayField(fieldName, values);
-            }
-            case TIMESTAMP_TZ_ARRAY: {
-                List<OffsetDateTime> values = splitPostgresArray((String) fieldData)
-                        .stream()
-                        .map(DateUtils::parseVariablePrecisionOffsetDateTime)
-                        .collect(Collectors.toList());
-
-                return Field.timestampTzArrayField(fieldName, values);
-            }
+            case TEXT_ARRAY:
+                return Field.textArrayField(fieldName, PgArrayDecoder.decodeTextArray((String) fieldData));
+            case UUID_ARRAY:
+                return Field.uuidArrayField(fieldName, PgArrayDecoder.decodeArray((String) fieldData, s -> UUID.fromString(s.toString())));
+            case FLOAT_ARRAY:
+                return Field.floatArrayField(fieldName, PgArrayDecoder.decodeArray((String) fieldData, s -> Float.parseFloat(s.toString())));
+            case DOUBLE_ARRAY:
+                return Field.doubleArrayField(fieldName, PgArrayDecoder.decodeDoubleList((String) fieldData));
+            case BOOLEAN_ARRAY:
+                return Field.booleanArrayField(fieldName, PgArrayDecoder.decodeArray((String) fieldData, s -> s.length() == 1 && s.charAt(0) == 't'));
+            case INT16_ARRAY:
+                return Field.int16ArrayField(fieldName, PgArrayDecoder.decodeArray((String) fieldData, s -> Short.parseShort(s.toString())));
+            case INT32_ARRAY:
+                return Field.int32ArrayField(fieldName, PgArrayDecoder.decodeIntList((String) fieldData));
+            case INT64_ARRAY:
+                return Field.int64ArrayField(fieldName, PgArrayDecoder.decodeLongList((String) fieldData));
+            case CHAR_ARRAY:
+                return Field.charArrayField(fieldName, PgArrayDecoder.decodeArray((String) fieldData, s -> s.charAt(0)));
+            case DATE_ARRAY:
+                return Field.dateArrayField(fieldName, PgArrayDecoder.decodeArray((String) fieldData, LocalDate::parse));
+            case TIME_ARRAY:
+                return Field.timeArrayField(fieldName, PgArrayDecoder.decodeArray((String) fieldData, LocalTime::parse));
+            case TIMESTAMP_ARRAY:
+                return Field.timestampArrayField(fieldName, PgArrayDecoder.decodeArray((String) fieldData, DateUtils::parseVariablePrecisionLocalDateTime));
+            case TIMESTAMP_TZ_ARRAY:
+                return Field.timestampTzArrayField(fieldName, PgArrayDecoder.decodeArray((String) fieldData, DateUtils::parseVariablePrecisionOffsetDateTime));
             default:
                 throw new NotYetImplementedException(format("Parsing for type %s is not yet implemented", fieldType));
         }
     }
 
+    public static Field<?> mapBinaryTupleDataToField(String fieldName, FieldType fieldType, TupleDataColumn tupleDataColumn) {
+        ByteBuffer data = tupleDataColumn.getBuffer();
 
-    public static List<String> splitPostgresArray(String pgArray) {
-        if (!pgArray.startsWith("{") || !pgArray.endsWith("}")) {
-            throw new IllegalArgumentException(pgArray + " is not a valid postgres array");
+        if (data == null) {
+            return new Field<>(fieldName, fieldType, null);
         }
 
-        List<String> valueList = new ArrayList<>();
-        int end = pgArray.length() - 1;
-        int startOfValIdx =  1;
-        boolean isInsideStr = false;
-        boolean isStringEscaped = false;
-
-        for (int i = startOfValIdx; i < end; i++) {
-            char c = pgArray.charAt(i);
-
-            if (c == '"' && (pgArray.charAt(i - 1) != '\\') ) {
-                isInsideStr = !isInsideStr;
-
-                if (isInsideStr) {
-                    isStringEscaped = true;
-                }
-            }
-
-            if (c == ',' && !isInsideStr) {
-                String value = isStringEscaped
-                        ? pgArray.substring(startOfValIdx + 1, i - 1)
-                        : pgArray.substring(startOfValIdx, i);
-
-                valueList.add(replaceEscapedQuote(value));
-
-                isStringEscaped = false;
-                startOfValIdx = i + 1;
-            }
-
-            if (i + 1 >= end) {
-                String value = isStringEscaped
-                        ? pgArray.substring(startOfValIdx + 1, end - 1)
-                        : pgArray.substring(startOfValIdx, end);
-
-                valueList.add(replaceEscapedQuote(value));
-            }
+        switch (fieldType) {
+            case JSONB:
+                return Field.jsonbField(fieldName, BinaryDecoder.decodeJsonb(data));
+            case JSON:
+                return Field.jsonField(fieldName, BinaryDecoder.decodeText(data));
+            case TEXT:
+                return Field.textField(fieldName, BinaryDecoder.decodeText(data));
+            case UUID:
+                return Field.uuidField(fieldName, BinaryDecoder.decodeUuid(data));
+            case FLOAT:
+                return Field.floatField(fieldName, BinaryDecoder.decodeFloat(data));
+            case DOUBLE:
+                return Field.doubleField(fieldName, BinaryDecoder.decodeDouble(data));
+            case BOOLEAN:
+                return Field.booleanField(fieldName, BinaryDecoder.decodeBoolean(data));
+            case INT16:
+                return Field.int16Field(fieldName, BinaryDecoder.decodeInt16(data));
+            case INT32:
+                return Field.int32Field(fieldName, BinaryDecoder.decodeInt32(data));
+            case INT64:
+                return Field.int64Field(fieldName, BinaryDecoder.decodeInt64(data));
+            case CHAR:
+                return Field.charField(fieldName, BinaryDecoder.decodeChar(data));
+            case DATE:
+                return Field.dateField(fieldName, BinaryDecoder.decodeDate(data));
+            case TIME:
+                return Field.timeField(fieldName, BinaryDecoder.decodeTime(data));
+            case TIMESTAMP:
+                return Field.timestampField(fieldName, BinaryDecoder.decodeTimestamp(data));
+            case TIMESTAMP_TZ:
+                return Field.timestampTzField(fieldName, BinaryDecoder.decodeTimestampTz(data));
+            case BYTES:
+                return Field.bytesField(fieldName, BinaryDecoder.decodeBytes(data));
+            // ARRAY TYPES
+            case TEXT_ARRAY:
+                return Field.textArrayField(fieldName, BinaryDecoder.decodeArray(data, BinaryDecoder::decodeText));
+            case UUID_ARRAY:
+                return Field.uuidArrayField(fieldName, BinaryDecoder.decodeArray(data, BinaryDecoder::decodeUuid));
+            case FLOAT_ARRAY:
+                return Field.floatArrayField(fieldName, BinaryDecoder.decodeArray(data, BinaryDecoder::decodeFloat));
+            case DOUBLE_ARRAY:
+                return Field.doubleArrayField(fieldName, BinaryDecoder.decodeArray(data, BinaryDecoder::decodeDouble));
+            case BOOLEAN_ARRAY:
+                return Field.booleanArrayField(fieldName, BinaryDecoder.decodeArray(data, BinaryDecoder::decodeBoolean));
+            case INT16_ARRAY:
+                return Field.int16ArrayField(fieldName, BinaryDecoder.decodeArray(data, BinaryDecoder::decodeInt16));
+            case INT32_ARRAY:
+                return Field.int32ArrayField(fieldName, BinaryDecoder.decodeArray(data, BinaryDecoder::decodeInt32));
+            case INT64_ARRAY:
+                return Field.int64ArrayField(fieldName, BinaryDecoder.decodeArray(data, BinaryDecoder::decodeInt64));
+            case CHAR_ARRAY:
+                return Field.charArrayField(fieldName, BinaryDecoder.decodeArray(data, BinaryDecoder::decodeChar));
+            case DATE_ARRAY:
+                return Field.dateArrayField(fieldName, BinaryDecoder.decodeArray(data, BinaryDecoder::decodeDate));
+            case TIME_ARRAY:
+                return Field.timeArrayField(fieldName, BinaryDecoder.decodeArray(data, BinaryDecoder::decodeTime));
+            case TIMESTAMP_ARRAY:
+                return Field.timestampArrayField(fieldName, BinaryDecoder.decodeArray(data, BinaryDecoder::decodeTimestamp));
+            case TIMESTAMP_TZ_ARRAY:
+                return Field.timestampTzArrayField(fieldName, BinaryDecoder.decodeArray(data, BinaryDecoder::decodeTimestampTz));
+            default:
+                throw new NotYetImplementedException(format("Binary parsing for type %s is not yet implemented", fieldType));
         }
-
-        return valueList;
     }
 
-    // Replaces \" with "
-    private static String replaceEscapedQuote(String str) {
-        return str.replaceAll("\\\\\"", "\"");
+    public static List<String> splitPostgresArray(String pgArray) {
+        return PgArrayDecoder.decodeTextArray(pgArray);
     }
 
 }
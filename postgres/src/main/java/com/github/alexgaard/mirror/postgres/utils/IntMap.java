@@ -0,0 +1,159 @@
+package com.github.alexgaard.mirror.postgres.utils;
+
+import java.util.Arrays;
+
+/*
+    Open addressing hash map with primitive int keys.
+    Avoids boxing the key on every lookup, which matters for lookups done once per row.
+    Null values are not supported.
+ */
+public class IntMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+
+    private Object[] values;
+
+    private int size;
+
+    public IntMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        keys = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int mask = keys.length - 1;
+        int idx = hash(key) & mask;
+
+        while (values[idx] != null) {
+            if (keys[idx] == key) {
+                return (V) values[idx];
+            }
+
+            idx = (idx + 1) & mask;
+        }
+
+        return null;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("IntMap does not support null values");
+        }
+
+        int mask = keys.length - 1;
+        int idx = hash(key) & mask;
+
+        while (values[idx] != null) {
+            if (keys[idx] == key) {
+                V previous = (V) values[idx];
+                values[idx] = value;
+                return previous;
+            }
+
+            idx = (idx + 1) & mask;
+        }
+
+        keys[idx] = key;
+        values[idx] = value;
+        size++;
+
+        if (size > keys.length * LOAD_FACTOR) {
+            resize(keys.length << 1);
+        }
+
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int mask = keys.length - 1;
+        int idx = hash(key) & mask;
+
+        while (values[idx] != null) {
+            if (keys[idx] == key) {
+                V previous = (V) values[idx];
+                values[idx] = null;
+                size--;
+                shiftBackFrom(idx);
+                return previous;
+            }
+
+            idx = (idx + 1) & mask;
+        }
+
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    // Moves entries following a removed slot back so that lookups do not stop at the gap
+    private void shiftBackFrom(int gapIdx) {
+        int mask = keys.length - 1;
+        int idx = (gapIdx + 1) & mask;
+
+        while (values[idx] != null) {
+            int home = hash(keys[idx]) & mask;
+
+            boolean canMoveToGap = gapIdx <= idx
+                    ? (home <= gapIdx || home > idx)
+                    : (home <= gapIdx && home > idx);
+
+            if (canMoveToGap) {
+                keys[gapIdx] = keys[idx];
+                values[gapIdx] = values[idx];
+                values[idx] = null;
+                gapIdx = idx;
+            }
+
+            idx = (idx + 1) & mask;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resize(int newCapacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        keys = new int[newCapacity];
+        values = new Object[newCapacity];
+        size = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                put(oldKeys[i], (V) oldValues[i]);
+            }
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+}
@@ -1,9 +1,14 @@
 package com.github.alexgaard.mirror.postgres.utils;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 public class ParseUtils {
 
+    public static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
     public static short getShort(int fromIdx, byte[] bytes) {
         return (short) (bytes[fromIdx]<<8 | bytes[fromIdx + 1] & 0xFF);
     }
@@ -34,6 +39,32 @@ public class ParseUtils {
         return Arrays.copyOfRange(bytes, fromIdx, fromIdx + length);
     }
 
+    public static ByteBuffer sliceOf(ByteBuffer buffer, int fromIdx, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(fromIdx);
+        slice.limit(fromIdx + length);
+        return slice.slice();
+    }
+
+    // Decodes UTF-8 straight from the backing array when possible to avoid an intermediate copy
+    public static String getString(int fromIdx, int length, ByteBuffer buffer) {
+        if (length <= 0) {
+            return "";
+        }
+
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + fromIdx, length, UTF_8);
+        }
+
+        return UTF_8.decode(sliceOf(buffer, fromIdx, length)).toString();
+    }
+
+    public static byte[] toByteArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
     public static byte[] toByteArray(String hexStr) {
         int len = hexStr.length();
         byte[] data = new byte[len / 2];
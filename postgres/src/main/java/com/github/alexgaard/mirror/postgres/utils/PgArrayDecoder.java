@@ -0,0 +1,328 @@
+package com.github.alexgaard.mirror.postgres.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Function;
+
+/*
+    Single pass decoder for the text format of postgres arrays, such as {1,2,NULL} or {{"a,b","c\"d"},{e,f}}.
+    Quoted elements and backslash escapes are handled, unquoted NULL is decoded as null and
+    multidimensional arrays are flattened.
+    Elements without escapes are read directly from the input without creating substrings.
+ */
+public class PgArrayDecoder {
+
+    private interface ElementVisitor {
+        void element(CharSequence src, int start, int end);
+
+        void nullElement();
+    }
+
+    public static List<String> decodeTextArray(CharSequence pgArray) {
+        return decodeArray(pgArray, CharSequence::toString);
+    }
+
+    public static <T> List<T> decodeArray(CharSequence pgArray, Function<CharSequence, T> elementDecoder) {
+        List<T> elements = new ArrayList<>();
+
+        visitElements(pgArray, new ElementVisitor() {
+            @Override
+            public void element(CharSequence src, int start, int end) {
+                elements.add(elementDecoder.apply(src.subSequence(start, end)));
+            }
+
+            @Override
+            public void nullElement() {
+                elements.add(null);
+            }
+        });
+
+        return elements;
+    }
+
+    // Returns null if the array contains NULL elements, since they cannot be represented as primitives
+    public static int[] decodeIntArray(CharSequence pgArray) {
+        IntCollector collector = new IntCollector();
+        visitElements(pgArray, collector);
+        return collector.nulls.isEmpty() ? Arrays.copyOf(collector.values, collector.size) : null;
+    }
+
+    // Returns null if the array contains NULL elements, since they cannot be represented as primitives
+    public static long[] decodeLongArray(CharSequence pgArray) {
+        LongCollector collector = new LongCollector();
+        visitElements(pgArray, collector);
+        return collector.nulls.isEmpty() ? Arrays.copyOf(collector.values, collector.size) : null;
+    }
+
+    // Returns null if the array contains NULL elements, since they cannot be represented as primitives
+    public static double[] decodeDoubleArray(CharSequence pgArray) {
+        DoubleCollector collector = new DoubleCollector();
+        visitElements(pgArray, collector);
+        return collector.nulls.isEmpty() ? Arrays.copyOf(collector.values, collector.size) : null;
+    }
+
+    /*
+        The list methods decode the array in a single pass, and use a view of the primitive array if there are no NULL elements.
+        Arrays with NULL elements are boxed into a list with null at the positions of the NULL elements.
+     */
+    public static List<Integer> decodeIntList(CharSequence pgArray) {
+        IntCollector collector = new IntCollector();
+        visitElements(pgArray, collector);
+
+        int[] values = Arrays.copyOf(collector.values, collector.size);
+
+        return collector.nulls.isEmpty() ? ArrayUtils.asList(values) : withNulls(ArrayUtils.asList(values), collector.nulls);
+    }
+
+    public static List<Long> decodeLongList(CharSequence pgArray) {
+        LongCollector collector = new LongCollector();
+        visitElements(pgArray, collector);
+
+        long[] values = Arrays.copyOf(collector.values, collector.size);
+
+        return collector.nulls.isEmpty() ? ArrayUtils.asList(values) : withNulls(ArrayUtils.asList(values), collector.nulls);
+    }
+
+    public static List<Double> decodeDoubleList(CharSequence pgArray) {
+        DoubleCollector collector = new DoubleCollector();
+        visitElements(pgArray, collector);
+
+        double[] values = Arrays.copyOf(collector.values, collector.size);
+
+        return collector.nulls.isEmpty() ? ArrayUtils.asList(values) : withNulls(ArrayUtils.asList(values), collector.nulls);
+    }
+
+    private static <T> List<T> withNulls(List<T> values, BitSet nulls) {
+        List<T> elements = new ArrayList<>(values.size());
+
+        for (int i = 0; i < values.size(); i++) {
+            elements.add(nulls.get(i) ? null : values.get(i));
+        }
+
+        return elements;
+    }
+
+    private static void visitElements(CharSequence pgArray, ElementVisitor visitor) {
+        int length = pgArray.length();
+        int idx = 0;
+
+        // Arrays with lower bounds other than 1 are prefixed with the dimensions, ex: [0:1]={1,2}
+        if (length > 0 && pgArray.charAt(0) == '[') {
+            while (idx < length && pgArray.charAt(idx) != '=') {
+                idx++;
+            }
+
+            idx++;
+        }
+
+        if (idx >= length || pgArray.charAt(idx) != '{' || pgArray.charAt(length - 1) != '}') {
+            throw invalidArray(pgArray);
+        }
+
+        int depth = 0;
+
+        while (idx < length) {
+            char c = pgArray.charAt(idx);
+
+            if (c == '{') {
+                depth++;
+                idx++;
+            } else if (c == '}') {
+                depth--;
+                idx++;
+
+                if (depth == 0 && idx != length) {
+                    throw invalidArray(pgArray);
+                }
+            } else if (c == ',' || Character.isWhitespace(c)) {
+                idx++;
+            } else if (c == '"') {
+                idx = visitQuotedElement(pgArray, idx + 1, visitor);
+            } else {
+                idx = visitUnquotedElement(pgArray, idx, visitor);
+            }
+        }
+
+        if (depth != 0) {
+            throw invalidArray(pgArray);
+        }
+    }
+
+    // Returns the index after the closing quote
+    private static int visitQuotedElement(CharSequence pgArray, int start, ElementVisitor visitor) {
+        StringBuilder unescaped = null;
+        int idx = start;
+
+        while (idx < pgArray.length()) {
+            char c = pgArray.charAt(idx);
+
+            if (c == '"') {
+                if (unescaped != null) {
+                    visitor.element(unescaped, 0, unescaped.length());
+                } else {
+                    visitor.element(pgArray, start, idx);
+                }
+
+                return idx + 1;
+            }
+
+            if (c == '\\') {
+                if (unescaped == null) {
+                    unescaped = new StringBuilder().append(pgArray, start, idx);
+                }
+
+                if (++idx >= pgArray.length()) {
+                    throw invalidArray(pgArray);
+                }
+
+                c = pgArray.charAt(idx);
+            }
+
+            if (unescaped != null) {
+                unescaped.append(c);
+            }
+
+            idx++;
+        }
+
+        throw invalidArray(pgArray);
+    }
+
+    // Returns the index of the delimiter ending the element
+    private static int visitUnquotedElement(CharSequence pgArray, int start, ElementVisitor visitor) {
+        StringBuilder unescaped = null;
+        int idx = start;
+
+        while (idx < pgArray.length()) {
+            char c = pgArray.charAt(idx);
+
+            if (c == ',' || c == '}') {
+                break;
+            }
+
+            if (c == '\\') {
+                if (unescaped == null) {
+                    unescaped = new StringBuilder().append(pgArray, start, idx);
+                }
+
+                if (++idx >= pgArray.length()) {
+                    throw invalidArray(pgArray);
+                }
+
+                c = pgArray.charAt(idx);
+            }
+
+            if (unescaped != null) {
+                unescaped.append(c);
+            }
+
+            idx++;
+        }
+
+        if (unescaped != null) {
+            visitor.element(unescaped, 0, unescaped.length());
+            return idx;
+        }
+
+        int end = idx;
+
+        // Whitespace around unquoted elements is ignored
+        while (end > start && Character.isWhitespace(pgArray.charAt(end - 1))) {
+            end--;
+        }
+
+        if (isNull(pgArray, start, end)) {
+            visitor.nullElement();
+        } else {
+            visitor.element(pgArray, start, end);
+        }
+
+        return idx;
+    }
+
+    private static boolean isNull(CharSequence str, int start, int end) {
+        return end - start == 4
+                && Character.toUpperCase(str.charAt(start)) == 'N'
+                && Character.toUpperCase(str.charAt(start + 1)) == 'U'
+                && Character.toUpperCase(str.charAt(start + 2)) == 'L'
+                && Character.toUpperCase(str.charAt(start + 3)) == 'L';
+    }
+
+    // NULL elements take a slot with the default value, and their positions are tracked separately
+    private abstract static class PrimitiveCollector implements ElementVisitor {
+        int size = 0;
+
+        final BitSet nulls = new BitSet();
+
+        @Override
+        public void element(CharSequence src, int start, int end) {
+            ensureCapacity();
+            set(size++, src, start, end);
+        }
+
+        @Override
+        public void nullElement() {
+            ensureCapacity();
+            nulls.set(size++);
+        }
+
+        abstract void ensureCapacity();
+
+        abstract void set(int index, CharSequence src, int start, int end);
+    }
+
+    private static class IntCollector extends PrimitiveCollector {
+        int[] values = new int[8];
+
+        @Override
+        void ensureCapacity() {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+        }
+
+        @Override
+        void set(int index, CharSequence src, int start, int end) {
+            values[index] = Integer.parseInt(src, start, end, 10);
+        }
+    }
+
+    private static class LongCollector extends PrimitiveCollector {
+        long[] values = new long[8];
+
+        @Override
+        void ensureCapacity() {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+        }
+
+        @Override
+        void set(int index, CharSequence src, int start, int end) {
+            values[index] = Long.parseLong(src, start, end, 10);
+        }
+    }
+
+    private static class DoubleCollector extends PrimitiveCollector {
+        double[] values = new double[8];
+
+        @Override
+        void ensureCapacity() {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+        }
+
+        @Override
+        void set(int index, CharSequence src, int start, int end) {
+            values[index] = Double.parseDouble(src.subSequence(start, end).toString());
+        }
+    }
+
+    private static IllegalArgumentException invalidArray(CharSequence pgArray) {
+        return new IllegalArgumentException(pgArray + " is not a valid postgres array");
+    }
+
+}
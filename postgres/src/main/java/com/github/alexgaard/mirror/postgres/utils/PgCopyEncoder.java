@@ -0,0 +1,155 @@
+package com.github.alexgaard.mirror.postgres.utils;
+
+import com.github.alexgaard.mirror.postgres.event.Field;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/*
+    Encodes rows in the text format used by COPY ... FROM STDIN.
+    Columns are separated by tabs, rows are terminated by a newline and null is written as \N.
+    Backslashes and control characters in values are escaped.
+ */
+public class PgCopyEncoder {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    public static void appendRow(StringBuilder out, List<Field<?>> fields) {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                out.append('\t');
+            }
+
+            appendValue(out, fields.get(i));
+        }
+
+        out.append('\n');
+    }
+
+    private static void appendValue(StringBuilder out, Field<?> field) {
+        if (field.value == null) {
+            out.append("\\N");
+            return;
+        }
+
+        if (field.type.isArray()) {
+            appendArray(out, (List<?>) field.value);
+            return;
+        }
+
+        switch (field.type) {
+            case BYTES:
+                // The hex format of bytea starts with \x, which must be escaped
+                out.append("\\\\x");
+                appendHex(out, (byte[]) field.value);
+                break;
+            case BOOLEAN:
+                out.append((Boolean) field.value ? 't' : 'f');
+                break;
+            case INT16:
+            case INT32:
+            case INT64:
+            case FLOAT:
+            case DOUBLE:
+            case UUID:
+            case TIME:
+                out.append(field.value);
+                break;
+            case DATE:
+            case TIMESTAMP:
+            case TIMESTAMP_TZ:
+                out.append(toText(field.value));
+                break;
+            default:
+                appendEscaped(out, field.value.toString());
+        }
+    }
+
+    // Array elements are always quoted, which makes it unnecessary to check for delimiters and NULL strings
+    private static void appendArray(StringBuilder out, List<?> values) {
+        out.append('{');
+
+        for (int i = 0; i < values.size(); i++) {
+            Object value = values.get(i);
+
+            if (i > 0) {
+                out.append(',');
+            }
+
+            if (value == null) {
+                out.append("NULL");
+                continue;
+            }
+
+            out.append('"');
+
+            String str = toText(value);
+
+            for (int j = 0; j < str.length(); j++) {
+                char c = str.charAt(j);
+
+                if (c == '"' || c == '\\') {
+                    // Escaped once for the array syntax, and the backslash is escaped again for COPY
+                    out.append("\\\\");
+                }
+
+                appendEscaped(out, c);
+            }
+
+            out.append('"');
+        }
+
+        out.append('}');
+    }
+
+    // Infinite dates and timestamps are decoded as the MAX and MIN sentinels of java.time, see BinaryDecoder
+    private static String toText(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value ? "t" : "f";
+        }
+
+        Object localValue = value instanceof OffsetDateTime ? ((OffsetDateTime) value).toLocalDateTime() : value;
+
+        if (LocalDate.MAX.equals(localValue) || LocalDateTime.MAX.equals(localValue)) {
+            return "infinity";
+        } else if (LocalDate.MIN.equals(localValue) || LocalDateTime.MIN.equals(localValue)) {
+            return "-infinity";
+        }
+
+        return value.toString();
+    }
+
+    private static void appendEscaped(StringBuilder out, String str) {
+        for (int i = 0; i < str.length(); i++) {
+            appendEscaped(out, str.charAt(i));
+        }
+    }
+
+    private static void appendEscaped(StringBuilder out, char c) {
+        switch (c) {
+            case '\\':
+                out.append("\\\\");
+                break;
+            case '\n':
+                out.append("\\n");
+                break;
+            case '\r':
+                out.append("\\r");
+                break;
+            case '\t':
+                out.append("\\t");
+                break;
+            default:
+                out.append(c);
+        }
+    }
+
+    private static void appendHex(StringBuilder out, byte[] bytes) {
+        for (byte b : bytes) {
+            out.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+        }
+    }
+
+}
@@ -1,85 +1,107 @@
 package com.github.alexgaard.mirror.postgres.utils;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
 import static com.github.alexgaard.mirror.postgres.utils.ParseUtils.*;
 
+/*
+    Parses pgoutput messages directly from a heap or direct buffer.
+    Column values are returned as slices of the message and are only decoded when used.
+ */
 public class PgoutputParser {
 
     private int pointer = 0;
 
-    private final byte[] data;
+    // Big endian view of the message starting at index 0
+    private final ByteBuffer data;
 
-    public PgoutputParser(byte[] data, int initialPointer) {
-        this.data = data;
+    public PgoutputParser(ByteBuffer data, int initialPointer) {
+        this.data = data.slice();
         pointer = initialPointer;
     }
 
+    public PgoutputParser(ByteBuffer data) {
+        this(data, 0);
+    }
+
+    public PgoutputParser(byte[] data, int initialPointer) {
+        this(ByteBuffer.wrap(data), initialPointer);
+    }
+
     public PgoutputParser(byte[] data) {
-        this.data = data;
+        this(ByteBuffer.wrap(data), 0);
     }
 
     public byte nextByte() {
-        byte b = data[pointer];
+        byte b = data.get(pointer);
         pointer += 1;
         return b;
     }
 
     public short nextShort() {
-        short s = getShort(pointer, data);
+        short s = data.getShort(pointer);
         pointer += 2;
         return s;
     }
 
     public int nextInt() {
-        int i = getInt(pointer, data);
+        int i = data.getInt(pointer);
         pointer += 4;
         return i;
     }
 
     public long nextLong() {
-        long l = getLong(pointer, data);
+        long l = data.getLong(pointer);
         pointer += 8;
         return l;
     }
 
     public char nextChar() {
-        char c = getChar(pointer, data);
+        char c = (char) data.get(pointer);
         pointer += 1;
         return c;
     }
 
     public byte[] nextBytes(int length) {
+        ByteBuffer slice = nextSlice(length);
+        byte[] bytes = new byte[slice.remaining()];
+        slice.get(bytes);
+        return bytes;
+    }
+
+    // Returns a view of the next bytes without copying them
+    public ByteBuffer nextSlice(int length) {
         if (length <= 0) {
-            return new byte[0];
+            return EMPTY_BUFFER;
         }
 
-        if (length + pointer > data.length) {
+        if (length + pointer > data.limit()) {
             throw new IllegalArgumentException("Length for next bytes is out of bounds");
         }
 
-        byte[] bytes = getBytes(pointer, length, data);
+        ByteBuffer slice = sliceOf(data, pointer, length);
         pointer += length;
-        return bytes;
+        return slice;
     }
 
     public String nextString() {
         int stringEnd = pointer;
 
-        for (int i = pointer; i < data.length; i++) {
-            if (data[i] == 0) {
+        for (int i = pointer; i < data.limit(); i++) {
+            if (data.get(i) == 0) {
                 stringEnd = i;
                 break;
             }
         }
 
-        byte[] bytes = nextBytes(stringEnd - pointer);
+        String str = getString(pointer, stringEnd - pointer, data);
 
-        // Skip past null byte
-        pointer++;
+        // Skip past string and null byte
+        pointer = stringEnd + 1;
 
-        return new String(bytes);
+        return str;
     }
 
     /*
@@ -131,10 +153,10 @@ public class PgoutputParser {
 
             int columnLength = nextInt();
 
-            byte[] data = null;
+            ByteBuffer data = null;
 
             if (columnLength > 0) {
-                data = nextBytes(columnLength);
+                data = nextSlice(columnLength);
             }
 
             columns.add(new TupleDataColumn(type, data));
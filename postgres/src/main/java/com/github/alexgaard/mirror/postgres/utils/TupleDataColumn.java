@@ -2,8 +2,13 @@ package com.github.alexgaard.mirror.postgres.utils;
 
 import com.github.alexgaard.mirror.core.exception.ParseException;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
+import static com.github.alexgaard.mirror.postgres.utils.ParseUtils.getString;
+import static com.github.alexgaard.mirror.postgres.utils.ParseUtils.toByteArray;
+import static java.lang.String.format;
+
 
 public class TupleDataColumn {
 
@@ -31,13 +36,23 @@ public class TupleDataColumn {
 
     public final Type type;
 
-    private final byte[] data;
+    // Slice of the message this column was parsed from, values are decoded on access
+    private final ByteBuffer data;
 
-    public TupleDataColumn(Type type, byte[] data) {
+    public TupleDataColumn(Type type, ByteBuffer data) {
         this.type = type;
         this.data = data;
     }
 
+    // Returns a view of the raw column value, or null if the column has no value
+    public ByteBuffer getBuffer() {
+        return data != null ? data.duplicate() : null;
+    }
+
+    public int length() {
+        return data != null ? data.remaining() : 0;
+    }
+
     public Object getData() {
         if (data == null) {
             return null;
@@ -49,19 +64,32 @@ public class TupleDataColumn {
             case NULL:
                 return null;
             case TEXT:
-                return new String(data);
+                return getString(data.position(), data.remaining(), data);
             case BINARY:
-                return data;
+                return toByteArray(data);
             default:
                 throw new ParseException("Unknown tuple data column type " + type);
         }
     }
 
+    // Same as getData() for text values, but returns a view of the bytes instead of decoding them
+    public CharSequence getAsciiData() {
+        if (data == null || type == Type.NULL) {
+            return null;
+        }
+
+        if (type != Type.TEXT) {
+            throw new IllegalStateException(format("Unable to read %s value as text", type));
+        }
+
+        return new AsciiCharSequence(data);
+    }
+
     @Override
     public String toString() {
         return "TupleDataColumn{" +
                 "type=" + type +
-                ", data=" + (type.equals(Type.TEXT) && data != null ? new String(data) : Arrays.toString(data)) +
+                ", data=" + (data == null ? null : type.equals(Type.TEXT) ? getData() : Arrays.toString(toByteArray(data))) +
                 '}';
     }
 }
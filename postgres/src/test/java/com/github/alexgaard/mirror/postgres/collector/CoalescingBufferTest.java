@@ -0,0 +1,56 @@
+package com.github.alexgaard.mirror.postgres.collector;
+
+import com.github.alexgaard.mirror.postgres.event.Field;
+import com.github.alexgaard.mirror.postgres.event.PostgresTransactionEvent;
+import com.github.alexgaard.mirror.postgres.event.UpdateEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CoalescingBufferTest {
+
+    @Test
+    public void shouldFoldInterleavedRowsOfTheSameTableIntoTheirLatestImage() {
+        CoalescingBuffer buffer = new CoalescingBuffer(Duration.ofSeconds(1));
+
+        for (int i = 1; i <= 50; i++) {
+            buffer.add(transaction(update(1, i)), i * 2L);
+            buffer.add(transaction(update(2, i * 10)), i * 2L + 1);
+        }
+
+        PostgresTransactionEvent coalesced = buffer.drain();
+
+        assertEquals(2, coalesced.events.size());
+        assertEquals(List.of(Field.int32Field("counter", 50)), ((UpdateEvent) coalesced.events.get(0)).fields);
+        assertEquals(List.of(Field.int32Field("counter", 500)), ((UpdateEvent) coalesced.events.get(1)).fields);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void shouldCompactHotRowsWhileBuffering() {
+        CoalescingBuffer buffer = new CoalescingBuffer(Duration.ofSeconds(1));
+
+        for (int i = 1; i <= 15_000; i++) {
+            buffer.add(transaction(update(i % 2, i)), i);
+        }
+
+        PostgresTransactionEvent coalesced = buffer.drain();
+
+        assertEquals(2, coalesced.events.size());
+        assertEquals(15_000, buffer.getEndLsn());
+    }
+
+    private static PostgresTransactionEvent transaction(UpdateEvent update) {
+        return PostgresTransactionEvent.of("test-source", List.of(update), OffsetDateTime.now(), 1);
+    }
+
+    private static UpdateEvent update(int id, int counter) {
+        return new UpdateEvent(UUID.randomUUID(), "public", "counters", 1, List.of(Field.int32Field("id", id)), List.of(Field.int32Field("counter", counter)));
+    }
+
+}
@@ -5,8 +5,10 @@ import com.github.alexgaard.mirror.core.Result;
 import com.github.alexgaard.mirror.postgres.collector.config.CollectorConfig;
 import com.github.alexgaard.mirror.postgres.collector.config.CollectorConfigBuilder;
 import com.github.alexgaard.mirror.postgres.collector.config.CollectorTableConfig;
+import com.github.alexgaard.mirror.postgres.collector.config.ReplicationConnectionFactory;
 import com.github.alexgaard.mirror.postgres.event.DeleteEvent;
 import com.github.alexgaard.mirror.postgres.event.InsertEvent;
+import com.github.alexgaard.mirror.postgres.event.PostgresEvent;
 import com.github.alexgaard.mirror.postgres.event.PostgresTransactionEvent;
 import com.github.alexgaard.mirror.postgres.event.UpdateEvent;
 import org.junit.jupiter.api.BeforeAll;
@@ -17,6 +19,7 @@ import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.Statement;
 import java.time.*;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -684,4 +687,259 @@ public class PostgresEventCollectorTest {
         eventually(() -> assertEquals(3, counter.get()));
     }
 
+    @Test
+    public void should_not_collect_transactions_consumed_before_a_failure_again() {
+        drainWalMessages(dataSource, replicationName, replicationName);
+
+        List<Integer> ids = new ArrayList<>();
+
+        // Inserted before the collector is started, so the transactions are delivered in the same batch
+        for (int i = 0; i < 3; i++) {
+            int id = newId();
+            ids.add(id);
+            update(dataSource, format("insert into data_types (id) values (%d)", id));
+        }
+
+        List<Object> consumedIds = new CopyOnWriteArrayList<>();
+        AtomicInteger failures = new AtomicInteger();
+
+        collector.setEventSink(transaction -> {
+            InsertEvent insert = (InsertEvent) ((PostgresTransactionEvent) transaction).events.get(0);
+
+            if (ids.get(1).equals(insert.fields.get(0).value) && failures.getAndIncrement() == 0) {
+                return Result.error(new RuntimeException("Not ready"));
+            }
+
+            consumedIds.add(insert.fields.get(0).value);
+            return Result.ok();
+        });
+
+        collector.start();
+
+        eventually(() -> assertEquals(ids, consumedIds));
+        assertEquals(1, failures.get());
+    }
+
+    @Test
+    public void should_stream_events_over_replication_connection() {
+        String streamReplicationName = newReplicationName();
+
+        CollectorConfig streamingConfig = new CollectorConfigBuilder(dataSource)
+                .includeAll()
+                .replicationSlotName(streamReplicationName)
+                .publicationName(streamReplicationName)
+                .streaming(ReplicationConnectionFactory.fromJdbcUrl(
+                        PostgresSingletonContainer.getJdbcUrl(),
+                        PostgresSingletonContainer.getUsername(),
+                        PostgresSingletonContainer.getPassword()
+                ))
+                .build();
+
+        PgReplication.setup(dataSource, streamingConfig);
+
+        PostgresEventCollector streamingCollector = new PostgresEventCollector(streamingConfig, dataSource);
+
+        List<PostgresTransactionEvent> streamedTransactions = new CopyOnWriteArrayList<>();
+
+        streamingCollector.setEventSink(transaction -> {
+            streamedTransactions.add((PostgresTransactionEvent) transaction);
+            return Result.ok();
+        });
+
+        streamingCollector.start();
+
+        int id = newId();
+
+        update(dataSource, format("insert into data_types (id) values (%d)", id));
+        update(dataSource, format("delete from data_types where id = %d", id));
+
+        try {
+            eventually(() -> {
+                assertEquals(2, streamedTransactions.size());
+
+                InsertEvent insert = (InsertEvent) streamedTransactions.get(0).events.get(0);
+                assertEquals("data_types", insert.table);
+                assertEquals(id, insert.fields.get(0).value);
+
+                DeleteEvent delete = (DeleteEvent) streamedTransactions.get(1).events.get(0);
+                assertEquals(id, delete.identifierFields.get(0).value);
+            });
+        } finally {
+            streamingCollector.stop();
+        }
+    }
+
+    @Test
+    public void should_deliver_events_in_order_with_pipelined_streaming() {
+        String pipelineReplicationName = newReplicationName();
+
+        CollectorConfig pipelinedConfig = new CollectorConfigBuilder(dataSource)
+                .includeAll()
+                .replicationSlotName(pipelineReplicationName)
+                .publicationName(pipelineReplicationName)
+                .streaming(ReplicationConnectionFactory.fromJdbcUrl(
+                        PostgresSingletonContainer.getJdbcUrl(),
+                        PostgresSingletonContainer.getUsername(),
+                        PostgresSingletonContainer.getPassword()
+                ))
+                .pipelined(true)
+                .pipelineQueueCapacity(2)
+                .build();
+
+        PgReplication.setup(dataSource, pipelinedConfig);
+
+        PostgresEventCollector pipelinedCollector = new PostgresEventCollector(pipelinedConfig, dataSource);
+
+        List<PostgresTransactionEvent> deliveredTransactions = new CopyOnWriteArrayList<>();
+
+        pipelinedCollector.setEventSink(transaction -> {
+            deliveredTransactions.add((PostgresTransactionEvent) transaction);
+            return Result.ok();
+        });
+
+        pipelinedCollector.start();
+
+        List<Integer> ids = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            int id = newId();
+            ids.add(id);
+            update(dataSource, format("insert into data_types (id) values (%d)", id));
+        }
+
+        try {
+            eventually(() -> {
+                assertEquals(10, deliveredTransactions.size());
+
+                for (int i = 0; i < ids.size(); i++) {
+                    PostgresTransactionEvent transaction = deliveredTransactions.get(i);
+                    InsertEvent insert = (InsertEvent) transaction.events.get(0);
+
+                    assertEquals(ids.get(i), insert.fields.get(0).value);
+                    assertNotEquals(-1, insert.transactionId);
+                }
+            });
+        } finally {
+            pipelinedCollector.stop();
+        }
+    }
+
+    @Test
+    public void should_coalesce_changes_to_the_same_row_across_transactions() {
+        String coalesceReplicationName = newReplicationName();
+
+        CollectorConfig coalescingConfig = new CollectorConfigBuilder(dataSource)
+                .includeAll()
+                .replicationSlotName(coalesceReplicationName)
+                .publicationName(coalesceReplicationName)
+                .streaming(ReplicationConnectionFactory.fromJdbcUrl(
+                        PostgresSingletonContainer.getJdbcUrl(),
+                        PostgresSingletonContainer.getUsername(),
+                        PostgresSingletonContainer.getPassword()
+                ))
+                .coalesceWindow(Duration.ofSeconds(2))
+                .build();
+
+        PgReplication.setup(dataSource, coalescingConfig);
+
+        PostgresEventCollector coalescingCollector = new PostgresEventCollector(coalescingConfig, dataSource);
+
+        List<PostgresTransactionEvent> deliveredTransactions = new CopyOnWriteArrayList<>();
+
+        coalescingCollector.setEventSink(transaction -> {
+            deliveredTransactions.add((PostgresTransactionEvent) transaction);
+            return Result.ok();
+        });
+
+        coalescingCollector.start();
+
+        int id = newId();
+
+        update(dataSource, format("insert into data_types (id, int4_field) values (%d, 0)", id));
+
+        for (int i = 1; i <= 5; i++) {
+            update(dataSource, format("update data_types set int4_field = %d where id = %d", i, id));
+        }
+
+        try {
+            eventually(() -> {
+                assertEquals(1, deliveredTransactions.size());
+                assertEquals(1, deliveredTransactions.get(0).events.size());
+
+                InsertEvent insert = (InsertEvent) deliveredTransactions.get(0).events.get(0);
+                assertEquals(id, insert.fields.get(0).value);
+                assertEquals(5, insert.fields.stream().filter(f -> f.name.equals("int4_field")).findAny().get().value);
+            });
+        } finally {
+            coalescingCollector.stop();
+        }
+    }
+
+    @Test
+    public void should_coalesce_changes_to_interleaved_rows_of_the_same_table() {
+        String coalesceReplicationName = newReplicationName();
+
+        CollectorConfig coalescingConfig = new CollectorConfigBuilder(dataSource)
+                .includeAll()
+                .replicationSlotName(coalesceReplicationName)
+                .publicationName(coalesceReplicationName)
+                .streaming(ReplicationConnectionFactory.fromJdbcUrl(
+                        PostgresSingletonContainer.getJdbcUrl(),
+                        PostgresSingletonContainer.getUsername(),
+                        PostgresSingletonContainer.getPassword()
+                ))
+                .coalesceWindow(Duration.ofSeconds(2))
+                .build();
+
+        int id1 = newId();
+        int id2 = newId();
+
+        update(dataSource, format("insert into data_types (id, int4_field) values (%d, 0), (%d, 0)", id1, id2));
+
+        PgReplication.setup(dataSource, coalescingConfig);
+
+        PostgresEventCollector coalescingCollector = new PostgresEventCollector(coalescingConfig, dataSource);
+
+        List<PostgresTransactionEvent> deliveredTransactions = new CopyOnWriteArrayList<>();
+
+        coalescingCollector.setEventSink(transaction -> {
+            deliveredTransactions.add((PostgresTransactionEvent) transaction);
+            return Result.ok();
+        });
+
+        coalescingCollector.start();
+
+        for (int i = 1; i <= 5; i++) {
+            update(dataSource, format("update data_types set int4_field = %d where id = %d", i, id1));
+            update(dataSource, format("update data_types set int4_field = %d where id = %d", i * 10, id2));
+        }
+
+        try {
+            eventually(() -> {
+                assertEquals(1, deliveredTransactions.size());
+
+                List<PostgresEvent> events = deliveredTransactions.get(0).events;
+                assertEquals(2, events.size());
+
+                UpdateEvent update1 = (UpdateEvent) events.get(0);
+                UpdateEvent update2 = (UpdateEvent) events.get(1);
+
+                assertEquals(id1, update1.identifierFields.get(0).value);
+                assertEquals(5, update1.fields.stream().filter(f -> f.name.equals("int4_field")).findAny().get().value);
+
+                assertEquals(id2, update2.identifierFields.get(0).value);
+                assertEquals(50, update2.fields.stream().filter(f -> f.name.equals("int4_field")).findAny().get().value);
+            });
+        } finally {
+            coalescingCollector.stop();
+        }
+    }
+
+    @Test
+    public void should_require_streaming_when_coalescing() {
+        assertThrows(IllegalStateException.class, () -> new CollectorConfigBuilder(dataSource)
+                .coalesceWindow(Duration.ofSeconds(1))
+                .build());
+    }
+
 }
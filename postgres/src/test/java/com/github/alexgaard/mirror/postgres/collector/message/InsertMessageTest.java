@@ -4,6 +4,9 @@ import com.github.alexgaard.mirror.postgres.test_utils.RawEventCreator;
 import com.github.alexgaard.mirror.postgres.utils.TupleDataColumn;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+
+import static com.github.alexgaard.mirror.postgres.utils.ParseUtils.toByteArray;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 
@@ -22,4 +25,17 @@ public class InsertMessageTest {
         assertEquals("42", message.columns.get(0).getData());
     }
 
+    @Test
+    public void shouldParseRawEventFromDirectBufferWithOffset() {
+        byte[] bytes = toByteArray("FFFF49000040154E000174000000023432");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip().position(2);
+
+        InsertMessage message = InsertMessage.parse(new RawMessage("LSN", 1, buffer));
+
+        assertEquals(16405, message.relationMessageOid);
+        assertEquals("42", message.columns.get(0).getData());
+        assertEquals(2, message.columns.get(0).length());
+    }
+
 }
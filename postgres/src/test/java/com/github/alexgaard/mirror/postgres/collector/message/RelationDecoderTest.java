@@ -0,0 +1,168 @@
+package com.github.alexgaard.mirror.postgres.collector.message;
+
+import com.github.alexgaard.mirror.postgres.collector.RelationDecoder;
+import com.github.alexgaard.mirror.postgres.collector.config.CollectorTableConfig;
+import com.github.alexgaard.mirror.postgres.event.Field;
+import com.github.alexgaard.mirror.postgres.metadata.ColumnMetadata;
+import com.github.alexgaard.mirror.postgres.metadata.ConstraintMetadata;
+import com.github.alexgaard.mirror.postgres.metadata.PgDataType;
+import com.github.alexgaard.mirror.postgres.utils.TupleDataColumn;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.alexgaard.mirror.postgres.metadata.ConstraintMetadata.ConstraintType.PRIMARY_KEY;
+import static com.github.alexgaard.mirror.postgres.metadata.ConstraintMetadata.ConstraintType.UNIQUE;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RelationDecoderTest {
+
+    private static final byte REPLICA_IDENTITY_DEFAULT = 'd';
+
+    private static final byte REPLICA_IDENTITY_FULL = 'f';
+
+    private static final Map<Integer, PgDataType> pgDataTypes = Map.of(
+            23, new PgDataType("int4"),
+            25, new PgDataType("text")
+    );
+
+    // The key of the relation is (id, code)
+    private static final List<RelationMessage.Column> relationColumns = List.of(
+            new RelationMessage.Column(true, "id", 23, -1),
+            new RelationMessage.Column(true, "code", 25, -1),
+            new RelationMessage.Column(false, "email", 25, -1),
+            new RelationMessage.Column(false, "name", 25, -1)
+    );
+
+    private static final List<ColumnMetadata> columnMetadata = List.of(
+            new ColumnMetadata("public", "person", "id", 1, false),
+            new ColumnMetadata("public", "person", "code", 2, false),
+            new ColumnMetadata("public", "person", "email", 3, false),
+            new ColumnMetadata("public", "person", "name", 4, true)
+    );
+
+    private static final ConstraintMetadata primaryKey = new ConstraintMetadata("public", "person", "person_pkey", PRIMARY_KEY, List.of(1), null);
+
+    private static final ConstraintMetadata emailUnique = new ConstraintMetadata("public", "person", "person_email_key", UNIQUE, List.of(3), null);
+
+    private static final ConstraintMetadata nameUnique = new ConstraintMetadata("public", "person", "person_name_key", UNIQUE, List.of(4), null);
+
+    @Test
+    public void shouldNotIdentifyRowAndSkipKeyColumnsWhenNoOldTupleIsSent() {
+        RelationDecoder decoder = compile(REPLICA_IDENTITY_DEFAULT, List.of(), null);
+
+        List<Field<?>> oldFields = decoder.toFields(List.of());
+        List<Field<?>> newFields = decoder.toFields(tuple("1", "a", "new@mail.com", "new"));
+
+        assertEquals(List.of(), decoder.findIdentifyingFields(null, oldFields));
+        assertEquals(
+                List.of(Field.textField("email", "new@mail.com"), Field.textField("name", "new")),
+                decoder.findUpdatedFields(null, oldFields, newFields)
+        );
+    }
+
+    @Test
+    public void shouldUseOldKeyAndKeepChangedKeyColumnsWithKeyReplicaIdentity() {
+        RelationDecoder decoder = compile(REPLICA_IDENTITY_DEFAULT, List.of(), null);
+
+        // Columns which are not part of the key are sent as null in the old key tuple
+        List<Field<?>> oldFields = decoder.toFields(tuple("1", "a", null, null));
+        List<Field<?>> newFields = decoder.toFields(tuple("2", "a", "new@mail.com", "new"));
+
+        assertEquals(
+                List.of(Field.int32Field("id", 1), Field.textField("code", "a")),
+                decoder.findIdentifyingFields('K', oldFields)
+        );
+
+        assertEquals(
+                List.of(Field.int32Field("id", 2), Field.textField("email", "new@mail.com"), Field.textField("name", "new")),
+                decoder.findUpdatedFields('K', oldFields, newFields)
+        );
+    }
+
+    @Test
+    public void shouldUsePrimaryKeyAndChangedColumnsWithFullReplicaIdentity() {
+        RelationDecoder decoder = compile(REPLICA_IDENTITY_FULL, List.of(primaryKey, emailUnique), null);
+
+        List<Field<?>> oldFields = decoder.toFields(tuple("1", "a", "old@mail.com", "name"));
+        List<Field<?>> newFields = decoder.toFields(tuple("1", "a", "new@mail.com", "name"));
+
+        assertEquals(List.of(Field.int32Field("id", 1)), decoder.findIdentifyingFields('O', oldFields));
+        assertEquals(List.of(Field.textField("email", "new@mail.com")), decoder.findUpdatedFields('O', oldFields, newFields));
+    }
+
+    @Test
+    public void shouldUsePreferredConstraintWithFullReplicaIdentity() {
+        RelationDecoder decoder = compile(REPLICA_IDENTITY_FULL, List.of(primaryKey, emailUnique), new CollectorTableConfig("person_email_key"));
+
+        List<Field<?>> oldFields = decoder.toFields(tuple("1", "a", "old@mail.com", "name"));
+
+        assertEquals(List.of(Field.textField("email", "old@mail.com")), decoder.findIdentifyingFields('O', oldFields));
+    }
+
+    @Test
+    public void shouldThrowIfPreferredConstraintIsMissing() {
+        assertThrows(
+                IllegalStateException.class,
+                () -> compile(REPLICA_IDENTITY_FULL, List.of(primaryKey), new CollectorTableConfig("missing_key"))
+        );
+    }
+
+    @Test
+    public void shouldSkipUniqueConstraintWithNullableColumns() {
+        RelationDecoder decoder = compile(REPLICA_IDENTITY_FULL, List.of(nameUnique, emailUnique), null);
+
+        List<Field<?>> oldFields = decoder.toFields(tuple("1", "a", "old@mail.com", "name"));
+
+        assertEquals(List.of(Field.textField("email", "old@mail.com")), decoder.findIdentifyingFields('O', oldFields));
+    }
+
+    @Test
+    public void shouldUseAllOldColumnsWithoutIdentifyingConstraint() {
+        RelationDecoder decoder = compile(REPLICA_IDENTITY_FULL, List.of(nameUnique), null);
+
+        List<Field<?>> oldFields = decoder.toFields(tuple("1", "a", "old@mail.com", "name"));
+
+        assertEquals(oldFields, decoder.findIdentifyingFields('O', oldFields));
+    }
+
+    @Test
+    public void shouldDecodeTuplesWithFewerColumnsThanTheRelation() {
+        RelationDecoder decoder = compile(REPLICA_IDENTITY_DEFAULT, List.of(), null);
+
+        List<Field<?>> fields = decoder.toFields(tuple("1", "a"));
+
+        assertEquals(List.of(Field.int32Field("id", 1), Field.textField("code", "a")), fields);
+        assertEquals(fields, decoder.findIdentifyingFields('K', fields));
+        assertEquals(List.of(Field.int32Field("id", 2)), decoder.findUpdatedFields('K', fields, decoder.toFields(tuple("2", "a"))));
+    }
+
+    @Test
+    public void shouldThrowIfTupleHasMoreColumnsThanTheRelation() {
+        RelationDecoder decoder = compile(REPLICA_IDENTITY_DEFAULT, List.of(), null);
+
+        assertThrows(IllegalArgumentException.class, () -> decoder.toFields(tuple("1", "a", "mail", "name", "extra")));
+    }
+
+    private static RelationDecoder compile(byte replicaId, List<ConstraintMetadata> constraints, CollectorTableConfig tableConfig) {
+        RelationMessage relation = new RelationMessage("0/0", 1, 16405, "public", "person", replicaId, relationColumns);
+        return RelationDecoder.compile(relation, pgDataTypes, constraints, columnMetadata, tableConfig);
+    }
+
+    private static List<TupleDataColumn> tuple(String... values) {
+        TupleDataColumn[] columns = new TupleDataColumn[values.length];
+
+        for (int i = 0; i < values.length; i++) {
+            columns[i] = values[i] != null
+                    ? new TupleDataColumn(TupleDataColumn.Type.TEXT, ByteBuffer.wrap(values[i].getBytes(StandardCharsets.UTF_8)))
+                    : new TupleDataColumn(TupleDataColumn.Type.NULL, null);
+        }
+
+        return List.of(columns);
+    }
+
+}
@@ -4,8 +4,12 @@ import com.github.alexgaard.mirror.common_test.DataTypesDbo;
 import com.github.alexgaard.mirror.common_test.DataTypesRepository;
 import com.github.alexgaard.mirror.common_test.DbUtils;
 import com.github.alexgaard.mirror.common_test.PostgresSingletonContainer;
+import com.github.alexgaard.mirror.common_test.QueryUtils;
+import com.github.alexgaard.mirror.core.Event;
 import com.github.alexgaard.mirror.core.Result;
+import com.github.alexgaard.mirror.core.utils.EventSinks;
 import com.github.alexgaard.mirror.postgres.event.*;
+import com.github.alexgaard.mirror.postgres.processor.config.ApplyMode;
 import com.github.alexgaard.mirror.postgres.processor.config.InsertConflictStrategy;
 import com.github.alexgaard.mirror.postgres.processor.config.ProcessorConfig;
 import com.github.alexgaard.mirror.postgres.processor.config.ProcessorConfigBuilder;
@@ -14,6 +18,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import javax.sql.DataSource;
+import java.sql.ResultSet;
 import java.time.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -322,4 +327,297 @@ public class PostgresEventProcessorTest {
         assertTrue(dataTypes2.isEmpty());
     }
 
+    @Test
+    public void should_handle_batched_events() {
+        ProcessorConfig config = new ProcessorConfigBuilder()
+                .applyMode(ApplyMode.BATCHED)
+                .build();
+
+        PostgresEventProcessor processor = new PostgresEventProcessor(config, dataSource);
+
+        int id1 = newId();
+        int id2 = newId();
+        int id3 = newId();
+
+        List<PostgresEvent> events = List.of(
+                new InsertEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id1), Field.textField("text_field", "a"))),
+                new InsertEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id2), Field.textField("text_field", "b"))),
+                new InsertEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id3), Field.textField("text_field", "c"))),
+                new UpdateEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id2)), List.of(Field.textField("text_field", "d"))),
+                new DeleteEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id3)))
+        );
+
+        Result result = processor.consume(PostgresTransactionEvent.of("test", events, OffsetDateTime.now()));
+
+        assertTrue(result.isOk());
+        assertEquals("a", dataTypesRepository.getDataTypes(id1).orElseThrow().text_field);
+        assertEquals("d", dataTypesRepository.getDataTypes(id2).orElseThrow().text_field);
+        assertTrue(dataTypesRepository.getDataTypes(id3).isEmpty());
+    }
+
+    @Test
+    public void should_copy_inserts_above_threshold() {
+        ProcessorConfig config = new ProcessorConfigBuilder()
+                .copyThreshold(2)
+                .build();
+
+        PostgresEventProcessor processor = new PostgresEventProcessor(config, dataSource);
+
+        int id1 = newId();
+        int id2 = newId();
+        int id3 = newId();
+
+        List<PostgresEvent> events = List.of(
+                new InsertEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id1), Field.textField("text_field", "a\tb"))),
+                new InsertEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id2), Field.textField("text_field", null))),
+                new InsertEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id3), Field.textField("text_field", "c"))),
+                new DeleteEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id3)))
+        );
+
+        Result result = processor.consume(PostgresTransactionEvent.of("test", events, OffsetDateTime.now()));
+
+        assertTrue(result.isOk());
+        assertEquals("a\tb", dataTypesRepository.getDataTypes(id1).orElseThrow().text_field);
+        assertNull(dataTypesRepository.getDataTypes(id2).orElseThrow().text_field);
+        assertTrue(dataTypesRepository.getDataTypes(id3).isEmpty());
+    }
+
+    @Test
+    public void should_apply_transactions_in_parallel() {
+        ProcessorConfig config = new ProcessorConfigBuilder()
+                .parallelism(4)
+                .build();
+
+        PostgresEventProcessor processor = new PostgresEventProcessor(config, dataSource);
+
+        int id1 = newId();
+        int id2 = newId();
+
+        List<Event> transactions = List.of(
+                PostgresTransactionEvent.of("test", new InsertEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id1), Field.textField("text_field", "a")))),
+                PostgresTransactionEvent.of("test", new InsertEvent(UUID.randomUUID(), "public", "data_types", 2, List.of(Field.int32Field("id", id2), Field.textField("text_field", "b")))),
+                PostgresTransactionEvent.of("test", new UpdateEvent(UUID.randomUUID(), "public", "data_types", 3, List.of(Field.int32Field("id", id1)), List.of(Field.textField("text_field", "c")))),
+                PostgresTransactionEvent.of("test", new DeleteEvent(UUID.randomUUID(), "public", "data_types", 4, List.of(Field.int32Field("id", id2))))
+        );
+
+        Result result = EventSinks.await(processor.consumeAll(transactions));
+
+        assertTrue(result.isOk());
+        assertEquals("c", dataTypesRepository.getDataTypes(id1).orElseThrow().text_field);
+        assertTrue(dataTypesRepository.getDataTypes(id2).isEmpty());
+    }
+
+    @Test
+    public void should_skip_transactions_applied_in_parallel_after_a_failure_when_redelivered() {
+        ProcessorConfig config = new ProcessorConfigBuilder()
+                .parallelism(4)
+                .build();
+
+        PostgresEventProcessor processor = new PostgresEventProcessor(config, dataSource);
+
+        int id1 = newId();
+        int id2 = newId();
+        int id3 = newId();
+
+        DataTypesDbo existing = new DataTypesDbo();
+        existing.id = id2;
+        dataTypesRepository.insertDataTypes(existing);
+
+        List<Event> transactions = List.of(
+                PostgresTransactionEvent.of("parallel-retry", new InsertEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id1)))),
+                PostgresTransactionEvent.of("parallel-retry", new InsertEvent(UUID.randomUUID(), "public", "data_types", 2, List.of(Field.int32Field("id", id2)))),
+                PostgresTransactionEvent.of("parallel-retry", new InsertEvent(UUID.randomUUID(), "public", "data_types", 3, List.of(Field.int32Field("id", id3))))
+        );
+
+        // Fails on the duplicate key of the second transaction, while the third is applied on its own connection
+        assertTrue(EventSinks.await(processor.consumeAll(transactions)).isError());
+        assertTrue(dataTypesRepository.getDataTypes(id3).isPresent());
+
+        dataTypesRepository.deleteDataTypeRow(id2);
+
+        // Only the second transaction is applied when the batch is redelivered
+        assertTrue(EventSinks.await(processor.consumeAll(transactions)).isOk());
+        assertTrue(dataTypesRepository.getDataTypes(id2).isPresent());
+    }
+
+    @Test
+    public void should_apply_transactions_on_tables_with_foreign_keys_in_order() {
+        QueryUtils.update(dataSource, "create table if not exists fk_parent (id integer primary key)");
+        QueryUtils.update(dataSource, "create table if not exists fk_child (id integer primary key, parent_id integer not null references fk_parent (id))");
+
+        ProcessorConfig config = new ProcessorConfigBuilder()
+                .parallelism(4)
+                .build();
+
+        PostgresEventProcessor processor = new PostgresEventProcessor(config, dataSource);
+
+        List<Integer> ids = new ArrayList<>();
+        List<Event> inserts = new ArrayList<>();
+        List<Event> deletes = new ArrayList<>();
+
+        for (int i = 0; i < 50; i++) {
+            int id = newId();
+            ids.add(id);
+
+            inserts.add(PostgresTransactionEvent.of("test", new InsertEvent(UUID.randomUUID(), "public", "fk_parent", 1, List.of(Field.int32Field("id", id)))));
+            inserts.add(PostgresTransactionEvent.of("test", new InsertEvent(UUID.randomUUID(), "public", "fk_child", 2, List.of(Field.int32Field("id", id), Field.int32Field("parent_id", id)))));
+
+            deletes.add(PostgresTransactionEvent.of("test", new DeleteEvent(UUID.randomUUID(), "public", "fk_child", 3, List.of(Field.int32Field("id", id)))));
+            deletes.add(PostgresTransactionEvent.of("test", new DeleteEvent(UUID.randomUUID(), "public", "fk_parent", 4, List.of(Field.int32Field("id", id)))));
+        }
+
+        assertTrue(EventSinks.await(processor.consumeAll(inserts)).isOk());
+        assertEquals(50, countRows("fk_child", ids));
+
+        assertTrue(EventSinks.await(processor.consumeAll(deletes)).isOk());
+        assertEquals(0, countRows("fk_parent", ids));
+    }
+
+    @Test
+    public void should_apply_transactions_with_group_commit() {
+        ProcessorConfig config = new ProcessorConfigBuilder()
+                .groupCommit(2, 1024 * 1024, Duration.ofSeconds(10))
+                .build();
+
+        PostgresEventProcessor processor = new PostgresEventProcessor(config, dataSource);
+
+        int id1 = newId();
+        int id2 = newId();
+        int id3 = newId();
+
+        List<Event> transactions = List.of(
+                PostgresTransactionEvent.of("test", new InsertEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id1)))),
+                PostgresTransactionEvent.of("test", new InsertEvent(UUID.randomUUID(), "public", "data_types", 2, List.of(Field.int32Field("id", id2)))),
+                PostgresTransactionEvent.of("test", new InsertEvent(UUID.randomUUID(), "public", "data_types", 3, List.of(Field.int32Field("id", id3))))
+        );
+
+        Result result = EventSinks.await(processor.consumeAll(transactions));
+
+        assertTrue(result.isOk());
+        assertTrue(dataTypesRepository.getDataTypes(id1).isPresent());
+        assertTrue(dataTypesRepository.getDataTypes(id2).isPresent());
+        assertTrue(dataTypesRepository.getDataTypes(id3).isPresent());
+
+        // Already applied transactions are skipped when redelivered
+        assertTrue(EventSinks.await(processor.consumeAll(transactions)).isOk());
+    }
+
+    @Test
+    public void should_skip_transactions_stored_in_progress_table() {
+        ProcessorConfig config = new ProcessorConfigBuilder()
+                .progressTable("mirror_apply_progress")
+                .build();
+
+        int id = newId();
+
+        PostgresTransactionEvent transaction = PostgresTransactionEvent.of(
+                "progress-test",
+                List.of(new InsertEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id)))),
+                OffsetDateTime.now(),
+                id
+        );
+
+        assertTrue(new PostgresEventProcessor(config, dataSource).consume(transaction).isOk());
+
+        // A new processor loads the progress from the table, and does not fail on the duplicate insert
+        assertTrue(new PostgresEventProcessor(config, dataSource).consume(transaction).isOk());
+        assertTrue(dataTypesRepository.getDataTypes(id).isPresent());
+    }
+
+    @Test
+    public void should_reuse_pinned_connection() {
+        ProcessorConfig config = new ProcessorConfigBuilder()
+                .pinConnections(true)
+                .applyMode(ApplyMode.BATCHED)
+                .build();
+
+        PostgresEventProcessor processor = new PostgresEventProcessor(config, dataSource);
+
+        int id1 = newId();
+        int id2 = newId();
+
+        assertTrue(processor.consume(PostgresTransactionEvent.of("test", new InsertEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id1))))).isOk());
+        assertTrue(processor.consume(PostgresTransactionEvent.of("test", new InsertEvent(UUID.randomUUID(), "public", "data_types", 2, List.of(Field.int32Field("id", id2))))).isOk());
+
+        // Fails on the duplicate key, the connection should still be usable afterwards
+        assertTrue(processor.consume(PostgresTransactionEvent.of("test", new InsertEvent(UUID.randomUUID(), "public", "data_types", 3, List.of(Field.int32Field("id", id2))))).isError());
+        assertTrue(processor.consume(PostgresTransactionEvent.of("test", new DeleteEvent(UUID.randomUUID(), "public", "data_types", 4, List.of(Field.int32Field("id", id1))))).isOk());
+
+        assertTrue(dataTypesRepository.getDataTypes(id1).isEmpty());
+        assertTrue(dataTypesRepository.getDataTypes(id2).isPresent());
+    }
+
+    @Test
+    public void should_handle_multi_row_events() {
+        ProcessorConfig config = new ProcessorConfigBuilder()
+                .applyMode(ApplyMode.MULTI_ROW)
+                .build();
+
+        PostgresEventProcessor processor = new PostgresEventProcessor(config, dataSource);
+
+        int id1 = newId();
+        int id2 = newId();
+        int id3 = newId();
+
+        List<PostgresEvent> events = List.of(
+                new InsertEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id1), Field.textField("text_field", "a"))),
+                new InsertEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id2), Field.textField("text_field", "b"))),
+                new InsertEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id3), Field.textField("text_field", "c"))),
+                new UpdateEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id1)), List.of(Field.textField("text_field", "d"))),
+                new UpdateEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id2)), List.of(Field.textField("text_field", null))),
+                new UpdateEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id1)), List.of(Field.textField("text_field", "e"))),
+                new DeleteEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id2))),
+                new DeleteEvent(UUID.randomUUID(), "public", "data_types", 1, List.of(Field.int32Field("id", id3)))
+        );
+
+        Result result = processor.consume(PostgresTransactionEvent.of("test", events, OffsetDateTime.now()));
+
+        assertTrue(result.isOk());
+        assertEquals("e", dataTypesRepository.getDataTypes(id1).orElseThrow().text_field);
+        assertTrue(dataTypesRepository.getDataTypes(id2).isEmpty());
+        assertTrue(dataTypesRepository.getDataTypes(id3).isEmpty());
+    }
+
+    @Test
+    public void should_not_combine_updates_on_tables_with_other_unique_constraints() {
+        QueryUtils.update(dataSource, "create table if not exists unique_values (id integer primary key, value text not null unique)");
+
+        ProcessorConfig config = new ProcessorConfigBuilder()
+                .applyMode(ApplyMode.MULTI_ROW)
+                .build();
+
+        PostgresEventProcessor processor = new PostgresEventProcessor(config, dataSource);
+
+        int id1 = newId();
+        int id2 = newId();
+
+        QueryUtils.update(dataSource, "insert into unique_values (id, value) values (" + id1 + ", 'a" + id1 + "'), (" + id2 + ", 'b" + id2 + "')");
+
+        // The second row takes the old value of the first row, which only succeeds if the first row is updated first
+        List<PostgresEvent> events = List.of(
+                new UpdateEvent(UUID.randomUUID(), "public", "unique_values", 1, List.of(Field.int32Field("id", id1)), List.of(Field.textField("value", "c" + id1))),
+                new UpdateEvent(UUID.randomUUID(), "public", "unique_values", 1, List.of(Field.int32Field("id", id2)), List.of(Field.textField("value", "a" + id1)))
+        );
+
+        Result result = processor.consume(PostgresTransactionEvent.of("test", events, OffsetDateTime.now()));
+
+        assertTrue(result.isOk());
+        String value = QueryUtils.query(dataSource, "select value from unique_values where id = " + id2, statement -> {
+            ResultSet resultSet = statement.executeQuery();
+            resultSet.next();
+            return resultSet.getString(1);
+        });
+
+        assertEquals("a" + id1, value);
+    }
+
+    private static int countRows(String table, List<Integer> ids) {
+        return QueryUtils.query(dataSource, "select count(*) from " + table + " where id = any(?)", statement -> {
+            statement.setArray(1, statement.getConnection().createArrayOf("int4", ids.toArray()));
+            ResultSet resultSet = statement.executeQuery();
+            resultSet.next();
+            return resultSet.getInt(1);
+        });
+    }
+
 }
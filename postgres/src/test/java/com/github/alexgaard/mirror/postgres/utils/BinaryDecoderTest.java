@@ -0,0 +1,64 @@
+package com.github.alexgaard.mirror.postgres.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static com.github.alexgaard.mirror.postgres.utils.ParseUtils.toByteArray;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BinaryDecoderTest {
+
+    @Test
+    public void shouldDecodeDatesAndTimestamps() {
+        assertEquals(LocalDate.of(1999, 12, 31), BinaryDecoder.decodeDate(ByteBuffer.allocate(4).putInt(0, -1)));
+        assertEquals(
+                LocalDateTime.of(2000, 1, 1, 0, 0, 1, 500_000_000),
+                BinaryDecoder.decodeTimestamp(ByteBuffer.allocate(8).putLong(0, 1_500_000))
+        );
+        assertEquals(
+                OffsetDateTime.of(1999, 12, 31, 23, 59, 59, 999_999_000, ZoneOffset.UTC),
+                BinaryDecoder.decodeTimestampTz(ByteBuffer.allocate(8).putLong(0, -1))
+        );
+    }
+
+    @Test
+    public void shouldDecodeUuid() {
+        UUID uuid = UUID.fromString("6b0b6d3e-9a5f-4b59-9e3a-2c8f7a1d4e21");
+        ByteBuffer buffer = ByteBuffer.allocate(16)
+                .putLong(0, uuid.getMostSignificantBits())
+                .putLong(8, uuid.getLeastSignificantBits());
+
+        assertEquals(uuid, BinaryDecoder.decodeUuid(buffer));
+    }
+
+    @Test
+    public void shouldDecodeArrayWithNulls() {
+        // int4[] {1,NULL,3}
+        ByteBuffer buffer = ByteBuffer.wrap(toByteArray(
+                "00000001" + "00000001" + "00000017" + "00000003" + "00000001"
+                        + "00000004" + "00000001"
+                        + "FFFFFFFF"
+                        + "00000004" + "00000003"
+        ));
+
+        List<Integer> values = BinaryDecoder.decodeArray(buffer, BinaryDecoder::decodeInt32);
+
+        assertEquals(Arrays.asList(1, null, 3), values);
+    }
+
+    @Test
+    public void shouldDecodeEmptyArray() {
+        ByteBuffer buffer = ByteBuffer.wrap(toByteArray("00000000" + "00000000" + "00000019"));
+
+        assertEquals(List.of(), BinaryDecoder.decodeArray(buffer, BinaryDecoder::decodeText));
+    }
+
+}
@@ -2,11 +2,14 @@ package com.github.alexgaard.mirror.postgres.utils;
 
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 
+import static java.nio.charset.StandardCharsets.US_ASCII;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class DateUtilsTest {
 
@@ -117,4 +120,44 @@ public class DateUtilsTest {
         );
     }
 
+    @Test
+    public void should_parse_offset_dates_with_hour_minute_and_second_offsets() {
+        assertEquals(
+                OffsetDateTime.of(2023, 12, 18, 11, 0, 37, 683157000, ZoneOffset.ofHours(1)),
+                DateUtils.parseVariablePrecisionOffsetDateTime("2023-12-18 11:00:37.683157+01")
+        );
+
+        assertEquals(
+                OffsetDateTime.of(2023, 12, 18, 11, 0, 37, 0, ZoneOffset.ofHoursMinutes(-3, -30)),
+                DateUtils.parseVariablePrecisionOffsetDateTime("2023-12-18 11:00:37-03:30")
+        );
+
+        assertEquals(
+                OffsetDateTime.of(1900, 1, 1, 0, 0, 0, 0, ZoneOffset.ofHoursMinutesSeconds(0, 9, 21)),
+                DateUtils.parseVariablePrecisionOffsetDateTime("1900-01-01 00:00:00+00:09:21")
+        );
+
+        // Not produced by postgres, handled by the formatter fallback
+        assertEquals(
+                OffsetDateTime.of(2023, 12, 18, 11, 0, 37, 0, ZoneOffset.ofHoursMinutes(1, 30)),
+                DateUtils.parseVariablePrecisionOffsetDateTime("2023-12-18 11:00:37+0130")
+        );
+    }
+
+    @Test
+    public void should_parse_dates_directly_from_bytes() {
+        ByteBuffer buffer = ByteBuffer.wrap("xx2023-12-18 11:00:37.683147+01".getBytes(US_ASCII), 2, 29).slice();
+
+        assertEquals(
+                OffsetDateTime.of(2023, 12, 18, 11, 0, 37, 683147000, ZoneOffset.ofHours(1)),
+                DateUtils.parseVariablePrecisionOffsetDateTime(new AsciiCharSequence(buffer))
+        );
+    }
+
+    @Test
+    public void should_fail_for_invalid_dates() {
+        assertThrows(RuntimeException.class, () -> DateUtils.parseVariablePrecisionLocalDateTime("2023-13-18 11:00:37"));
+        assertThrows(RuntimeException.class, () -> DateUtils.parseVariablePrecisionLocalDateTime("infinity"));
+    }
+
 }
@@ -0,0 +1,160 @@
+package com.github.alexgaard.mirror.postgres.utils;
+
+import com.github.alexgaard.mirror.postgres.event.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventCompactorTest {
+
+    @Test
+    public void shouldFoldInsertAndUpdatesIntoInsert() {
+        List<PostgresEvent> events = List.of(
+                insert(1, "a"),
+                insert("other", 2, "b"),
+                update(1, "c"),
+                update(1, "d")
+        );
+
+        List<PostgresEvent> compacted = EventCompactor.compact(events);
+
+        assertEquals(2, compacted.size());
+        assertEquals(List.of(Field.int32Field("id", 1), Field.textField("text", "d")), ((InsertEvent) compacted.get(0)).fields);
+        assertEquals(events.get(1), compacted.get(1));
+    }
+
+    @Test
+    public void shouldRemoveInsertedAndDeletedRow() {
+        List<PostgresEvent> events = List.of(
+                insert(1, "a"),
+                update(1, "b"),
+                delete(1),
+                insert(2, "c")
+        );
+
+        assertEquals(List.of(events.get(3)), EventCompactor.compact(events));
+    }
+
+    @Test
+    public void shouldMergeUpdatesAndKeepOriginalKeyOnDelete() {
+        List<PostgresEvent> events = List.of(
+                update(1, "a"),
+                delete("other", 2),
+                new UpdateEvent(UUID.randomUUID(), "public", "test", 1, List.of(Field.int32Field("id", 1)), List.of(Field.int32Field("id", 3))),
+                update(3, "b"),
+                delete(3)
+        );
+
+        List<PostgresEvent> compacted = EventCompactor.compact(events);
+
+        assertEquals(2, compacted.size());
+        assertEquals(events.get(1), compacted.get(0));
+        assertEquals(List.of(Field.int32Field("id", 1)), ((DeleteEvent) compacted.get(1)).identifierFields);
+    }
+
+    @Test
+    public void shouldNotFoldAcrossCustomMessages() {
+        List<PostgresEvent> events = List.of(
+                update(1, "a"),
+                new CustomMessageEvent(UUID.randomUUID(), "prefix", "message", 1),
+                update(1, "b")
+        );
+
+        assertEquals(events, EventCompactor.compact(events));
+    }
+
+    @Test
+    public void shouldNotFoldAcrossOtherRowsOfTheSameTable() {
+        // Row 2 takes the old text of row 1, which breaks a unique constraint on text if the changes of row 1 are moved after it
+        List<PostgresEvent> events = List.of(
+                update(1, "b"),
+                update(2, "a"),
+                update(1, "c")
+        );
+
+        assertEquals(events, EventCompactor.compact(events));
+    }
+
+    @Test
+    public void shouldFoldLatestImagesAcrossOtherRowsOfTheSameTable() {
+        List<PostgresEvent> events = List.of(
+                update(1, "a"),
+                update(2, "b"),
+                update(1, "c"),
+                update(2, "d"),
+                insert(3, "e"),
+                update(1, "f"),
+                update(3, "g")
+        );
+
+        List<PostgresEvent> folded = EventCompactor.foldLatestImages(events);
+
+        assertEquals(3, folded.size());
+        assertEquals(List.of(Field.textField("text", "d")), ((UpdateEvent) folded.get(0)).fields);
+        assertEquals(List.of(Field.int32Field("id", 3), Field.textField("text", "g")), ((InsertEvent) folded.get(1)).fields);
+        assertEquals(List.of(Field.textField("text", "f")), ((UpdateEvent) folded.get(2)).fields);
+        assertEquals(events, EventCompactor.compact(events));
+    }
+
+    @Test
+    public void shouldNotFoldLatestImagesAcrossCustomMessages() {
+        List<PostgresEvent> events = List.of(
+                update(1, "a"),
+                new CustomMessageEvent(UUID.randomUUID(), "prefix", "message", 1),
+                update(1, "b")
+        );
+
+        assertEquals(events, EventCompactor.foldLatestImages(events));
+    }
+
+    @Test
+    public void shouldNotFoldInsertAcrossOtherRowsOfTheSameTable() {
+        List<PostgresEvent> events = List.of(
+                insert(1, "a"),
+                update(2, "b"),
+                update(1, "c"),
+                update(1, "d")
+        );
+
+        List<PostgresEvent> compacted = EventCompactor.compact(events);
+
+        assertEquals(3, compacted.size());
+        assertEquals(events.get(0), compacted.get(0));
+        assertEquals(events.get(1), compacted.get(1));
+        assertEquals(List.of(Field.textField("text", "d")), ((UpdateEvent) compacted.get(2)).fields);
+    }
+
+    @Test
+    public void shouldNotFoldEventsWithoutIdentifyingFields() {
+        List<PostgresEvent> events = List.of(
+                new UpdateEvent(UUID.randomUUID(), "public", "test", 1, List.of(), List.of(Field.textField("text", "a"))),
+                new UpdateEvent(UUID.randomUUID(), "public", "test", 1, List.of(), List.of(Field.textField("text", "b")))
+        );
+
+        assertEquals(events, EventCompactor.compact(events));
+    }
+
+    private static InsertEvent insert(int id, String text) {
+        return insert("test", id, text);
+    }
+
+    private static InsertEvent insert(String table, int id, String text) {
+        return new InsertEvent(UUID.randomUUID(), "public", table, 1, List.of(Field.int32Field("id", id), Field.textField("text", text)));
+    }
+
+    private static UpdateEvent update(int id, String text) {
+        return new UpdateEvent(UUID.randomUUID(), "public", "test", 1, List.of(Field.int32Field("id", id)), List.of(Field.textField("text", text)));
+    }
+
+    private static DeleteEvent delete(int id) {
+        return delete("test", id);
+    }
+
+    private static DeleteEvent delete(String table, int id) {
+        return new DeleteEvent(UUID.randomUUID(), "public", table, 1, List.of(Field.int32Field("id", id)));
+    }
+
+}
@@ -1,7 +1,11 @@
 package com.github.alexgaard.mirror.postgres.utils;
 
+import com.github.alexgaard.mirror.postgres.event.Field;
+import com.github.alexgaard.mirror.postgres.event.FieldType;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 
 import static com.github.alexgaard.mirror.postgres.utils.FieldMapper.splitPostgresArray;
@@ -24,4 +28,39 @@ public class FieldMapperTest {
         assertThrows(IllegalArgumentException.class, () -> splitPostgresArray("[42,56]"));
     }
 
+    @Test
+    public void shouldSplitPostgresArrayWithNullsEscapesAndMultipleDimensions() {
+        assertEquals(Arrays.asList("a", null, "NULL"), splitPostgresArray("{a,NULL,\"NULL\"}"));
+        assertEquals(List.of("back\\slash", ""), splitPostgresArray("{\"back\\\\slash\",\"\"}"));
+        assertEquals(List.of("1", "2", "3", "4"), splitPostgresArray("{{1,2},{3,4}}"));
+        assertEquals(List.of("1", "2"), splitPostgresArray("[0:1]={1,2}"));
+        assertEquals(List.of(), splitPostgresArray("{}"));
+    }
+
+    @Test
+    public void shouldDecodePrimitiveArrays() {
+        assertArrayEquals(new int[]{ 1, -2, 300 }, PgArrayDecoder.decodeIntArray("{1,-2,300}"));
+        assertArrayEquals(new long[]{ 9_000_000_000L }, PgArrayDecoder.decodeLongArray("{9000000000}"));
+        assertArrayEquals(new double[]{ 1.5, -0.25 }, PgArrayDecoder.decodeDoubleArray("{1.5,-0.25}"));
+        assertNull(PgArrayDecoder.decodeIntArray("{1,NULL}"));
+    }
+
+    @Test
+    public void shouldMapIntArrayWithNulls() {
+        TupleDataColumn column = new TupleDataColumn(TupleDataColumn.Type.TEXT, ByteBuffer.wrap("{1,NULL,3}".getBytes()));
+
+        Field<?> field = FieldMapper.mapTupleDataToField("ids", FieldType.INT32_ARRAY, column);
+
+        assertEquals(Arrays.asList(1, null, 3), field.value);
+    }
+
+    @Test
+    public void shouldDecodePrimitiveListsWithNulls() {
+        assertEquals(List.of(1, -2, 300), PgArrayDecoder.decodeIntList("{1,-2,300}"));
+        assertEquals(Arrays.asList(null, 9_000_000_000L, null), PgArrayDecoder.decodeLongList("{NULL,9000000000,null}"));
+        assertEquals(Arrays.asList(1.5, null, -0.25), PgArrayDecoder.decodeDoubleList("{1.5,NULL,-0.25}"));
+        assertEquals(Arrays.asList(null, null), PgArrayDecoder.decodeIntList("{{NULL},{NULL}}"));
+        assertEquals(List.of(), PgArrayDecoder.decodeIntList("{}"));
+    }
+
 }
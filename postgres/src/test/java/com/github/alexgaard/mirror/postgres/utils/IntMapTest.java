@@ -0,0 +1,65 @@
+package com.github.alexgaard.mirror.postgres.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntMapTest {
+
+    @Test
+    public void shouldPutGetAndReplaceValues() {
+        IntMap<String> map = new IntMap<>();
+
+        assertNull(map.put(16405, "person"));
+        assertEquals("person", map.get(16405));
+        assertEquals("person", map.put(16405, "person2"));
+        assertEquals("person2", map.get(16405));
+        assertEquals(1, map.size());
+        assertNull(map.get(42));
+    }
+
+    @Test
+    public void shouldMatchHashMapForRandomOperations() {
+        IntMap<Integer> map = new IntMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(2_000) - 1_000;
+
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+
+            assertEquals(expected.size(), map.size());
+        }
+
+        for (int key = -1_000; key < 1_000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    @Test
+    public void shouldClear() {
+        IntMap<String> map = new IntMap<>();
+        map.put(1, "a");
+        map.put(2, "b");
+
+        map.clear();
+
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+    }
+
+    @Test
+    public void shouldNotAcceptNullValues() {
+        assertThrows(IllegalArgumentException.class, () -> new IntMap<String>().put(1, null));
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.github.alexgaard.mirror.postgres.utils;
+
+import com.github.alexgaard.mirror.postgres.event.Field;
+import com.github.alexgaard.mirror.postgres.event.FieldType;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PgCopyEncoderTest {
+
+    @Test
+    public void shouldEncodeRowWithEscapes() {
+        StringBuilder out = new StringBuilder();
+
+        PgCopyEncoder.appendRow(out, List.of(
+                Field.int32Field("id", 5),
+                Field.textField("text_field", "a\tb\\c\nd"),
+                Field.textField("null_field", null),
+                Field.booleanField("bool_field", true),
+                Field.bytesField("bytes_field", new byte[]{1, (byte) 0xAB})
+        ));
+
+        assertEquals("5\ta\\tb\\\\c\\nd\t\\N\tt\t\\\\x01ab\n", out.toString());
+    }
+
+    @Test
+    public void shouldEncodeArray() {
+        StringBuilder out = new StringBuilder();
+
+        PgCopyEncoder.appendRow(out, List.of(
+                new Field<>("text_array_field", FieldType.TEXT_ARRAY, Arrays.asList("a,b", null, "c\"d"))
+        ));
+
+        assertEquals("{\"a,b\",NULL,\"c\\\\\"d\"}\n", out.toString());
+    }
+
+    @Test
+    public void shouldEncodeInfiniteDatesAndTimestamps() {
+        StringBuilder out = new StringBuilder();
+
+        PgCopyEncoder.appendRow(out, List.of(
+                new Field<>("date_field", FieldType.DATE, LocalDate.MAX),
+                new Field<>("timestamp_field", FieldType.TIMESTAMP, LocalDateTime.MIN),
+                new Field<>("timestamp_tz_field", FieldType.TIMESTAMP_TZ, LocalDateTime.MAX.atOffset(ZoneOffset.UTC)),
+                new Field<>("timestamp_tz_min_field", FieldType.TIMESTAMP_TZ, OffsetDateTime.MIN),
+                new Field<>("date_array_field", FieldType.DATE_ARRAY, Arrays.asList(LocalDate.MIN, LocalDate.of(2024, 2, 29), null)),
+                new Field<>("timestamp_array_field", FieldType.TIMESTAMP_ARRAY, List.of(LocalDateTime.MAX, LocalDateTime.of(2024, 1, 1, 12, 0))),
+                new Field<>("timestamp_tz_array_field", FieldType.TIMESTAMP_TZ_ARRAY, List.of(OffsetDateTime.MAX))
+        ));
+
+        assertEquals(
+                "infinity\t-infinity\tinfinity\t-infinity\t{\"-infinity\",\"2024-02-29\",NULL}\t{\"infinity\",\"2024-01-01T12:00\"}\t{\"infinity\"}\n",
+                out.toString()
+        );
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.github.alexgaard.mirror.rabbitmq;
+
+import com.github.alexgaard.mirror.rabbitmq.config.FailureStrategy;
+import com.rabbitmq.client.Channel;
+
+import java.io.IOException;
+
+/*
+    Acks consumed messages on a channel in batches, by acking the delivery tag of the last consumed message with multiple = true.
+    Since a cumulative ack covers every earlier delivery, the consumed messages are acked before a failed message is nacked,
+    so that the failed message is never covered by a later ack. Delivery tags are only valid for the channel they were delivered on.
+ */
+class BatchedAcks {
+
+    private final Channel channel;
+
+    private final int batchSize;
+
+    private final FailureStrategy failureStrategy;
+
+    // Delivery tag of the last consumed message that has not been acked, -1 if none
+    private long lastUnackedTag = -1;
+
+    private int unackedCount = 0;
+
+    BatchedAcks(Channel channel, int batchSize, FailureStrategy failureStrategy) {
+        this.channel = channel;
+        this.batchSize = batchSize;
+        this.failureStrategy = failureStrategy;
+    }
+
+    synchronized void consumed(long deliveryTag) throws IOException {
+        lastUnackedTag = deliveryTag;
+        unackedCount++;
+
+        if (unackedCount >= batchSize) {
+            flush();
+        }
+    }
+
+    synchronized void failed(long deliveryTag) throws IOException {
+        flush();
+        channel.basicNack(deliveryTag, false, failureStrategy == FailureStrategy.NACK_REQUEUE);
+    }
+
+    synchronized void flush() throws IOException {
+        if (lastUnackedTag < 0) {
+            return;
+        }
+
+        // The pending acks are lost with the channel, and the messages will be redelivered
+        if (channel.isOpen()) {
+            channel.basicAck(lastUnackedTag, unackedCount > 1);
+        }
+
+        lastUnackedTag = -1;
+        unackedCount = 0;
+    }
+
+}
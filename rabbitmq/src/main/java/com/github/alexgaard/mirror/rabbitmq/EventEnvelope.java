@@ -0,0 +1,82 @@
+package com.github.alexgaard.mirror.rabbitmq;
+
+import com.github.alexgaard.mirror.core.exception.ParseException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+
+/*
+    Packs several serialized events into the body of a single message.
+    Messages with an envelope are marked with a header containing the number of events, messages without the header contain a single event.
+
+    envelope = event count (4 bytes), (length (4 bytes), serialized event) for each event
+ */
+class EventEnvelope {
+
+    static final String HEADER = "mirror-envelope-size";
+
+    static int sizeOf(List<byte[]> events) {
+        int size = 4;
+
+        for (byte[] event : events) {
+            size += 4 + event.length;
+        }
+
+        return size;
+    }
+
+    static byte[] pack(List<byte[]> events) {
+        ByteBuffer buffer = ByteBuffer.allocate(sizeOf(events));
+        buffer.putInt(events.size());
+
+        for (byte[] event : events) {
+            buffer.putInt(event.length);
+            buffer.put(event);
+        }
+
+        return buffer.array();
+    }
+
+    static boolean isEnvelope(Map<String, Object> headers) {
+        return headers != null && headers.containsKey(HEADER);
+    }
+
+    static List<byte[]> unpack(byte[] body) {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        int count = readInt(buffer);
+
+        // Every event has a 4 byte length, which bounds the count before the list is allocated
+        if (count < 0 || count > buffer.remaining() / 4) {
+            throw new ParseException(format("Envelope has %d events, but only %d bytes remain", count, buffer.remaining()));
+        }
+
+        List<byte[]> events = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            int length = readInt(buffer);
+
+            if (length < 0 || length > buffer.remaining()) {
+                throw new ParseException(format("Event %d in envelope has length %d, but only %d bytes remain", i, length, buffer.remaining()));
+            }
+
+            byte[] event = new byte[length];
+            buffer.get(event);
+            events.add(event);
+        }
+
+        return events;
+    }
+
+    private static int readInt(ByteBuffer buffer) {
+        if (buffer.remaining() < 4) {
+            throw new ParseException("Unexpected end of envelope");
+        }
+
+        return buffer.getInt();
+    }
+
+}
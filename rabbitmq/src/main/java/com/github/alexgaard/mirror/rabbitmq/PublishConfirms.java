@@ -0,0 +1,121 @@
+package com.github.alexgaard.mirror.rabbitmq;
+
+import com.github.alexgaard.mirror.core.Result;
+import com.github.alexgaard.mirror.core.utils.EventSinks;
+import com.rabbitmq.client.ConfirmListener;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static java.lang.String.format;
+
+/*
+    Tracks the publishes on a channel in confirm mode, by the delivery tag of the publish.
+    The broker confirms publishes asynchronously, and usually confirms many publishes at once (multiple = true),
+    which lets many publishes be in flight while still only reporting success after the broker has taken responsibility.
+    The number of publishes in flight is limited by a window.
+ */
+class PublishConfirms implements ConfirmListener {
+
+    private final Semaphore window;
+
+    private final Duration timeout;
+
+    // Key = delivery tag
+    private final ConcurrentNavigableMap<Long, CompletableFuture<Result>> outstanding = new ConcurrentSkipListMap<>();
+
+    PublishConfirms(int maxOutstanding, Duration timeout) {
+        this.window = new Semaphore(maxOutstanding);
+        this.timeout = timeout;
+    }
+
+    // Blocks until there is room in the window. Must be called before the delivery tag of the publish is retrieved.
+    void reserve() throws InterruptedException, TimeoutException {
+        if (!window.tryAcquire(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new TimeoutException(format("Timed out waiting for a free slot after %s, %d publishes are waiting for a confirm", timeout, outstanding.size()));
+        }
+    }
+
+    // Returns a future which is completed when the broker has confirmed the publish
+    CompletableFuture<Result> track(long deliveryTag) {
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        outstanding.put(deliveryTag, future);
+
+        future.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS).whenComplete((result, exception) -> {
+            if (outstanding.remove(deliveryTag, future)) {
+                window.release();
+            }
+        });
+
+        return future;
+    }
+
+    @Override
+    public void handleAck(long deliveryTag, boolean multiple) {
+        complete(deliveryTag, multiple, Result.ok());
+    }
+
+    @Override
+    public void handleNack(long deliveryTag, boolean multiple) {
+        complete(deliveryTag, multiple, Result.error(new IOException(format("Publish with delivery tag %d was rejected by the broker", deliveryTag))));
+    }
+
+    // Called when the channel is closed, publishes which have not been confirmed will never be
+    void failAll(Exception cause) {
+        outstanding.values().forEach(future -> future.complete(Result.error(cause)));
+    }
+
+    private void complete(long deliveryTag, boolean multiple, Result result) {
+        if (!multiple) {
+            CompletableFuture<Result> future = outstanding.get(deliveryTag);
+
+            if (future != null) {
+                future.complete(result);
+            }
+
+            return;
+        }
+
+        outstanding.headMap(deliveryTag, true).values().forEach(future -> future.complete(result));
+    }
+
+    /*
+        Completes with the first error in the order of the publishes, or ok when every publish has succeeded.
+        The error reports the publishes before the failed one as consumed.
+     */
+    static CompletionStage<Result> allSucceeded(List<CompletableFuture<Result>> publishes) {
+        return CompletableFuture.allOf(publishes.toArray(new CompletableFuture<?>[0])).handle((ignored, exception) -> {
+            for (int i = 0; i < publishes.size(); i++) {
+                Result result = publishes.get(i).handle(PublishConfirms::toResult).join();
+
+                if (result.isError()) {
+                    return EventSinks.partialError(i, result.getError().get());
+                }
+            }
+
+            return Result.ok();
+        });
+    }
+
+    // Futures that timed out waiting for a confirm are completed exceptionally
+    static Result toResult(Result result, Throwable exception) {
+        if (exception != null) {
+            return Result.error(toException(exception));
+        }
+
+        return result != null ? result : Result.error(new IllegalStateException("Result was null"));
+    }
+
+    private static Exception toException(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+
+        if (cause instanceof TimeoutException) {
+            return new TimeoutException("Timed out waiting for the broker to confirm the publish");
+        }
+
+        return cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+    }
+
+}
@@ -5,6 +5,8 @@ import com.github.alexgaard.mirror.core.EventSource;
 import com.github.alexgaard.mirror.core.Result;
 import com.github.alexgaard.mirror.core.Event;
 import com.github.alexgaard.mirror.core.serde.Deserializer;
+import com.github.alexgaard.mirror.core.utils.EventSinks;
+import com.github.alexgaard.mirror.rabbitmq.config.ReceiverConfig;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
@@ -14,6 +16,11 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import static com.github.alexgaard.mirror.core.utils.ExceptionUtil.runWithResult;
@@ -29,6 +36,8 @@ public class RabbitMqEventReceiver implements EventSource {
 
     private final Deserializer deserializer;
 
+    private final ReceiverConfig config;
+
     private EventSink eventSink;
 
     private Connection connection;
@@ -37,10 +46,19 @@ public class RabbitMqEventReceiver implements EventSource {
 
     private boolean isStarted;
 
+    private BatchedAcks acks;
+
+    private ScheduledExecutorService ackExecutor;
+
     public RabbitMqEventReceiver(ConnectionFactory factory, String queueName, Deserializer deserializer) {
+        this(factory, queueName, deserializer, new ReceiverConfig());
+    }
+
+    public RabbitMqEventReceiver(ConnectionFactory factory, String queueName, Deserializer deserializer, ReceiverConfig config) {
         this.factory = factory;
         this.queueName = queueName;
         this.deserializer = deserializer;
+        this.config = config;
     }
 
     @Override
@@ -76,26 +94,57 @@ public class RabbitMqEventReceiver implements EventSource {
         if (channel == null || !channel.isOpen()) {
             try {
                 channel = connection.createChannel();
+
+                if (config.getPrefetchCount() > 0) {
+                    channel.basicQos(config.getPrefetchCount());
+                }
             } catch (IOException e) {
                 log.error("Unable to open channel", e);
                 throw softenException(e);
             }
         }
 
+        BatchedAcks channelAcks = new BatchedAcks(channel, config.getAckBatchSize(), config.getFailureStrategy());
+        acks = channelAcks;
+
+        if (config.getAckBatchSize() > 1) {
+            long intervalMs = config.getAckInterval().toMillis();
+
+            ackExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, this.getClass().getSimpleName() + "-ack");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            ackExecutor.scheduleAtFixedRate(() -> flushAcks(channelAcks), intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+
         DeliverCallback deliverCallback = (consumerTag, delivery) -> {
             Result result = runWithResult(() -> {
-                Event transaction = deserializer.deserialize(delivery.getBody());
+                if (!EventEnvelope.isEnvelope(delivery.getProperties().getHeaders())) {
+                    Event transaction = deserializer.deserialize(delivery.getBody());
 
-                return eventSink.consume(transaction);
+                    return eventSink.consume(transaction);
+                }
+
+                // The message is only acked if every event in the envelope is consumed
+                List<byte[]> packedEvents = EventEnvelope.unpack(delivery.getBody());
+                List<Event> events = new ArrayList<>(packedEvents.size());
+
+                for (byte[] packedEvent : packedEvents) {
+                    events.add(deserializer.deserialize(packedEvent));
+                }
+
+                return EventSinks.await(EventSinks.toAsync(eventSink).consumeAll(events));
             });
 
             long tag = delivery.getEnvelope().getDeliveryTag();
 
             if (result.isOk()) {
-                channel.basicAck(tag, false);
+                channelAcks.consumed(tag);
             } else {
                 log.error("Failed to process event", result.getError().get());
-                channel.basicNack(tag, false, true);
+                channelAcks.failed(tag);
             }
         };
 
@@ -110,6 +159,16 @@ public class RabbitMqEventReceiver implements EventSource {
     public synchronized void stop() {
         isStarted = false;
 
+        if (ackExecutor != null) {
+            ackExecutor.shutdownNow();
+            ackExecutor = null;
+        }
+
+        if (acks != null) {
+            flushAcks(acks);
+            acks = null;
+        }
+
         if (channel != null && channel.isOpen()) {
             try {
                 channel.close();
@@ -126,4 +185,13 @@ public class RabbitMqEventReceiver implements EventSource {
             }
         }
     }
+
+    private static void flushAcks(BatchedAcks acks) {
+        try {
+            acks.flush();
+        } catch (Exception e) {
+            log.error("Failed to ack consumed messages", e);
+        }
+    }
+
 }
@@ -1,9 +1,11 @@
 package com.github.alexgaard.mirror.rabbitmq;
 
-import com.github.alexgaard.mirror.core.EventSink;
+import com.github.alexgaard.mirror.core.AsyncEventSink;
 import com.github.alexgaard.mirror.core.Result;
 import com.github.alexgaard.mirror.core.Event;
 import com.github.alexgaard.mirror.core.serde.Serializer;
+import com.github.alexgaard.mirror.rabbitmq.config.SenderConfig;
+import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
@@ -11,9 +13,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.concurrent.TimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
 
-public class RabbitMqEventSender implements EventSink {
+public class RabbitMqEventSender implements AsyncEventSink {
 
     private final static Logger log = LoggerFactory.getLogger(RabbitMqEventSender.class);
 
@@ -23,24 +29,180 @@ public class RabbitMqEventSender implements EventSink {
 
     private final Serializer serializer;
 
+    private final SenderConfig config;
+
     private Connection connection;
 
     private Channel channel;
 
+    // Tracks the publishes of the current channel when publisher confirms are enabled
+    private PublishConfirms confirms;
+
     public RabbitMqEventSender(ConnectionFactory factory, String exchangeName, String routingKey, Serializer serializer) {
+        this(factory, exchangeName, routingKey, serializer, new SenderConfig());
+    }
+
+    public RabbitMqEventSender(ConnectionFactory factory, String exchangeName, String routingKey, Serializer serializer, SenderConfig config) {
         this.factory = factory;
         this.exchangeName = exchangeName;
         this.routingKey = routingKey;
         this.serializer = serializer;
+        this.config = config;
     }
 
+    /*
+        Publishes all events on the same channel. With publisher confirms the result is completed when the broker
+        has confirmed every publish, which lets the caller publish the next events while waiting.
+        With batching the result is completed when the messages containing the events have been published.
+        Batching only packs events from the same call, the last message is published before returning
+        so that a caller waiting for the result is not delayed.
+     */
     @Override
-    public synchronized Result consume(Event transaction) {
+    public synchronized CompletionStage<Result> consumeAll(List<Event> events) {
+        if (events.isEmpty()) {
+            return CompletableFuture.completedFuture(Result.ok());
+        }
+
+        UUID firstId = events.get(0).id;
+        Result channelResult = openChannelIfNeeded(firstId);
+
+        if (channelResult.isError()) {
+            return CompletableFuture.completedFuture(channelResult);
+        }
+
+        if (config.isBatchingEnabled()) {
+            return publishBatched(events);
+        }
+
+        List<CompletableFuture<Result>> published = new ArrayList<>(events.size());
+
+        for (Event event : events) {
+            CompletableFuture<Result> result;
+
+            try {
+                result = publishMessage(serializer.serialize(event), null);
+            } catch (IOException e) {
+                log.error("Failed to send transaction {}. Unable to serialize", event.id, e);
+                result = CompletableFuture.completedFuture(Result.error(e));
+            }
+
+            published.add(result);
+
+            if (isFailed(result)) {
+                break;
+            }
+        }
+
+        return PublishConfirms.allSucceeded(published);
+    }
+
+    private CompletionStage<Result> publishBatched(List<Event> events) {
+        List<CompletableFuture<Result>> published = new ArrayList<>(events.size());
+
+        // Serialized events waiting to be packed into the next message
+        List<byte[]> pendingEvents = new ArrayList<>();
+        List<CompletableFuture<Result>> pendingResults = new ArrayList<>();
+        int pendingBytes = 0;
+
+        for (Event event : events) {
+            byte[] data;
+
+            try {
+                data = serializer.serialize(event);
+            } catch (IOException e) {
+                log.error("Failed to send transaction {}. Unable to serialize", event.id, e);
+                published.add(CompletableFuture.completedFuture(Result.error(e)));
+                break;
+            }
+
+            if (!pendingEvents.isEmpty() && pendingBytes + data.length > config.getBatchMaxBytes()) {
+                flush(pendingEvents, pendingResults);
+                pendingBytes = 0;
+            }
+
+            CompletableFuture<Result> result = new CompletableFuture<>();
+
+            pendingEvents.add(data);
+            pendingResults.add(result);
+            pendingBytes += data.length;
+            published.add(result);
+
+            if (pendingEvents.size() >= config.getBatchMaxEvents() || pendingBytes >= config.getBatchMaxBytes()) {
+                flush(pendingEvents, pendingResults);
+                pendingBytes = 0;
+            }
+        }
+
+        flush(pendingEvents, pendingResults);
+
+        return PublishConfirms.allSucceeded(published);
+    }
+
+    // Publishes the pending events in a single message, and clears them
+    private void flush(List<byte[]> pendingEvents, List<CompletableFuture<Result>> pendingResults) {
+        if (pendingEvents.isEmpty()) {
+            return;
+        }
+
+        byte[] body = EventEnvelope.pack(pendingEvents);
+        int count = pendingEvents.size();
+        List<CompletableFuture<Result>> results = new ArrayList<>(pendingResults);
+
+        pendingEvents.clear();
+        pendingResults.clear();
+
+        AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+                .headers(Map.of(EventEnvelope.HEADER, count))
+                .build();
+
+        publishMessage(body, properties).whenComplete((result, exception) -> {
+            Result envelopeResult = PublishConfirms.toResult(result, exception);
+            results.forEach(r -> r.complete(envelopeResult));
+        });
+    }
+
+    // The returned future is completed when the message is published, or confirmed if publisher confirms are enabled
+    private CompletableFuture<Result> publishMessage(byte[] body, AMQP.BasicProperties properties) {
+        if (!config.isPublisherConfirms()) {
+            try {
+                channel.basicPublish(exchangeName, routingKey, properties, body);
+                return CompletableFuture.completedFuture(Result.ok());
+            } catch (Exception e) {
+                return CompletableFuture.completedFuture(Result.error(e));
+            }
+        }
+
+        try {
+            confirms.reserve();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.completedFuture(Result.error(e));
+        } catch (TimeoutException e) {
+            return CompletableFuture.completedFuture(Result.error(e));
+        }
+
+        CompletableFuture<Result> confirm = confirms.track(channel.getNextPublishSeqNo());
+
+        try {
+            channel.basicPublish(exchangeName, routingKey, properties, body);
+        } catch (Exception e) {
+            // The publish will never be confirmed
+            confirm.complete(Result.error(e));
+        }
+
+        return confirm;
+    }
+
+    private static boolean isFailed(CompletableFuture<Result> result) {
+        return result.isDone() && result.handle(PublishConfirms::toResult).join().isError();
+    }
+
+    private Result openChannelIfNeeded(UUID firstId) {
         if (connection == null || !connection.isOpen()) {
             try {
                 connection = factory.newConnection();
             } catch (IOException | TimeoutException e) {
-                log.error("Failed to send transaction {}. Unable to open connection", transaction.id, e);
+                log.error("Failed to send transaction {}. Unable to open connection", firstId, e);
                 return Result.error(e);
             }
         }
@@ -48,19 +210,23 @@ public class RabbitMqEventSender implements EventSink {
         if (channel == null || !channel.isOpen()) {
             try {
                 channel = connection.createChannel();
+
+                if (config.isPublisherConfirms()) {
+                    PublishConfirms channelConfirms = new PublishConfirms(config.getMaxOutstandingConfirms(), config.getConfirmTimeout());
+
+                    channel.confirmSelect();
+                    channel.addConfirmListener(channelConfirms);
+                    channel.addShutdownListener(channelConfirms::failAll);
+
+                    confirms = channelConfirms;
+                }
             } catch (IOException e) {
-                log.error("Failed to send transaction {}. Unable to open channel", transaction.id, e);
+                log.error("Failed to send transaction {}. Unable to open channel", firstId, e);
                 return Result.error(e);
             }
         }
 
-        try {
-            channel.basicPublish(exchangeName, routingKey, null, serializer.serialize(transaction));
-
-            return Result.ok();
-        } catch (IOException e) {
-            return Result.error(e);
-        }
+        return Result.ok();
     }
 
     public synchronized void close() {
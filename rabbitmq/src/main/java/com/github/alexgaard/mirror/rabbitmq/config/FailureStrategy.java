@@ -0,0 +1,13 @@
+package com.github.alexgaard.mirror.rabbitmq.config;
+
+public enum FailureStrategy {
+    // The message is returned to the queue and redelivered
+    NACK_REQUEUE,
+
+    /*
+        The message is rejected without requeue, and routed to the dead letter exchange of the queue if it has one. Otherwise it is discarded.
+        Messages that only fail temporarily are not retried, such as messages from a SchemaSerializer with a resend interval
+        that refer to a schema the receiver has not received yet.
+     */
+    DEAD_LETTER
+}
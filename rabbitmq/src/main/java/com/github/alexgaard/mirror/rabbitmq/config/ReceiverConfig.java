@@ -0,0 +1,81 @@
+package com.github.alexgaard.mirror.rabbitmq.config;
+
+import java.time.Duration;
+import java.util.Objects;
+
+public class ReceiverConfig {
+
+    // Max number of unacked messages the broker delivers to the receiver, 0 is unlimited
+    int prefetchCount = 250;
+
+    /*
+        Consumed messages are acked together (multiple = true) when the max number of messages is reached,
+        or when the interval has passed since the last ack. 1 message acks every message by itself.
+     */
+    int ackBatchSize = 1;
+
+    Duration ackInterval = Duration.ofMillis(100);
+
+    FailureStrategy failureStrategy = FailureStrategy.NACK_REQUEUE;
+
+    public ReceiverConfig() {}
+
+    public ReceiverConfig(int prefetchCount, int ackBatchSize, Duration ackInterval, FailureStrategy failureStrategy) {
+        this.prefetchCount = prefetchCount;
+        this.ackBatchSize = ackBatchSize;
+        this.ackInterval = ackInterval;
+        this.failureStrategy = failureStrategy;
+    }
+
+    public int getPrefetchCount() {
+        return prefetchCount;
+    }
+
+    public int getAckBatchSize() {
+        return ackBatchSize;
+    }
+
+    public Duration getAckInterval() {
+        return ackInterval;
+    }
+
+    public FailureStrategy getFailureStrategy() {
+        return failureStrategy;
+    }
+
+    public ReceiverConfig copy() {
+        return new ReceiverConfig(prefetchCount, ackBatchSize, ackInterval, failureStrategy);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ReceiverConfig that = (ReceiverConfig) o;
+
+        if (prefetchCount != that.prefetchCount) return false;
+        if (ackBatchSize != that.ackBatchSize) return false;
+        if (!Objects.equals(ackInterval, that.ackInterval)) return false;
+        return failureStrategy == that.failureStrategy;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = prefetchCount;
+        result = 31 * result + ackBatchSize;
+        result = 31 * result + (ackInterval != null ? ackInterval.hashCode() : 0);
+        result = 31 * result + (failureStrategy != null ? failureStrategy.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ReceiverConfig{" +
+                "prefetchCount=" + prefetchCount +
+                ", ackBatchSize=" + ackBatchSize +
+                ", ackInterval=" + ackInterval +
+                ", failureStrategy=" + failureStrategy +
+                '}';
+    }
+}
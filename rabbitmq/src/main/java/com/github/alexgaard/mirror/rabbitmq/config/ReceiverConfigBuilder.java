@@ -0,0 +1,42 @@
+package com.github.alexgaard.mirror.rabbitmq.config;
+
+import java.time.Duration;
+
+public class ReceiverConfigBuilder {
+
+    private final ReceiverConfig config = new ReceiverConfig();
+
+    public ReceiverConfigBuilder prefetchCount(int prefetchCount) {
+        config.prefetchCount = prefetchCount;
+        return this;
+    }
+
+    public ReceiverConfigBuilder batchedAcks(int ackBatchSize, Duration ackInterval) {
+        config.ackBatchSize = ackBatchSize;
+        config.ackInterval = ackInterval;
+        return this;
+    }
+
+    public ReceiverConfigBuilder failureStrategy(FailureStrategy failureStrategy) {
+        config.failureStrategy = failureStrategy;
+        return this;
+    }
+
+    public ReceiverConfig build() {
+        if (config.prefetchCount < 0) {
+            throw new IllegalStateException("Prefetch count cannot be negative");
+        }
+
+        if (config.ackBatchSize < 1) {
+            throw new IllegalStateException("Ack batch size must be at least 1");
+        }
+
+        // The broker stops delivering when the prefetch is used up, so a larger batch would only be acked by the interval
+        if (config.prefetchCount > 0 && config.ackBatchSize > config.prefetchCount) {
+            throw new IllegalStateException("Ack batch size cannot be larger than the prefetch count");
+        }
+
+        return config.copy();
+    }
+
+}
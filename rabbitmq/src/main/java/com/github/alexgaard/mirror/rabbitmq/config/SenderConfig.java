@@ -0,0 +1,104 @@
+package com.github.alexgaard.mirror.rabbitmq.config;
+
+import java.time.Duration;
+import java.util.Objects;
+
+public class SenderConfig {
+
+    // If enabled, a publish is only reported as successful once the broker has confirmed it
+    boolean publisherConfirms = false;
+
+    // Max number of publishes waiting for a confirm, publishing blocks while the window is full
+    int maxOutstandingConfirms = 1000;
+
+    // How long to wait for a free slot in the window, and for the broker to confirm a publish
+    Duration confirmTimeout = Duration.ofSeconds(30);
+
+    /*
+        Batching packs several events from the same batch of events into a single message.
+        A message is published when it reaches the max number of events or bytes, or at the end of the batch.
+        1 event disables batching.
+     */
+    int batchMaxEvents = 1;
+
+    int batchMaxBytes = 256 * 1024;
+
+    public SenderConfig() {}
+
+    public SenderConfig(
+            boolean publisherConfirms,
+            int maxOutstandingConfirms,
+            Duration confirmTimeout,
+            int batchMaxEvents,
+            int batchMaxBytes
+    ) {
+        this.publisherConfirms = publisherConfirms;
+        this.maxOutstandingConfirms = maxOutstandingConfirms;
+        this.confirmTimeout = confirmTimeout;
+        this.batchMaxEvents = batchMaxEvents;
+        this.batchMaxBytes = batchMaxBytes;
+    }
+
+    public boolean isPublisherConfirms() {
+        return publisherConfirms;
+    }
+
+    public int getMaxOutstandingConfirms() {
+        return maxOutstandingConfirms;
+    }
+
+    public Duration getConfirmTimeout() {
+        return confirmTimeout;
+    }
+
+    public int getBatchMaxEvents() {
+        return batchMaxEvents;
+    }
+
+    public int getBatchMaxBytes() {
+        return batchMaxBytes;
+    }
+
+    public boolean isBatchingEnabled() {
+        return batchMaxEvents > 1;
+    }
+
+    public SenderConfig copy() {
+        return new SenderConfig(publisherConfirms, maxOutstandingConfirms, confirmTimeout, batchMaxEvents, batchMaxBytes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        SenderConfig that = (SenderConfig) o;
+
+        if (publisherConfirms != that.publisherConfirms) return false;
+        if (maxOutstandingConfirms != that.maxOutstandingConfirms) return false;
+        if (batchMaxEvents != that.batchMaxEvents) return false;
+        if (batchMaxBytes != that.batchMaxBytes) return false;
+        return Objects.equals(confirmTimeout, that.confirmTimeout);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (publisherConfirms ? 1 : 0);
+        result = 31 * result + maxOutstandingConfirms;
+        result = 31 * result + (confirmTimeout != null ? confirmTimeout.hashCode() : 0);
+        result = 31 * result + batchMaxEvents;
+        result = 31 * result + batchMaxBytes;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SenderConfig{" +
+                "publisherConfirms=" + publisherConfirms +
+                ", maxOutstandingConfirms=" + maxOutstandingConfirms +
+                ", confirmTimeout=" + confirmTimeout +
+                ", batchMaxEvents=" + batchMaxEvents +
+                ", batchMaxBytes=" + batchMaxBytes +
+                '}';
+    }
+}
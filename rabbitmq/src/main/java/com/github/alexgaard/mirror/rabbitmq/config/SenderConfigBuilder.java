@@ -0,0 +1,42 @@
+package com.github.alexgaard.mirror.rabbitmq.config;
+
+import java.time.Duration;
+
+public class SenderConfigBuilder {
+
+    private final SenderConfig config = new SenderConfig();
+
+    public SenderConfigBuilder publisherConfirms(boolean publisherConfirms) {
+        config.publisherConfirms = publisherConfirms;
+        return this;
+    }
+
+    public SenderConfigBuilder maxOutstandingConfirms(int maxOutstandingConfirms) {
+        config.maxOutstandingConfirms = maxOutstandingConfirms;
+        return this;
+    }
+
+    public SenderConfigBuilder confirmTimeout(Duration confirmTimeout) {
+        config.confirmTimeout = confirmTimeout;
+        return this;
+    }
+
+    public SenderConfigBuilder batching(int maxEvents, int maxBytes) {
+        config.batchMaxEvents = maxEvents;
+        config.batchMaxBytes = maxBytes;
+        return this;
+    }
+
+    public SenderConfig build() {
+        if (config.maxOutstandingConfirms < 1) {
+            throw new IllegalStateException("Max outstanding confirms must be at least 1");
+        }
+
+        if (config.batchMaxEvents < 1) {
+            throw new IllegalStateException("Batch max events must be at least 1");
+        }
+
+        return config.copy();
+    }
+
+}
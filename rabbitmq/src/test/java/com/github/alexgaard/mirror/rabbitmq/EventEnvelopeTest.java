@@ -0,0 +1,63 @@
+package com.github.alexgaard.mirror.rabbitmq;
+
+import com.github.alexgaard.mirror.core.exception.ParseException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventEnvelopeTest {
+
+    @Test
+    public void shouldPackAndUnpackEvents() {
+        List<byte[]> events = List.of(bytes("first"), new byte[0], bytes("third"));
+
+        byte[] body = EventEnvelope.pack(events);
+        List<byte[]> unpacked = EventEnvelope.unpack(body);
+
+        assertEquals(EventEnvelope.sizeOf(events), body.length);
+        assertEquals(3, unpacked.size());
+
+        for (int i = 0; i < events.size(); i++) {
+            assertArrayEquals(events.get(i), unpacked.get(i));
+        }
+    }
+
+    @Test
+    public void shouldOnlyTreatMessagesWithHeaderAsEnvelope() {
+        assertTrue(EventEnvelope.isEnvelope(Map.of(EventEnvelope.HEADER, 2)));
+        assertFalse(EventEnvelope.isEnvelope(Map.of()));
+        assertFalse(EventEnvelope.isEnvelope(null));
+    }
+
+    @Test
+    public void shouldThrowOnCountExceedingTheBody() {
+        assertThrows(ParseException.class, () -> EventEnvelope.unpack(ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE).array()));
+        assertThrows(ParseException.class, () -> EventEnvelope.unpack(ByteBuffer.allocate(12).putInt(3).array()));
+        assertThrows(ParseException.class, () -> EventEnvelope.unpack(ByteBuffer.allocate(4).putInt(-1).array()));
+    }
+
+    @Test
+    public void shouldThrowOnMalformedEnvelope() {
+        byte[] body = EventEnvelope.pack(List.of(bytes("first"), bytes("second")));
+
+        byte[] truncated = Arrays.copyOf(body, body.length - 1);
+
+        byte[] negativeLength = body.clone();
+        ByteBuffer.wrap(negativeLength).putInt(4, -1);
+
+        assertThrows(ParseException.class, () -> EventEnvelope.unpack(new byte[2]));
+        assertThrows(ParseException.class, () -> EventEnvelope.unpack(truncated));
+        assertThrows(ParseException.class, () -> EventEnvelope.unpack(negativeLength));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -6,17 +6,33 @@ import com.github.alexgaard.mirror.common_test.AsyncUtils;
 import com.github.alexgaard.mirror.common_test.RabbitMqSingletonContainer;
 import com.github.alexgaard.mirror.core.Result;
 import com.github.alexgaard.mirror.core.Event;
+import com.github.alexgaard.mirror.rabbitmq.config.FailureStrategy;
+import com.github.alexgaard.mirror.rabbitmq.config.ReceiverConfigBuilder;
+import com.github.alexgaard.mirror.rabbitmq.config.SenderConfigBuilder;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.GetResponse;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 import static com.github.alexgaard.mirror.common_test.AsyncUtils.eventually;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class RabbitMqSendReceiveTest {
 
@@ -75,4 +91,350 @@ public class RabbitMqSendReceiveTest {
         });
     }
 
+    @Test
+    public void shouldReportSuccessWhenBrokerHasConfirmed() {
+        String confirmQueue = "queue-" + UUID.randomUUID();
+        String confirmRoutingKey = "key-" + UUID.randomUUID();
+
+        RabbitMqSingletonContainer.setupExchangeWithQueue(confirmQueue, exchange, confirmRoutingKey);
+
+        RabbitMqEventReceiver receiver = new RabbitMqEventReceiver(
+                RabbitMqSingletonContainer.createConnectionFactory(),
+                confirmQueue,
+                (data) -> objectMapper.readValue(data, Event.class)
+        );
+
+        List<Event> receivedEvents = new CopyOnWriteArrayList<>();
+
+        receiver.setEventSink((event) -> {
+            receivedEvents.add(event);
+            return Result.ok();
+        });
+
+        receiver.start();
+
+        RabbitMqEventSender sender = new RabbitMqEventSender(
+                RabbitMqSingletonContainer.createConnectionFactory(),
+                exchange,
+                confirmRoutingKey,
+                objectMapper::writeValueAsBytes,
+                new SenderConfigBuilder()
+                        .publisherConfirms(true)
+                        .maxOutstandingConfirms(2)
+                        .build()
+        );
+
+        List<Event> events = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            events.add(new Event(UUID.randomUUID(), "test-src", "test", OffsetDateTime.now(ZoneId.of("UTC"))));
+        }
+
+        Result result = sender.consumeAll(events).toCompletableFuture().join();
+
+        assertTrue(result.isOk());
+
+        eventually(() -> assertEquals(10, receivedEvents.size()));
+
+        sender.close();
+        receiver.stop();
+    }
+
+    @Test
+    public void shouldSendAndReceiveEventsPackedInEnvelopes() {
+        String batchQueue = "queue-" + UUID.randomUUID();
+        String batchRoutingKey = "key-" + UUID.randomUUID();
+
+        RabbitMqSingletonContainer.setupExchangeWithQueue(batchQueue, exchange, batchRoutingKey);
+
+        RabbitMqEventReceiver receiver = new RabbitMqEventReceiver(
+                RabbitMqSingletonContainer.createConnectionFactory(),
+                batchQueue,
+                (data) -> objectMapper.readValue(data, Event.class)
+        );
+
+        List<Event> receivedEvents = new CopyOnWriteArrayList<>();
+
+        receiver.setEventSink((event) -> {
+            receivedEvents.add(event);
+            return Result.ok();
+        });
+
+        receiver.start();
+
+        RabbitMqEventSender sender = new RabbitMqEventSender(
+                RabbitMqSingletonContainer.createConnectionFactory(),
+                exchange,
+                batchRoutingKey,
+                objectMapper::writeValueAsBytes,
+                new SenderConfigBuilder()
+                        .publisherConfirms(true)
+                        .batching(3, 1024 * 1024)
+                        .build()
+        );
+
+        List<Event> events = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            events.add(new Event(UUID.randomUUID(), "test-src", "test", OffsetDateTime.now(ZoneId.of("UTC"))));
+        }
+
+        Result result = sender.consumeAll(events).toCompletableFuture().join();
+
+        assertTrue(result.isOk());
+
+        eventually(() -> {
+            assertEquals(10, receivedEvents.size());
+
+            for (int i = 0; i < events.size(); i++) {
+                assertEquals(events.get(i).id, receivedEvents.get(i).id);
+            }
+        });
+
+        // The connection is opened again after the sender has been closed
+        sender.close();
+
+        Event eventAfterClose = new Event(UUID.randomUUID(), "test-src", "test", OffsetDateTime.now(ZoneId.of("UTC")));
+
+        assertTrue(sender.consumeAll(List.of(eventAfterClose)).toCompletableFuture().join().isOk());
+
+        eventually(() -> assertEquals(eventAfterClose.id, receivedEvents.get(10).id));
+
+        sender.close();
+        receiver.stop();
+    }
+
+    @Test
+    public void shouldAckRemainingMessagesAfterAckInterval() throws Exception {
+        String ackQueue = "queue-" + UUID.randomUUID();
+        String ackRoutingKey = "key-" + UUID.randomUUID();
+
+        RabbitMqSingletonContainer.setupExchangeWithQueue(ackQueue, exchange, ackRoutingKey);
+
+        AtomicReference<Connection> receiverConnection = new AtomicReference<>();
+
+        RabbitMqEventReceiver receiver = new RabbitMqEventReceiver(
+                trackingConnectionFactory(receiverConnection),
+                ackQueue,
+                (data) -> objectMapper.readValue(data, Event.class),
+                new ReceiverConfigBuilder()
+                        .prefetchCount(4)
+                        .batchedAcks(4, Duration.ofMillis(50))
+                        .build()
+        );
+
+        List<Event> receivedEvents = new CopyOnWriteArrayList<>();
+
+        receiver.setEventSink((event) -> {
+            receivedEvents.add(event);
+            return Result.ok();
+        });
+
+        receiver.start();
+
+        RabbitMqEventSender sender = new RabbitMqEventSender(
+                RabbitMqSingletonContainer.createConnectionFactory(),
+                exchange,
+                ackRoutingKey,
+                objectMapper::writeValueAsBytes
+        );
+
+        for (int i = 0; i < 10; i++) {
+            sender.consume(new Event(UUID.randomUUID(), "test-src", "test", OffsetDateTime.now(ZoneId.of("UTC"))));
+        }
+
+        eventually(() -> assertEquals(10, receivedEvents.size()));
+
+        // The last 2 messages do not fill a batch, and are acked by the interval
+        Thread.sleep(500);
+
+        // Closing the connection without stop() skips the final flush, so unacked messages would be redelivered
+        abortAndAssertNothingRedelivered(receiverConnection.get(), ackQueue);
+        assertEquals(10, receivedEvents.size());
+
+        sender.close();
+        receiver.stop();
+    }
+
+    @Test
+    public void shouldOnlyRequeueFailedMessageInPendingAckBatch() throws Exception {
+        String requeueQueue = "queue-" + UUID.randomUUID();
+        String requeueRoutingKey = "key-" + UUID.randomUUID();
+
+        RabbitMqSingletonContainer.setupExchangeWithQueue(requeueQueue, exchange, requeueRoutingKey);
+
+        List<Event> events = events(6);
+        UUID failingId = events.get(2).id;
+
+        AtomicReference<Connection> receiverConnection = new AtomicReference<>();
+        List<UUID> deliveries = new CopyOnWriteArrayList<>();
+
+        RabbitMqEventReceiver receiver = new RabbitMqEventReceiver(
+                trackingConnectionFactory(receiverConnection),
+                requeueQueue,
+                (data) -> objectMapper.readValue(data, Event.class),
+                new ReceiverConfigBuilder()
+                        .prefetchCount(10)
+                        .batchedAcks(4, Duration.ofMinutes(1))
+                        .failureStrategy(FailureStrategy.NACK_REQUEUE)
+                        .build()
+        );
+
+        // The third message fails once, after the first two are pending in the ack batch
+        receiver.setEventSink((event) -> {
+            boolean isFirstAttempt = !deliveries.contains(event.id);
+            deliveries.add(event.id);
+
+            if (event.id.equals(failingId) && isFirstAttempt) {
+                return Result.error(new IllegalStateException("Failed to consume " + event.id));
+            }
+
+            return Result.ok();
+        });
+
+        receiver.start();
+
+        sendInOrder(requeueRoutingKey, events);
+
+        // The 3 messages after the failure and the redelivered message fill the next batch
+        eventually(() -> assertEquals(7, deliveries.size()));
+
+        abortAndAssertNothingRedelivered(receiverConnection.get(), requeueQueue);
+
+        for (Event event : events) {
+            int expectedDeliveries = event.id.equals(failingId) ? 2 : 1;
+            assertEquals(expectedDeliveries, deliveries.stream().filter(event.id::equals).count());
+        }
+
+        receiver.stop();
+    }
+
+    @Test
+    public void shouldOnlyDeadLetterFailedMessageInPendingAckBatch() throws Exception {
+        String deadLetterExchange = "dlx-" + UUID.randomUUID();
+        String deadLetterQueue = "dlq-" + UUID.randomUUID();
+        String failingQueue = "queue-" + UUID.randomUUID();
+        String failingRoutingKey = "key-" + UUID.randomUUID();
+
+        try (Connection connection = RabbitMqSingletonContainer.createConnectionFactory().newConnection();
+             Channel channel = connection.createChannel()) {
+            channel.exchangeDeclare(deadLetterExchange, "fanout");
+            channel.queueDeclare(deadLetterQueue, true, false, false, null);
+            channel.queueBind(deadLetterQueue, deadLetterExchange, "");
+
+            channel.exchangeDeclare(exchange, "direct");
+            channel.queueDeclare(failingQueue, true, false, false, Map.of("x-dead-letter-exchange", deadLetterExchange));
+            channel.queueBind(failingQueue, exchange, failingRoutingKey);
+        }
+
+        List<Event> events = events(7);
+        UUID failingId = events.get(2).id;
+
+        AtomicReference<Connection> receiverConnection = new AtomicReference<>();
+        List<UUID> deliveries = new CopyOnWriteArrayList<>();
+
+        RabbitMqEventReceiver receiver = new RabbitMqEventReceiver(
+                trackingConnectionFactory(receiverConnection),
+                failingQueue,
+                (data) -> objectMapper.readValue(data, Event.class),
+                new ReceiverConfigBuilder()
+                        .prefetchCount(10)
+                        .batchedAcks(4, Duration.ofMinutes(1))
+                        .failureStrategy(FailureStrategy.DEAD_LETTER)
+                        .build()
+        );
+
+        // The third message fails after the first two are pending in the ack batch
+        receiver.setEventSink((event) -> {
+            deliveries.add(event.id);
+
+            if (event.id.equals(failingId)) {
+                return Result.error(new IllegalStateException("Failed to consume " + event.id));
+            }
+
+            return Result.ok();
+        });
+
+        receiver.start();
+
+        sendInOrder(failingRoutingKey, events);
+
+        // The 4 messages after the failure fill the next batch
+        eventually(() -> assertEquals(7, deliveries.size()));
+
+        abortAndAssertNothingRedelivered(receiverConnection.get(), failingQueue);
+
+        assertEquals(events.stream().map(e -> e.id).collect(Collectors.toList()), deliveries);
+
+        try (Connection connection = RabbitMqSingletonContainer.createConnectionFactory().newConnection();
+             Channel channel = connection.createChannel()) {
+            eventually(() -> assertEquals(1, channel.queueDeclarePassive(deadLetterQueue).getMessageCount()));
+
+            GetResponse deadLettered = channel.basicGet(deadLetterQueue, true);
+            assertEquals(failingId, objectMapper.readValue(deadLettered.getBody(), Event.class).id);
+        }
+
+        receiver.stop();
+    }
+
+    private void sendInOrder(String routingKey, List<Event> events) {
+        RabbitMqEventSender sender = new RabbitMqEventSender(
+                RabbitMqSingletonContainer.createConnectionFactory(),
+                exchange,
+                routingKey,
+                objectMapper::writeValueAsBytes
+        );
+
+        for (Event event : events) {
+            assertTrue(sender.consume(event).isOk());
+        }
+
+        sender.close();
+    }
+
+    /*
+        Closes the connection of a receiver without stop(), so that pending acks are not flushed, and checks that no message
+        is returned to the queue. Unacked messages are requeued by the broker when the connection closes.
+     */
+    private static void abortAndAssertNothingRedelivered(Connection receiverConnection, String queue) throws Exception {
+        receiverConnection.abort();
+
+        try (Connection connection = RabbitMqSingletonContainer.createConnectionFactory().newConnection();
+             Channel channel = connection.createChannel()) {
+            eventually(() -> assertEquals(0, channel.queueDeclarePassive(queue).getConsumerCount()));
+            assertEquals(0, channel.queueDeclarePassive(queue).getMessageCount());
+        }
+    }
+
+    // Exposes the connection opened by a receiver
+    private static ConnectionFactory trackingConnectionFactory(AtomicReference<Connection> connectionRef) {
+        ConnectionFactory containerFactory = RabbitMqSingletonContainer.createConnectionFactory();
+
+        ConnectionFactory factory = new ConnectionFactory() {
+            @Override
+            public Connection newConnection() throws IOException, TimeoutException {
+                Connection connection = super.newConnection();
+                connectionRef.set(connection);
+                return connection;
+            }
+        };
+
+        factory.setHost(containerFactory.getHost());
+        factory.setPort(containerFactory.getPort());
+        factory.setUsername(containerFactory.getUsername());
+        factory.setPassword(containerFactory.getPassword());
+
+        return factory;
+    }
+
+    private static List<Event> events(int count) {
+        List<Event> events = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            events.add(new Event(UUID.randomUUID(), "test-src", "test", OffsetDateTime.now(ZoneId.of("UTC"))));
+        }
+
+        return events;
+    }
+
 }